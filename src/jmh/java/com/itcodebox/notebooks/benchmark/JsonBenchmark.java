@@ -0,0 +1,99 @@
+package com.itcodebox.notebooks.benchmark;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itcodebox.notebooks.entity.ImageRecord;
+import com.itcodebox.notebooks.entity.Note;
+import com.itcodebox.notebooks.utils.ImageRecordUtil;
+import com.itcodebox.notebooks.utils.JsonUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 每次 new ObjectMapper() 和共用 JsonUtil 中的 ObjectReader / ObjectWriter 的比较.
+ * image_records 在每次选择笔记时解析, 笔记在导入导出时逐条读写.
+ * 每次调用分配的内存用 gradlew jmh -PjmhInclude=JsonBenchmark -PjmhArgs="-prof gc" 查看(gc.alloc.rate.norm)
+ *
+ * @author LeeWyatt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JsonBenchmark {
+    private static final TypeReference<List<ImageRecord>> IMAGE_RECORDS_TYPE = new TypeReference<List<ImageRecord>>() {
+    };
+
+    private String imageRecordsJson;
+    private List<ImageRecord> imageRecords;
+    private Note note;
+    private String noteJson;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        imageRecords = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            imageRecords.add(new ImageRecord("image " + i, "description of image " + i, "ab/" + i + "c0ffee.png"));
+        }
+        imageRecordsJson = ImageRecordUtil.convertToString(imageRecords);
+        note = new Note();
+        note.setId(1);
+        note.setTitle("JsonBenchmark");
+        note.setChapterId(1);
+        note.setNotebookId(1);
+        note.setShowOrder(1);
+        note.setContent("public class JsonBenchmark {\n    // ...\n}\n");
+        note.setDescription("description");
+        note.setSource("/src/JsonBenchmark.java");
+        note.setType("java");
+        note.setImageRecords(imageRecordsJson);
+        note.setCreateTime(System.currentTimeMillis());
+        note.setUpdateTime(System.currentTimeMillis());
+        noteJson = JsonUtil.NOTE_WRITER.writeValueAsString(note);
+    }
+
+    @Benchmark
+    public List<ImageRecord> readImageRecordsNewMapper() throws Exception {
+        return new ObjectMapper().readValue(imageRecordsJson, IMAGE_RECORDS_TYPE);
+    }
+
+    @Benchmark
+    public List<ImageRecord> readImageRecordsShared() {
+        return ImageRecordUtil.convertToList(imageRecordsJson);
+    }
+
+    @Benchmark
+    public String writeImageRecordsNewMapper() throws Exception {
+        return new ObjectMapper().writeValueAsString(imageRecords);
+    }
+
+    @Benchmark
+    public String writeImageRecordsShared() {
+        return ImageRecordUtil.convertToString(imageRecords);
+    }
+
+    @Benchmark
+    public Note readNoteNewMapper() throws Exception {
+        return new ObjectMapper().readValue(noteJson, Note.class);
+    }
+
+    @Benchmark
+    public Note readNoteShared() throws Exception {
+        return JsonUtil.NOTE_READER.readValue(noteJson);
+    }
+
+    @Benchmark
+    public String writeNoteNewMapper() throws Exception {
+        return new ObjectMapper().writeValueAsString(note);
+    }
+
+    @Benchmark
+    public String writeNoteShared() throws Exception {
+        return JsonUtil.NOTE_WRITER.writeValueAsString(note);
+    }
+}
@@ -0,0 +1,90 @@
+package com.itcodebox.notebooks.benchmark;
+
+import com.itcodebox.notebooks.TestDatabase;
+import com.itcodebox.notebooks.dao.impl.ChapterDaoImpl;
+import com.itcodebox.notebooks.dao.impl.NoteDaoImpl;
+import com.itcodebox.notebooks.entity.Chapter;
+import com.itcodebox.notebooks.entity.Note;
+import com.itcodebox.notebooks.service.DatabaseMigrator;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 10万条笔记(50个笔记本, 每个40个章节, 每个章节50条笔记)的数据库中常用查询的耗时.
+ * migrated=false 是只有 initTable 创建的表, 没有索引; migrated=true 执行了全部迁移(包括索引)
+ *
+ * @author LeeWyatt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LookupBenchmark {
+    private static final int NOTEBOOKS = 50;
+    private static final int CHAPTERS_PER_NOTEBOOK = 40;
+    private static final int NOTES_PER_CHAPTER = 50;
+
+    @Param({"false", "true"})
+    public boolean migrated;
+
+    private Connection conn;
+    private final NoteDaoImpl noteDao = NoteDaoImpl.getInstance();
+    private final ChapterDaoImpl chapterDao = ChapterDaoImpl.getInstance();
+    /**
+     * 每次查询换一个目标, 避免总是命中同一页缓存
+     */
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        conn = TestDatabase.openTempFile();
+        TestDatabase.populate(conn, NOTEBOOKS, CHAPTERS_PER_NOTEBOOK, NOTES_PER_CHAPTER);
+        if (migrated) {
+            DatabaseMigrator.migrate(conn);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Benchmark
+    public List<Note> findAllByChapterId() {
+        return noteDao.findAllByChapterId(conn, nextChapterId());
+    }
+
+    @Benchmark
+    public Note findNoteByTitle() {
+        int chapter = nextChapterId() - 1;
+        int notebook = chapter / CHAPTERS_PER_NOTEBOOK;
+        String title = "note-" + notebook + "-" + chapter % CHAPTERS_PER_NOTEBOOK + "-" + chapter % NOTES_PER_CHAPTER;
+        return noteDao.findByTitle(conn, title, chapter + 1);
+    }
+
+    @Benchmark
+    public Note findNoteByTitles() {
+        int chapter = nextChapterId() - 1;
+        int notebook = chapter / CHAPTERS_PER_NOTEBOOK;
+        int chapterIndex = chapter % CHAPTERS_PER_NOTEBOOK;
+        return noteDao.findByTitles(conn, "note-" + notebook + "-" + chapterIndex + "-" + chapter % NOTES_PER_CHAPTER,
+                "chapter-" + notebook + "-" + chapterIndex, "notebook-" + notebook);
+    }
+
+    @Benchmark
+    public Chapter findChapterByTitle() {
+        int chapter = nextChapterId() - 1;
+        int notebook = chapter / CHAPTERS_PER_NOTEBOOK;
+        return chapterDao.findByTitle(conn, "chapter-" + notebook + "-" + chapter % CHAPTERS_PER_NOTEBOOK, notebook + 1);
+    }
+
+    private int nextChapterId() {
+        next = (next + 7919) % (NOTEBOOKS * CHAPTERS_PER_NOTEBOOK);
+        return next + 1;
+    }
+}
@@ -0,0 +1,60 @@
+package com.itcodebox.notebooks.benchmark;
+
+import com.itcodebox.notebooks.TestDatabase;
+import com.itcodebox.notebooks.dao.mapper.NoteRowMapper;
+import com.itcodebox.notebooks.entity.Note;
+import org.apache.commons.dbutils.BasicRowProcessor;
+import org.apache.commons.dbutils.GenerousBeanProcessor;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.ResultSetHandler;
+import org.apache.commons.dbutils.handlers.BeanListHandler;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 读取一个章节的全部笔记: 原来每次新建 BeanListHandler 通过反射填充, 和缓存的 NoteRowMapper 按列索引读取比较.
+ * 两者执行相同的SQL, 差别只在结果的映射
+ *
+ * @author LeeWyatt
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RowMapperBenchmark {
+    private static final String SQL = "select id,title,chapter_id,notebook_id,create_time,update_time,show_order,content,description," +
+            "source,type,offset_start,offset_end,image_records from note where chapter_id=? order by show_order asc";
+
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private Connection conn;
+    private final QueryRunner queryRunner = new QueryRunner();
+    private final ResultSetHandler<List<Note>> rowMapperHandler = new NoteRowMapper().getListHandler();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        conn = TestDatabase.openTempFile();
+        TestDatabase.populate(conn, 1, 1, rows);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        conn.close();
+    }
+
+    @Benchmark
+    public List<Note> beanListHandler() throws Exception {
+        return queryRunner.query(conn, SQL, new BeanListHandler<>(Note.class, new BasicRowProcessor(new GenerousBeanProcessor())), 1);
+    }
+
+    @Benchmark
+    public List<Note> rowMapper() throws Exception {
+        return queryRunner.query(conn, SQL, rowMapperHandler, 1);
+    }
+}
@@ -0,0 +1,100 @@
+package com.itcodebox.notebooks.benchmark;
+
+import com.itcodebox.notebooks.utils.CustomUIUtil;
+import org.openjdk.jmh.annotations.*;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 缩略图的吞吐量. 默认一个线程, 结果就是每个核心每秒能生成的缩略图数量; 用 -t 指定线程数可以看多核的扩展.
+ * <p>
+ * 原图是 2880x1800 的截图大小(带噪点, 避免压缩得太小), 缩略图使用默认的最大尺寸 398.
+ * scaleSmooth 是原来的 getScaledInstance(SCALE_SMOOTH), progressiveBilinear 是 CustomUIUtil.scaleImage;
+ * writeThumbImageToFile 包括读取PNG, 缩小和写入, 是 ThumbnailService 中每个任务的全部工作
+ *
+ * @author LeeWyatt
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+@Threads(1)
+@State(Scope.Benchmark)
+public class ThumbnailBenchmark {
+    private static final int WIDTH = 2880;
+    private static final int HEIGHT = 1800;
+    private static final int THUMB_MAX_SIZE = 398;
+    private static final int THUMB_WIDTH = THUMB_MAX_SIZE;
+    private static final int THUMB_HEIGHT = HEIGHT * THUMB_MAX_SIZE / WIDTH;
+
+    private BufferedImage image;
+    private File imageFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        image = new BufferedImage(WIDTH, HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = image.createGraphics();
+        graphics.setColor(Color.WHITE);
+        graphics.fillRect(0, 0, WIDTH, HEIGHT);
+        Random random = new Random(42);
+        for (int i = 0; i < 2000; i++) {
+            graphics.setColor(new Color(random.nextInt(0xFFFFFF)));
+            graphics.drawString("public static void main(String[] args) " + i, random.nextInt(WIDTH), random.nextInt(HEIGHT));
+        }
+        graphics.dispose();
+        imageFile = File.createTempFile("notebooks-thumb", ".png");
+        imageFile.deleteOnExit();
+        ImageIO.write(image, "png", imageFile);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        imageFile.delete();
+    }
+
+    /**
+     * 每个线程一个输出文件
+     */
+    @State(Scope.Thread)
+    public static class ThumbFile {
+        File file;
+
+        @Setup(Level.Trial)
+        public void setUp() throws Exception {
+            file = File.createTempFile("notebooks-thumb", "_thumb.png");
+            file.deleteOnExit();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            file.delete();
+        }
+    }
+
+    @Benchmark
+    public BufferedImage scaleSmooth() {
+        Image scaled = image.getScaledInstance(THUMB_WIDTH, THUMB_HEIGHT, Image.SCALE_SMOOTH);
+        BufferedImage thumb = new BufferedImage(THUMB_WIDTH, THUMB_HEIGHT, BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = thumb.createGraphics();
+        graphics.drawImage(scaled, 0, 0, null);
+        graphics.dispose();
+        return thumb;
+    }
+
+    @Benchmark
+    public BufferedImage progressiveBilinear() {
+        return CustomUIUtil.scaleImage(image, THUMB_WIDTH, THUMB_HEIGHT);
+    }
+
+    @Benchmark
+    public long writeThumbImageToFile(ThumbFile thumb) throws Exception {
+        CustomUIUtil.writeThumbImageToFile(imageFile, thumb.file, THUMB_MAX_SIZE);
+        return thumb.file.length();
+    }
+}
@@ -47,6 +47,10 @@ public interface PluginConstant {
     Path PROJECT_DB_DIRECTORY_PATH = Paths.get(USER_HOME_PATH, ".ideaNotebooksFile");
     Path IMAGE_DIRECTORY_PATH =PROJECT_DB_DIRECTORY_PATH.resolve("notebook_images");
     Path TEMP_IMAGE_DIRECTORY_PATH =PROJECT_DB_DIRECTORY_PATH.resolve("notebook_images_temp");
+    /**
+     * 清理无用图片时, 移动到这个目录下
+     */
+    Path ORPHAN_IMAGE_DIRECTORY_PATH =PROJECT_DB_DIRECTORY_PATH.resolve("notebook_images_orphan");
     Path DB_FILE_PATH = PROJECT_DB_DIRECTORY_PATH.resolve("notebooks.db");
     Clipboard CLIPBOARD = Toolkit.getDefaultToolkit().getSystemClipboard();
     int MIN_FONT_SIZE = 8;
@@ -1,5 +1,6 @@
 package com.itcodebox.notebooks.dao;
 
+import com.itcodebox.notebooks.dao.mapper.RowMapper;
 import org.apache.commons.dbutils.*;
 import org.apache.commons.dbutils.handlers.BeanHandler;
 import org.apache.commons.dbutils.handlers.BeanListHandler;
@@ -9,8 +10,11 @@ import org.apache.commons.dbutils.handlers.ScalarHandler;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * 封装了针对于数据的通用操作
@@ -21,6 +25,13 @@ import java.util.List;
 public abstract class BaseDAO<T> {
     private Class<T> clazz;
     protected QueryRunner queryRunner = new QueryRunner();
+    private final StatementCache statementCache = StatementCache.getInstance();
+    /**
+     * 查询结果的处理器, 每个DAO只创建一次
+     */
+    private final ResultSetHandler<List<T>> listHandler;
+    private final ResultSetHandler<T> beanHandler;
+    private final RowMapper<T> rowMapper;
 
 
     public BaseDAO(){
@@ -32,6 +43,25 @@ public abstract class BaseDAO<T> {
         //获取泛型类型的数组
         Type[] types = parameterizedType.getActualTypeArguments();
         this.clazz= (Class<T>) types[0];
+
+        rowMapper = createRowMapper();
+        if (rowMapper != null) {
+            listHandler = rowMapper.getListHandler();
+            beanHandler = rowMapper.getBeanHandler();
+        } else {
+            //开启驼峰映射 因为数据库是 create_time .而java 类是createTime
+            RowProcessor processor = new BasicRowProcessor(new GenerousBeanProcessor());
+            listHandler = new BeanListHandler<T>(clazz, processor);
+            beanHandler = new BeanHandler<T>(clazz, processor);
+        }
+    }
+
+    /**
+     * 子类提供手写的RowMapper, 按索引读取列, 避免反射;
+     * 返回null时使用驼峰映射的 GenerousBeanProcessor
+     */
+    protected RowMapper<T> createRowMapper() {
+        return null;
     }
 
     //除开增删改查. 还需要sql语句查询比如总共有多少个用户之类的通用方法
@@ -39,9 +69,9 @@ public abstract class BaseDAO<T> {
         E result = null;
         ScalarHandler<E> handler = new ScalarHandler<E>();
         try {
-            result = queryRunner.query(conn, sql, handler,args);
+            result = query(conn, sql, handler, args);
         } catch (SQLException e) {
-            e.printStackTrace();
+            handleException(conn, e);
         }
         return result;
     }
@@ -51,14 +81,10 @@ public abstract class BaseDAO<T> {
     //查询多个对象--ver3.0
     public List<T> queryList(Connection conn, String sql, Object... objs) {
         List<T> list = null;
-        //开启驼峰映射 因为数据库是 create_time .而java 类是createTime
-        BeanProcessor bean = new GenerousBeanProcessor();
-        RowProcessor processor = new BasicRowProcessor(bean);
-        BeanListHandler<T> handler = new BeanListHandler<T>(clazz,processor);
         try {
-            list = queryRunner.query(conn, sql, handler, objs);
+            list = query(conn, sql, listHandler, objs);
         } catch (SQLException e) {
-            e.printStackTrace();
+            handleException(conn, e);
         }
         return list;
     }
@@ -68,36 +94,62 @@ public abstract class BaseDAO<T> {
         List<String> list = null;
         ColumnListHandler<String> handler =new ColumnListHandler<String>("title");
         try {
-            list = queryRunner.query(conn, sql, handler,objs);
+            list = query(conn, sql, handler, objs);
         } catch (SQLException e) {
-            e.printStackTrace();
+            handleException(conn, e);
         }
         return list;
     }
 
-    //List<Object>每个列数据类型不同
-    public List<String> queryImageRecords(Connection conn, String sql, Object... objs){
-        List<String> list = null;
-        ColumnListHandler<String> handler =new ColumnListHandler<String>("image_records");
+    /**
+     * 逐行处理一列数据, 不把全部结果读入内存
+     *
+     * @return 全部处理完时返回true; 查询出错时返回false, 这时可能只处理了一部分
+     */
+    public boolean forEachColumn(Connection conn, String sql, String column, Consumer<String> consumer, Object... objs) {
         try {
-            list = queryRunner.query(conn, sql, handler,objs);
+            query(conn, sql, rs -> {
+                while (rs.next()) {
+                    consumer.accept(rs.getString(column));
+                }
+                return null;
+            }, objs);
+            return true;
         } catch (SQLException e) {
-            e.printStackTrace();
+            handleException(conn, e);
         }
-        return list;
+        return false;
     }
 
+    /**
+     * 逐行处理查询结果, 不把全部结果读入内存; 没有RowMapper时退化为先查询全部结果
+     *
+     * @return 全部处理完时返回true; 查询出错时返回false, 这时可能只处理了一部分
+     */
+    public boolean forEachBean(Connection conn, String sql, Consumer<T> consumer, Object... objs) {
+        try {
+            if (rowMapper != null) {
+                query(conn, sql, rs -> {
+                    rowMapper.forEachRow(rs, consumer);
+                    return null;
+                }, objs);
+            } else {
+                query(conn, sql, listHandler, objs).forEach(consumer);
+            }
+            return true;
+        } catch (SQLException e) {
+            handleException(conn, e);
+        }
+        return false;
+    }
 
     //查询单个对象--ver3.0
     public T getBean(Connection conn, String sql, Object... objs) {
         T t = null;
         try {
-            //开启驼峰映射
-            BeanProcessor bean = new GenerousBeanProcessor();
-            RowProcessor processor = new BasicRowProcessor(bean);
-            t = queryRunner.query(conn,sql,new BeanHandler<T>(clazz,processor),objs);
+            t = query(conn, sql, beanHandler, objs);
         } catch (SQLException e) {
-            e.printStackTrace();
+            handleException(conn, e);
         }
         return t;
     }
@@ -106,9 +158,9 @@ public abstract class BaseDAO<T> {
     public Integer update(Connection conn, String sql, Object... args) {
         int count = 0;
         try {
-            count = queryRunner.update(conn, sql, args);
+            count = execute(conn, sql, args);
         } catch (SQLException e) {
-            e.printStackTrace();
+            handleException(conn, e);
         }
         return count;
     }
@@ -116,9 +168,63 @@ public abstract class BaseDAO<T> {
     //修改多个对象的id;
     public void updateBatch(Connection conn, String sql, Object[][] args){
         try {
-            queryRunner.batch(conn, sql, args);
+            executeBatch(conn, sql, args);
         } catch (SQLException throwables) {
-            throwables.printStackTrace();
+            handleException(conn, throwables);
+        }
+    }
+
+    /**
+     * 使用缓存的 PreparedStatement 查询; 语句不关闭, 只关闭ResultSet并清除参数
+     */
+    private <R> R query(Connection conn, String sql, ResultSetHandler<R> handler, Object... args) throws SQLException {
+        PreparedStatement statement = statementCache.prepare(conn, sql);
+        try {
+            queryRunner.fillStatement(statement, args);
+            try (ResultSet rs = statement.executeQuery()) {
+                return handler.handle(rs);
+            }
+        } finally {
+            statement.clearParameters();
+        }
+    }
+
+    private int execute(Connection conn, String sql, Object... args) throws SQLException {
+        PreparedStatement statement = statementCache.prepare(conn, sql);
+        try {
+            queryRunner.fillStatement(statement, args);
+            return statement.executeUpdate();
+        } finally {
+            statement.clearParameters();
+        }
+    }
+
+    private int[] executeBatch(Connection conn, String sql, Object[][] args) throws SQLException {
+        PreparedStatement statement = statementCache.prepare(conn, sql);
+        try {
+            for (Object[] arg : args) {
+                queryRunner.fillStatement(statement, arg);
+                statement.addBatch();
+            }
+            return statement.executeBatch();
+        } finally {
+            statement.clearBatch();
+            statement.clearParameters();
+        }
+    }
+
+    /**
+     * 在事务中(autoCommit=false)出错时抛出异常, 以便回滚整个事务; 否则只打印异常
+     */
+    private void handleException(Connection conn, SQLException e) {
+        boolean inTransaction = false;
+        try {
+            inTransaction = conn != null && !conn.getAutoCommit();
+        } catch (SQLException ignored) {
+        }
+        if (inTransaction) {
+            throw new DataAccessException(e);
         }
+        e.printStackTrace();
     }
 }
@@ -0,0 +1,12 @@
+package com.itcodebox.notebooks.dao;
+
+/**
+ * 事务中执行SQL出错时抛出, 用于回滚整个事务
+ *
+ * @author LeeWyatt
+ */
+public class DataAccessException extends RuntimeException {
+    public DataAccessException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,35 @@
+package com.itcodebox.notebooks.dao;
+
+import com.itcodebox.notebooks.entity.ImageRecord;
+
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * image_record 表只读: 由 note 表上的触发器根据 note.image_records 维护
+ *
+ * @author LeeWyatt
+ */
+public interface ImageRecordDao {
+    /**
+     * 笔记的全部图片, 按图片在笔记里的顺序
+     */
+    List<ImageRecord> findAllByNoteId(Connection conn, Integer noteId);
+
+    /**
+     * 章节下全部笔记的图片, 按笔记分组
+     */
+    List<ImageRecord> findAllByChapterId(Connection conn, Integer chapterId);
+
+    /**
+     * 笔记本下全部笔记的图片, 按笔记分组
+     */
+    List<ImageRecord> findAllByNotebookId(Connection conn, Integer notebookId);
+
+    /**
+     * 统计引用了该图片的笔记数量
+     *
+     * @param imagePath 图片目录下的图片路径
+     */
+    int countNotesByImagePath(Connection conn, String imagePath);
+}
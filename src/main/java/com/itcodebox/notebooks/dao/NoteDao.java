@@ -4,6 +4,7 @@ import com.itcodebox.notebooks.entity.Note;
 
 import java.sql.Connection;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author LeeWyatt
@@ -16,6 +17,22 @@ public interface NoteDao extends CommonDao<Note> {
      */
     List<Note> findAllByChapterId(Connection conn, Integer chapterId);
 
+    /**
+     * 只查询表格显示需要的元数据, 不查询content等正文字段
+     *
+     * @param conn      连接
+     * @param chapterId 章节id
+     * @return 章节下所有笔记的摘要, 每个笔记的 isSummary() 为true
+     */
+    List<Note> findSummariesByChapterId(Connection conn, Integer chapterId);
+
+    /**
+     * @param conn 连接
+     * @param ids  笔记id
+     * @return 完整加载的笔记, 不保证顺序
+     */
+    List<Note> findAllByIds(Connection conn, List<Integer> ids);
+
     /**
      * 删除指定章节下的所有笔记
      *
@@ -49,10 +66,25 @@ public interface NoteDao extends CommonDao<Note> {
 
     Note findByTitles(Connection conn, String noteTile, String chapterTitle, String notebookTitle);
 
-    List<String> getImageRecordsByNotebookId(Connection conn, int notebookId);
+    /**
+     * 逐条处理章节下的笔记(包括内容), 按 show_order 排序, 用于导出
+     *
+     * @return 查询出错时返回false
+     */
+    boolean forEachByChapterId(Connection conn, Integer chapterId, Consumer<Note> consumer);
 
-    List<String> getImageRecordsByChapterId(Connection conn, int chapterId);
+    /**
+     * 统计笔记数量
+     *
+     * @param notebookId 为null时统计全部笔记
+     */
+    int countByNotebookId(Connection conn, Integer notebookId);
 
-    List<String> getImageRecordsByNoteId(Connection conn, int noteId);
+    /**
+     * 逐条处理全部笔记的 image_records(不包括空值), 用于清理没有引用的图片
+     *
+     * @return 查询出错时返回false
+     */
+    boolean forEachImageRecords(Connection conn, Consumer<String> consumer);
 
 }
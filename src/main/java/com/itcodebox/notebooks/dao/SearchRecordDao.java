@@ -2,9 +2,11 @@ package com.itcodebox.notebooks.dao;
 
 import com.itcodebox.notebooks.entity.SearchRecord;
 import com.itcodebox.notebooks.entity.SearchMode;
+import com.itcodebox.notebooks.utils.MatchRules;
 
 import java.sql.Connection;
 import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * @author LeeWyatt
@@ -19,4 +21,42 @@ public interface SearchRecordDao {
      * @return 搜索结果
      */
     List<SearchRecord> searchKeywords(Connection conn, String keywords, SearchMode searchMode);
+
+    /**
+     * 根据指定的范围和关键字.搜索结果, 最多返回 limit 条
+     *
+     * @param conn 连接
+     * @param keywords 关键字
+     * @param searchMode  指定搜索模式(搜索范围)
+     * @param limit 最多返回的条数
+     * @return 搜索结果
+     */
+    List<SearchRecord> searchKeywords(Connection conn, String keywords, SearchMode searchMode, int limit);
+
+    /**
+     * 根据指定的范围, 关键字和匹配规则搜索结果, 最多返回 limit 条
+     *
+     * @param conn 连接
+     * @param keywords 关键字; 匹配规则为 REGEX 时是完整的正则表达式
+     * @param searchMode  指定搜索模式(搜索范围)
+     * @param matchRules 匹配规则
+     * @param limit 最多返回的条数
+     * @return 搜索结果; 正则表达式不合法时返回空列表
+     */
+    List<SearchRecord> searchKeywords(Connection conn, String keywords, SearchMode searchMode, MatchRules matchRules, int limit);
+
+    /**
+     * 根据指定的范围, 关键字和匹配规则搜索结果, 最多返回 limit 条. 搜索被取消时提前结束
+     *
+     * @param conn 连接
+     * @param keywords 关键字; 匹配规则为 REGEX 时是完整的正则表达式
+     * @param searchMode  指定搜索模式(搜索范围)
+     * @param matchRules 匹配规则
+     * @param limit 最多返回的条数
+     * @param canceled 搜索是否已经被取消
+     * @return 搜索结果; 正则表达式不合法时返回空列表
+     * @throws java.util.concurrent.CancellationException 搜索已经被取消
+     */
+    List<SearchRecord> searchKeywords(Connection conn, String keywords, SearchMode searchMode, MatchRules matchRules, int limit,
+                                      BooleanSupplier canceled);
 }
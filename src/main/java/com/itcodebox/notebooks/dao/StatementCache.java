@@ -0,0 +1,129 @@
+package com.itcodebox.notebooks.dao;
+
+import org.apache.commons.dbcp.DelegatingConnection;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 每个物理连接一个 PreparedStatement 缓存(LRU), 相同的SQL不需要SQLite重新编译.
+ * 连接池每次返回的都是包装后的连接, 而且包装连接归还时会关闭通过它创建的语句,
+ * 所以按最内层的物理连接区分, 并直接在物理连接上创建语句.
+ * 同一个物理连接同一时刻只会被一个线程使用, 所以单个连接的缓存不需要同步.
+ *
+ * @author LeeWyatt
+ */
+public class StatementCache {
+    /**
+     * 每个连接最多缓存的语句数量, 超出时关闭最久没有使用的语句
+     */
+    public static final int MAX_STATEMENTS_PER_CONNECTION = 64;
+
+    private static final StatementCache INSTANCE = new StatementCache();
+
+    private final Map<Connection, LinkedHashMap<String, PreparedStatement>> caches = new IdentityHashMap<>();
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    private StatementCache() {
+    }
+
+    public static StatementCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * 获取缓存的语句; 使用完之后不要关闭它, 但是必须关闭ResultSet
+     *
+     * @param conn 连接
+     * @param sql  sql
+     * @return 缓存的(或者新创建的)语句
+     * @throws SQLException sql异常
+     */
+    public PreparedStatement prepare(Connection conn, String sql) throws SQLException {
+        Connection physical = unwrap(conn);
+        LinkedHashMap<String, PreparedStatement> cache = getCache(physical);
+        PreparedStatement statement = cache.get(sql);
+        if (statement != null && !statement.isClosed()) {
+            hitCount.incrementAndGet();
+            return statement;
+        }
+        missCount.incrementAndGet();
+        statement = physical.prepareStatement(sql);
+        cache.put(sql, statement);
+        return statement;
+    }
+
+    private synchronized LinkedHashMap<String, PreparedStatement> getCache(Connection physical) throws SQLException {
+        LinkedHashMap<String, PreparedStatement> cache = caches.get(physical);
+        if (cache == null) {
+            removeClosedConnections();
+            cache = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+                    if (size() <= MAX_STATEMENTS_PER_CONNECTION) {
+                        return false;
+                    }
+                    evictionCount.incrementAndGet();
+                    try {
+                        eldest.getValue().close();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                    return true;
+                }
+            };
+            caches.put(physical, cache);
+        }
+        return cache;
+    }
+
+    /**
+     * 连接池关闭了物理连接之后, 它的语句也已经失效
+     */
+    private void removeClosedConnections() throws SQLException {
+        Iterator<Connection> iterator = caches.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().isClosed()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 需要连接池开启 accessToUnderlyingConnectionAllowed, 否则只能按包装连接缓存
+     */
+    private Connection unwrap(Connection conn) {
+        if (conn instanceof DelegatingConnection) {
+            Connection innermost = ((DelegatingConnection) conn).getInnermostDelegate();
+            if (innermost != null) {
+                return innermost;
+            }
+        }
+        return conn;
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCache{hit=" + hitCount.get() + ", miss=" + missCount.get() + ", eviction=" + evictionCount.get() + '}';
+    }
+}
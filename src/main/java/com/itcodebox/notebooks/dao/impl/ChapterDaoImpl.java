@@ -1,6 +1,8 @@
 package com.itcodebox.notebooks.dao.impl;
 
 import com.itcodebox.notebooks.dao.BaseDAO;
+import com.itcodebox.notebooks.dao.mapper.ChapterRowMapper;
+import com.itcodebox.notebooks.dao.mapper.RowMapper;
 import com.itcodebox.notebooks.dao.ChapterDao;
 import com.itcodebox.notebooks.entity.Chapter;
 
@@ -24,6 +26,11 @@ public class ChapterDaoImpl extends BaseDAO<Chapter> implements ChapterDao {
         return instance;
     }
 
+    @Override
+    protected RowMapper<Chapter> createRowMapper() {
+        return new ChapterRowMapper();
+    }
+
     private static final String SELECT_SQL = "select id,notebook_id,title,create_time,update_time,show_order from chapter ";
 
     @Override
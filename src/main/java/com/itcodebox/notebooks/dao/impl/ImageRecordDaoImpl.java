@@ -0,0 +1,60 @@
+package com.itcodebox.notebooks.dao.impl;
+
+import com.itcodebox.notebooks.dao.BaseDAO;
+import com.itcodebox.notebooks.dao.ImageRecordDao;
+import com.itcodebox.notebooks.dao.mapper.ImageRecordRowMapper;
+import com.itcodebox.notebooks.dao.mapper.RowMapper;
+import com.itcodebox.notebooks.entity.ImageRecord;
+
+import java.sql.Connection;
+import java.util.List;
+
+/**
+ * @author LeeWyatt
+ */
+public class ImageRecordDaoImpl extends BaseDAO<ImageRecord> implements ImageRecordDao {
+    private static ImageRecordDaoImpl instance;
+
+    private static final String SELECT_SQL = "select image_record.note_id,image_record.title,image_record.description,image_record.image_path from image_record ";
+
+    public static synchronized ImageRecordDaoImpl getInstance() {
+        if (instance == null) {
+            instance = new ImageRecordDaoImpl();
+        }
+        return instance;
+    }
+
+    private ImageRecordDaoImpl() {
+    }
+
+    @Override
+    protected RowMapper<ImageRecord> createRowMapper() {
+        return new ImageRecordRowMapper();
+    }
+
+    @Override
+    public List<ImageRecord> findAllByNoteId(Connection conn, Integer noteId) {
+        String sql = SELECT_SQL + "where note_id=? order by show_order";
+        return queryList(conn, sql, noteId);
+    }
+
+    @Override
+    public List<ImageRecord> findAllByChapterId(Connection conn, Integer chapterId) {
+        // idx_note_chapter_order 找到笔记, 再按主键(note_id, show_order)取图片
+        String sql = SELECT_SQL + "inner join note on note.id=image_record.note_id where note.chapter_id=? order by note.show_order, image_record.show_order";
+        return queryList(conn, sql, chapterId);
+    }
+
+    @Override
+    public List<ImageRecord> findAllByNotebookId(Connection conn, Integer notebookId) {
+        String sql = SELECT_SQL + "inner join note on note.id=image_record.note_id where note.notebook_id=? order by image_record.note_id, image_record.show_order";
+        return queryList(conn, sql, notebookId);
+    }
+
+    @Override
+    public int countNotesByImagePath(Connection conn, String imagePath) {
+        String sql = "select count(distinct note_id) from image_record where image_path=?";
+        Number count = getValue(conn, sql, imagePath);
+        return count == null ? 0 : count.intValue();
+    }
+}
@@ -1,11 +1,15 @@
 package com.itcodebox.notebooks.dao.impl;
 
 import com.itcodebox.notebooks.dao.BaseDAO;
+import com.itcodebox.notebooks.dao.mapper.NoteRowMapper;
+import com.itcodebox.notebooks.dao.mapper.RowMapper;
 import com.itcodebox.notebooks.dao.NoteDao;
 import com.itcodebox.notebooks.entity.Note;
 
 import java.sql.Connection;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * @author LeeWyatt
@@ -23,8 +27,20 @@ public class NoteDaoImpl extends BaseDAO<Note> implements NoteDao {
         return instance;
     }
 
+    @Override
+    protected RowMapper<Note> createRowMapper() {
+        return new NoteRowMapper();
+    }
+
     private static final String SELECT_SQL = "select id,title,chapter_id,notebook_id,create_time,update_time,show_order,content,description,source,type,offset_start,offset_end,image_records from note ";
 
+    private static final String SELECT_SUMMARY_SQL = "select id,title,chapter_id,notebook_id,create_time,update_time,show_order,type from note ";
+
+    /**
+     * 摘要笔记没有加载正文, 所以只能更新元数据, 否则会把正文覆盖成空
+     */
+    private static final String UPDATE_SUMMARY_SQL = "update note set title=?,show_order=?,chapter_id=?,notebook_id=?,create_time=?,update_time=?,type=? where id =?";
+
     @Override
     public void insert(Connection conn, Note[] notes) {
         if (notes == null || notes.length == 0) {
@@ -75,15 +91,19 @@ public class NoteDaoImpl extends BaseDAO<Note> implements NoteDao {
         if (notes == null || notes.length == 0) {
             return;
         }
-        String sql = "update note set title=? ,show_order=?,chapter_id=?,notebook_id=?,create_time=?,update_time=?,content=?,description=?,source=?,type=?,offset_start=?,offset_end=?,image_records=? where id =?";
-        int size = notes.length;
-        if (size == 1) {
-            Note note = notes[0];
-            update(conn, sql, note.getTitle(), note.getShowOrder(), note.getChapterId(), note.getNotebookId(), note.getCreateTime(), note.getUpdateTime(), note.getContent(), note.getDescription(), note.getSource(), note.getType(),note.getOffsetStart(),note.getOffsetEnd(),note.getImageRecords(), note.getId());
-        } else {
+        List<Note> fullNotes = new ArrayList<>();
+        List<Note> summaryNotes = new ArrayList<>();
+        for (Note note : notes) {
+            (note.isSummary() ? summaryNotes : fullNotes).add(note);
+        }
+        if (fullNotes.size() == 1) {
+            update(conn, fullNotes.get(0));
+        } else if (!fullNotes.isEmpty()) {
+            String sql = "update note set title=? ,show_order=?,chapter_id=?,notebook_id=?,create_time=?,update_time=?,content=?,description=?,source=?,type=?,offset_start=?,offset_end=?,image_records=? where id =?";
+            int size = fullNotes.size();
             Object[][] args = new Object[size][14];
             for (int i = 0; i < size; i++) {
-                Note note = notes[i];
+                Note note = fullNotes.get(i);
                 args[i][0] = note.getTitle();
                 args[i][1] = note.getShowOrder();
                 args[i][2] = note.getChapterId();
@@ -101,10 +121,32 @@ public class NoteDaoImpl extends BaseDAO<Note> implements NoteDao {
             }
             updateBatch(conn, sql, args);
         }
+        if (summaryNotes.size() == 1) {
+            update(conn, summaryNotes.get(0));
+        } else if (!summaryNotes.isEmpty()) {
+            int size = summaryNotes.size();
+            Object[][] args = new Object[size][8];
+            for (int i = 0; i < size; i++) {
+                Note note = summaryNotes.get(i);
+                args[i][0] = note.getTitle();
+                args[i][1] = note.getShowOrder();
+                args[i][2] = note.getChapterId();
+                args[i][3] = note.getNotebookId();
+                args[i][4] = note.getCreateTime();
+                args[i][5] = note.getUpdateTime();
+                args[i][6] = note.getType();
+                args[i][7] = note.getId();
+            }
+            updateBatch(conn, UPDATE_SUMMARY_SQL, args);
+        }
     }
 
     @Override
     public void update(Connection conn, Note note) {
+        if (note.isSummary()) {
+            update(conn, UPDATE_SUMMARY_SQL, note.getTitle(), note.getShowOrder(), note.getChapterId(), note.getNotebookId(), note.getCreateTime(), note.getUpdateTime(), note.getType(), note.getId());
+            return;
+        }
         String sql = "update note set title=?,show_order=?,chapter_id=?,notebook_id=?,create_time=?,update_time=?,content=?,description=?,source=?,type=?,offset_start=?,offset_end=?,image_records=? where id =?";
         update(conn, sql, note.getTitle(), note.getShowOrder(), note.getChapterId(), note.getNotebookId(), note.getCreateTime(), note.getUpdateTime(), note.getContent(), note.getDescription(), note.getSource(), note.getType(), note.getOffsetStart(),note.getOffsetEnd(),note.getImageRecords(),note.getId());
     }
@@ -131,6 +173,31 @@ public class NoteDaoImpl extends BaseDAO<Note> implements NoteDao {
         return queryList(conn, sql, chapterId);
     }
 
+    @Override
+    public List<Note> findSummariesByChapterId(Connection conn, Integer chapterId) {
+        String sql = SELECT_SUMMARY_SQL + "where chapter_id=? order by show_order asc";
+        List<Note> notes = queryList(conn, sql, chapterId);
+        if (notes != null) {
+            for (Note note : notes) {
+                note.setSummary(true);
+            }
+        }
+        return notes;
+    }
+
+    @Override
+    public List<Note> findAllByIds(Connection conn, List<Integer> ids) {
+        if (ids == null || ids.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder sql = new StringBuilder(SELECT_SQL).append("where id in (?");
+        for (int i = 1; i < ids.size(); i++) {
+            sql.append(",?");
+        }
+        sql.append(")");
+        return queryList(conn, sql.toString(), ids.toArray());
+    }
+
     @Override
     public void deleteAllByChapterId(Connection conn, Integer chapterId) {
         String sql = "delete from note where chapter_id =?";
@@ -170,21 +237,23 @@ public class NoteDaoImpl extends BaseDAO<Note> implements NoteDao {
     }
 
     @Override
-    public List<String> getImageRecordsByNotebookId(Connection conn, int notebookId) {
-        String sql = "select image_records from note where notebook_id=?";
-        return queryImageRecords(conn,sql,notebookId);
+    public boolean forEachByChapterId(Connection conn, Integer chapterId, Consumer<Note> consumer) {
+        String sql = SELECT_SQL + "where chapter_id=? order by show_order asc";
+        return forEachBean(conn, sql, consumer, chapterId);
     }
 
     @Override
-    public List<String> getImageRecordsByChapterId(Connection conn, int chapterId) {
-            String sql = "select image_records from note where chapter_id=?";
-            return queryImageRecords(conn,sql,chapterId);
+    public int countByNotebookId(Connection conn, Integer notebookId) {
+        Number count = notebookId == null
+                ? getValue(conn, "select count(*) from note")
+                : getValue(conn, "select count(*) from note where notebook_id=?", notebookId);
+        return count == null ? 0 : count.intValue();
     }
 
     @Override
-    public List<String> getImageRecordsByNoteId(Connection conn, int noteId) {
-        String sql = "select image_records from note where id=?";
-        return queryImageRecords(conn,sql,noteId);
+    public boolean forEachImageRecords(Connection conn, Consumer<String> consumer) {
+        String sql = "select image_records from note where image_records is not null and image_records != ''";
+        return forEachColumn(conn, sql, "image_records", consumer);
     }
 
 }
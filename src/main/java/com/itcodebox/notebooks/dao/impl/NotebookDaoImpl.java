@@ -1,6 +1,8 @@
 package com.itcodebox.notebooks.dao.impl;
 
 import com.itcodebox.notebooks.dao.BaseDAO;
+import com.itcodebox.notebooks.dao.mapper.NotebookRowMapper;
+import com.itcodebox.notebooks.dao.mapper.RowMapper;
 import com.itcodebox.notebooks.dao.NotebookDao;
 import com.itcodebox.notebooks.entity.Notebook;
 
@@ -24,6 +26,11 @@ public class NotebookDaoImpl extends BaseDAO<Notebook> implements NotebookDao {
         return instance;
     }
 
+    @Override
+    protected RowMapper<Notebook> createRowMapper() {
+        return new NotebookRowMapper();
+    }
+
     private static final String SELECT_SQL = "select id,title,show_order,create_time,update_time from notebook ";
 
     @Override
@@ -1,15 +1,23 @@
 package com.itcodebox.notebooks.dao.impl;
 
 import com.itcodebox.notebooks.dao.BaseDAO;
+import com.itcodebox.notebooks.dao.mapper.SearchRecordRowMapper;
+import com.itcodebox.notebooks.dao.mapper.RowMapper;
 import com.itcodebox.notebooks.dao.SearchRecordDao;
 import com.itcodebox.notebooks.entity.SearchMode;
 import com.itcodebox.notebooks.entity.SearchRecord;
+import com.itcodebox.notebooks.utils.MatchRules;
+import com.itcodebox.notebooks.utils.ParallelSearchScanner;
+import com.itcodebox.notebooks.utils.RegexLiterals;
+import com.itcodebox.notebooks.utils.SearchRanker;
 import com.itcodebox.notebooks.utils.StringUtil;
 
 import java.sql.Connection;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
 
 /**
  * @author LeeWyatt
@@ -25,6 +33,29 @@ public class SearchRecordDaoImpl extends BaseDAO<SearchRecord> implements Search
 
     String sqlSearchNotebook ="SELECT id AS notebook_id, title AS notebook_title FROM notebook where ";
 
+    /**
+     * 全文搜索笔记, 只用于筛选包含全部关键字的笔记, 排序由 SearchRanker 完成. snippet 用 char(2)/char(3) 标记匹配的关键字
+     */
+    String sqlFtsSearchNote = "SELECT note.type,note.content,note.description,note.id AS note_id,note.title AS note_title,note.chapter_id AS chapter_id,chapter.title AS chapter_title,note.notebook_id AS notebook_id,notebook.title AS notebook_title," +
+            "snippet(note_fts, -1, char(2), char(3), '...', 24) AS snippet FROM note_fts " +
+            "INNER JOIN note ON note.id=note_fts.rowid INNER JOIN chapter ON note.chapter_id=chapter.id INNER JOIN notebook ON notebook.id=note.notebook_id " +
+            "WHERE note_fts MATCH ?";
+
+    /**
+     * 正则表达式搜索时, 用正则表达式中一定包含的字符串在全文索引中筛选候选的笔记, 再用正则表达式验证
+     */
+    String sqlFtsCandidateNote = sqlSearchNote + "note.id IN (SELECT rowid FROM note_fts WHERE note_fts MATCH ?)";
+
+    /**
+     * trigram 分词器无法匹配少于3个字符的关键字
+     */
+    private static final int FTS_MIN_KEYWORD_LENGTH = 3;
+
+    private static final String[] NOTEBOOK_COLUMNS = {"title"};
+    private static final String[] CHAPTER_COLUMNS = {"chapter.title"};
+
+    private volatile Boolean ftsAvailable;
+
 
     public static synchronized SearchRecordDaoImpl getInstance() {
         if (instance == null) {
@@ -33,73 +64,205 @@ public class SearchRecordDaoImpl extends BaseDAO<SearchRecord> implements Search
         return instance;
     }
 
+    @Override
+    protected RowMapper<SearchRecord> createRowMapper() {
+        return new SearchRecordRowMapper();
+    }
+
     @Override
     public List<SearchRecord> searchKeywords(Connection conn, String keywords, SearchMode searchMode) {
-        String[] kws = StringUtil.splitKeywords(keywords);
-        if (SearchMode.Note == searchMode) {
-            return  getRecordList(conn, kws, sqlSearchNote, "note.title like ? ", 1);
-        } else if (SearchMode.NoteAndContent == searchMode) {
-            return  getRecordList(conn, kws, sqlSearchNote, "note.title like ? or note.content like ? ", 2);
-        } else if (SearchMode.NoteAndDescription == searchMode) {
-            return getRecordList(conn, kws, sqlSearchNote, "note.title like ? or note.description like ? ", 2);
-        } else if (SearchMode.NoteAndContentAndDescription == searchMode) {
-            return getRecordList(conn, kws, sqlSearchNote, "note.title like ? or note.content like ? or note.description like ? ", 3);
-        } else if (SearchMode.Chapter == searchMode) {
-            return getRecordList(conn, kws, sqlSearchChapter, "chapter.title like ? ", 1);
-        } else if (SearchMode.Notebook == searchMode) {
-            return getRecordList(conn, kws, sqlSearchNotebook, "title like ? ", 1);
-        } else if (SearchMode.All == searchMode) {
-            List<SearchRecord> notebookList = getRecordList(conn, kws, sqlSearchNotebook, "title like ? ", 1);
-            notebookList.addAll(getRecordList(conn, kws, sqlSearchChapter, "chapter.title like ? ", 1));
-            notebookList.addAll(getRecordList(conn, kws, sqlSearchNote, "note.title like ? ", 1));
-            notebookList.sort(Comparator.comparing(SearchRecord::toString));
-            return notebookList;
-        } else if (SearchMode.AllAndContent == searchMode) {
-            List<SearchRecord> notebookList = getRecordList(conn, kws, sqlSearchNotebook, "title like ? ", 1);
-            notebookList.addAll(getRecordList(conn, kws, sqlSearchChapter, "chapter.title like ? ", 1));
-            notebookList.addAll(getRecordList(conn, kws, sqlSearchNote, "note.title like ? or note.content like ? ", 2));
-            notebookList.sort(Comparator.comparing(SearchRecord::toString));
-            return notebookList;
-        }else if (SearchMode.AllAndDescription == searchMode) {
-            List<SearchRecord> notebookList = getRecordList(conn, kws, sqlSearchNotebook, "title like ? ", 1);
-            notebookList.addAll(getRecordList(conn, kws, sqlSearchChapter, "chapter.title like ? ", 1));
-            notebookList.addAll(getRecordList(conn, kws, sqlSearchNote, "note.title like ? or note.description like ? ", 2));
-            notebookList.sort(Comparator.comparing(SearchRecord::toString));
-            return notebookList;
-        }else if (SearchMode.AllAndContentAndDescription == searchMode) {
-            List<SearchRecord> notebookList = getRecordList(conn, kws, sqlSearchNotebook, "title like ? ", 1);
-            notebookList.addAll(getRecordList(conn, kws, sqlSearchChapter, "chapter.title like ? ", 1));
-            notebookList.addAll(getRecordList(conn, kws, sqlSearchNote, "note.title like ? or note.content like ? or note.description like ? ", 3));
-            notebookList.sort(Comparator.comparing(SearchRecord::toString));
-            return notebookList;
-        }
-        return new ArrayList<SearchRecord>();
+        return searchKeywords(conn, keywords, searchMode, Integer.MAX_VALUE);
     }
 
+    @Override
+    public List<SearchRecord> searchKeywords(Connection conn, String keywords, SearchMode searchMode, int limit) {
+        return searchKeywords(conn, keywords, searchMode, MatchRules.IGNORE_CASE, limit);
+    }
 
+    @Override
+    public List<SearchRecord> searchKeywords(Connection conn, String keywords, SearchMode searchMode, MatchRules matchRules, int limit) {
+        return searchKeywords(conn, keywords, searchMode, matchRules, limit, () -> false);
+    }
 
-    private List<SearchRecord> getRecordList(Connection conn, String[] kws, String sqlSearNote, String s,int times) {
+    @Override
+    public List<SearchRecord> searchKeywords(Connection conn, String keywords, SearchMode searchMode, MatchRules matchRules, int limit,
+                                             BooleanSupplier canceled) {
+        if (matchRules == MatchRules.REGEX) {
+            return searchRegex(conn, keywords, searchMode, limit, canceled);
+        }
+        String[] kws = StringUtil.splitRawKeywords(keywords);
         if (kws == null) {
             return new ArrayList<SearchRecord>();
         }
+        boolean all = searchMode == SearchMode.All || searchMode == SearchMode.AllAndContent
+                || searchMode == SearchMode.AllAndDescription || searchMode == SearchMode.AllAndContentAndDescription;
+        boolean content = searchMode == SearchMode.NoteAndContent || searchMode == SearchMode.NoteAndContentAndDescription
+                || searchMode == SearchMode.AllAndContent || searchMode == SearchMode.AllAndContentAndDescription;
+        boolean description = searchMode == SearchMode.NoteAndDescription || searchMode == SearchMode.NoteAndContentAndDescription
+                || searchMode == SearchMode.AllAndDescription || searchMode == SearchMode.AllAndContentAndDescription;
+        //like 和全文索引都不区分大小写, 筛选的结果包含区分大小写的结果, 由 SearchRanker 再次验证
+        SearchRanker ranker = new SearchRanker(kws, matchRules == MatchRules.MATCH_CASE, description, content, limit);
+        ParallelSearchScanner scanner = new ParallelSearchScanner(ranker, canceled);
+        if (all || SearchMode.Notebook == searchMode) {
+            forEachBean(conn, buildLikeSql(sqlSearchNotebook, NOTEBOOK_COLUMNS, kws.length), scanner, toLikeArgs(kws, 1));
+        }
+        if (all || SearchMode.Chapter == searchMode) {
+            forEachBean(conn, buildLikeSql(sqlSearchChapter, CHAPTER_COLUMNS, kws.length), scanner, toLikeArgs(kws, 1));
+        }
+        if (SearchMode.Notebook != searchMode && SearchMode.Chapter != searchMode) {
+            searchNotes(conn, kws, description, content, scanner);
+        }
+        return scanner.getResult();
+    }
+
+    /**
+     * 按正则表达式搜索. 笔记本和章节的数量不多, 直接逐条验证标题;
+     * 笔记先用正则表达式中一定包含的字符串在全文索引中筛选, 无法筛选时(如 \d+ 或 a|b)逐条验证全部笔记
+     */
+    private List<SearchRecord> searchRegex(Connection conn, String regex, SearchMode searchMode, int limit, BooleanSupplier canceled) {
+        Pattern pattern = compile(regex);
+        if (pattern == null) {
+            return new ArrayList<SearchRecord>();
+        }
+        boolean all = searchMode == SearchMode.All || searchMode == SearchMode.AllAndContent
+                || searchMode == SearchMode.AllAndDescription || searchMode == SearchMode.AllAndContentAndDescription;
+        boolean content = searchMode == SearchMode.NoteAndContent || searchMode == SearchMode.NoteAndContentAndDescription
+                || searchMode == SearchMode.AllAndContent || searchMode == SearchMode.AllAndContentAndDescription;
+        boolean description = searchMode == SearchMode.NoteAndDescription || searchMode == SearchMode.NoteAndContentAndDescription
+                || searchMode == SearchMode.AllAndDescription || searchMode == SearchMode.AllAndContentAndDescription;
+        ParallelSearchScanner scanner = new ParallelSearchScanner(new SearchRanker(pattern, description, content, limit), canceled);
+        if (all || SearchMode.Notebook == searchMode) {
+            forEachBean(conn, sqlSearchNotebook + "1", scanner);
+        }
+        if (all || SearchMode.Chapter == searchMode) {
+            forEachBean(conn, sqlSearchChapter + "1", scanner);
+        }
+        if (SearchMode.Notebook != searchMode && SearchMode.Chapter != searchMode) {
+            List<String> literals = new ArrayList<>();
+            for (String literal : RegexLiterals.requiredLiterals(regex)) {
+                if (literal.codePointCount(0, literal.length()) >= FTS_MIN_KEYWORD_LENGTH) {
+                    literals.add(literal);
+                }
+            }
+            if (isFtsAvailable(conn) && !literals.isEmpty()) {
+                forEachBean(conn, sqlFtsCandidateNote, scanner,
+                        buildMatchExpression(ftsColumns(description, content), literals.toArray(new String[0])));
+            } else {
+                forEachBean(conn, sqlSearchNote + "1", scanner);
+            }
+        }
+        return scanner.getResult();
+    }
+
+    /**
+     * @return 不是合法的正则表达式时返回null
+     */
+    private Pattern compile(String regex) {
+        if (regex == null || regex.isEmpty()) {
+            return null;
+        }
+        try {
+            return Pattern.compile(regex);
+        } catch (PatternSyntaxException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 优先使用全文索引筛选笔记; 如果全文索引不可用, 或者关键字太短, 那么使用 like 筛选.
+     * 筛选的结果逐行交给 ParallelSearchScanner, 不会全部保存在内存中
+     */
+    private void searchNotes(Connection conn, String[] kws, boolean description, boolean content, ParallelSearchScanner scanner) {
+        if (isFtsAvailable(conn) && isFtsSearchable(kws)) {
+            forEachBean(conn, sqlFtsSearchNote, scanner, buildMatchExpression(ftsColumns(description, content), kws));
+            return;
+        }
+        List<String> columns = new ArrayList<>(3);
+        columns.add("note.title");
+        if (content) {
+            columns.add("note.content");
+        }
+        if (description) {
+            columns.add("note.description");
+        }
+        forEachBean(conn, buildLikeSql(sqlSearchNote, columns.toArray(new String[0]), kws.length), scanner,
+                toLikeArgs(kws, columns.size()));
+    }
+
+    private boolean isFtsAvailable(Connection conn) {
+        if (ftsAvailable == null) {
+            Number count = getValue(conn, "select count(*) from sqlite_master where type='table' and name='note_fts'");
+            ftsAvailable = count != null && count.intValue() > 0;
+        }
+        return ftsAvailable;
+    }
+
+    private boolean isFtsSearchable(String[] rawKws) {
+        for (String kw : rawKws) {
+            if (kw.codePointCount(0, kw.length()) < FTS_MIN_KEYWORD_LENGTH) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String ftsColumns(boolean description, boolean content) {
+        return "title" + (description ? " description" : "") + (content ? " content" : "");
+    }
+
+    /**
+     * 生成 MATCH 表达式, 如: {title content} : ("kw1" AND "kw2")
+     * 每个关键字都作为字符串处理, 避免关键字中的特殊字符被解析为FTS5语法
+     */
+    private String buildMatchExpression(String ftsColumns, String[] rawKws) {
+        StringBuilder builder = new StringBuilder(128);
+        builder.append('{').append(ftsColumns).append("} : (");
+        for (int i = 0; i < rawKws.length; i++) {
+            if (i != 0) {
+                builder.append(" AND ");
+            }
+            builder.append('"').append(rawKws[i].replace("\"", "\"\"")).append('"');
+        }
+        return builder.append(')').toString();
+    }
+
+    /**
+     * 生成 like 条件: 每个关键字都要出现在其中一列中, 如:
+     * (title like ? escape '/' or content like ? escape '/') and (title like ? escape '/' or content like ? escape '/')
+     */
+    private String buildLikeSql(String sqlSelect, String[] columns, int kwCount) {
         StringBuilder builder = new StringBuilder(512);
-        builder.append(sqlSearNote);
-        int len = kws.length;
-        Object[] objs = new Object[len*times];
+        builder.append(sqlSelect);
+        for (int i = 0; i < kwCount; i++) {
+            if (i != 0) {
+                builder.append(" and ");
+            }
+            builder.append('(');
+            for (int j = 0; j < columns.length; j++) {
+                if (j != 0) {
+                    builder.append(" or ");
+                }
+                //注意: 每个 like 都需要写下转义字符用的是什么
+                builder.append(columns[j]).append(" like ? escape '/'");
+            }
+            builder.append(')');
+        }
+        return builder.toString();
+    }
 
-        for (int i = 0; i < len; i++) {
+    /**
+     * 每个关键字重复 times 次, 和 buildLikeSql 中的参数对应
+     */
+    private Object[] toLikeArgs(String[] kws, int times) {
+        Object[] objs = new Object[kws.length * times];
+        for (int i = 0; i < kws.length; i++) {
             // 注意:如果是在完整的SQL语句里, 应该是 '%keywords%'
             // 当作为参数传递进去时 , 不需要外层的单独引号 %keywords%
+            String pattern = "%" + StringUtil.likeEscape(kws[i]) + "%";
             for (int j = 0; j < times; j++) {
-                objs[i * times+j] = "%" + kws[i] + "%";
-            }
-            builder.append(s);
-            if (i != len - 1) {
-                builder.append(" or ");
+                objs[i * times + j] = pattern;
             }
         }
-        //注意: 需要在sql语句里写下转义字符用的 转义符号是什么
-        builder.append("escape '/'");
-        return queryList(conn, builder.toString(), objs);
+        return objs;
     }
 }
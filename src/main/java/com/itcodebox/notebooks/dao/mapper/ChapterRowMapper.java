@@ -0,0 +1,53 @@
+package com.itcodebox.notebooks.dao.mapper;
+
+import com.itcodebox.notebooks.entity.Chapter;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * @author LeeWyatt
+ */
+public class ChapterRowMapper extends RowMapper<Chapter> {
+    private static final int ID = 0;
+    private static final int NOTEBOOK_ID = 1;
+    private static final int TITLE = 2;
+    private static final int CREATE_TIME = 3;
+    private static final int UPDATE_TIME = 4;
+    private static final int SHOW_ORDER = 5;
+
+    public ChapterRowMapper() {
+        super("id", "notebook_id", "title", "create_time", "update_time", "show_order");
+    }
+
+    @Override
+    protected Chapter newInstance() {
+        return new Chapter();
+    }
+
+    @Override
+    protected void setField(Chapter chapter, int fieldCode, ResultSet rs, int columnIndex) throws SQLException {
+        switch (fieldCode) {
+            case ID:
+                chapter.setId(getInteger(rs, columnIndex));
+                break;
+            case NOTEBOOK_ID:
+                chapter.setNotebookId(getInteger(rs, columnIndex));
+                break;
+            case TITLE:
+                chapter.setTitle(rs.getString(columnIndex));
+                break;
+            case CREATE_TIME:
+                chapter.setCreateTime(getLong(rs, columnIndex));
+                break;
+            case UPDATE_TIME:
+                chapter.setUpdateTime(getLong(rs, columnIndex));
+                break;
+            case SHOW_ORDER:
+                chapter.setShowOrder(getInteger(rs, columnIndex));
+                break;
+            default:
+                break;
+        }
+    }
+}
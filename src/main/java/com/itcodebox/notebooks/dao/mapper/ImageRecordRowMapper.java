@@ -0,0 +1,47 @@
+package com.itcodebox.notebooks.dao.mapper;
+
+import com.itcodebox.notebooks.entity.ImageRecord;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * image_record 表的列名和 ImageRecord 的属性名不同(JSON里是 imageTitle, imageDesc, imagePath)
+ *
+ * @author LeeWyatt
+ */
+public class ImageRecordRowMapper extends RowMapper<ImageRecord> {
+    private static final int NOTE_ID = 0;
+    private static final int TITLE = 1;
+    private static final int DESCRIPTION = 2;
+    private static final int IMAGE_PATH = 3;
+
+    public ImageRecordRowMapper() {
+        super("note_id", "title", "description", "image_path");
+    }
+
+    @Override
+    protected ImageRecord newInstance() {
+        return new ImageRecord();
+    }
+
+    @Override
+    protected void setField(ImageRecord record, int fieldCode, ResultSet rs, int columnIndex) throws SQLException {
+        switch (fieldCode) {
+            case NOTE_ID:
+                record.setNoteId(getInteger(rs, columnIndex));
+                break;
+            case TITLE:
+                record.setImageTitle(rs.getString(columnIndex));
+                break;
+            case DESCRIPTION:
+                record.setImageDesc(rs.getString(columnIndex));
+                break;
+            case IMAGE_PATH:
+                record.setImagePath(rs.getString(columnIndex));
+                break;
+            default:
+                break;
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.itcodebox.notebooks.dao.mapper;
+
+import com.itcodebox.notebooks.entity.Note;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * @author LeeWyatt
+ */
+public class NoteRowMapper extends RowMapper<Note> {
+    private static final int ID = 0;
+    private static final int TITLE = 1;
+    private static final int CHAPTER_ID = 2;
+    private static final int NOTEBOOK_ID = 3;
+    private static final int CREATE_TIME = 4;
+    private static final int UPDATE_TIME = 5;
+    private static final int SHOW_ORDER = 6;
+    private static final int CONTENT = 7;
+    private static final int DESCRIPTION = 8;
+    private static final int SOURCE = 9;
+    private static final int TYPE = 10;
+    private static final int OFFSET_START = 11;
+    private static final int OFFSET_END = 12;
+    private static final int IMAGE_RECORDS = 13;
+
+    public NoteRowMapper() {
+        super("id", "title", "chapter_id", "notebook_id", "create_time", "update_time", "show_order",
+                "content", "description", "source", "type", "offset_start", "offset_end", "image_records");
+    }
+
+    @Override
+    protected Note newInstance() {
+        return new Note();
+    }
+
+    @Override
+    protected void setField(Note note, int fieldCode, ResultSet rs, int columnIndex) throws SQLException {
+        switch (fieldCode) {
+            case ID:
+                note.setId(getInteger(rs, columnIndex));
+                break;
+            case TITLE:
+                note.setTitle(rs.getString(columnIndex));
+                break;
+            case CHAPTER_ID:
+                note.setChapterId(getInteger(rs, columnIndex));
+                break;
+            case NOTEBOOK_ID:
+                note.setNotebookId(getInteger(rs, columnIndex));
+                break;
+            case CREATE_TIME:
+                note.setCreateTime(getLong(rs, columnIndex));
+                break;
+            case UPDATE_TIME:
+                note.setUpdateTime(getLong(rs, columnIndex));
+                break;
+            case SHOW_ORDER:
+                note.setShowOrder(getInteger(rs, columnIndex));
+                break;
+            case CONTENT:
+                note.setContent(rs.getString(columnIndex));
+                break;
+            case DESCRIPTION:
+                note.setDescription(rs.getString(columnIndex));
+                break;
+            case SOURCE:
+                note.setSource(rs.getString(columnIndex));
+                break;
+            case TYPE:
+                note.setType(rs.getString(columnIndex));
+                break;
+            case OFFSET_START:
+                note.setOffsetStart(rs.getInt(columnIndex));
+                break;
+            case OFFSET_END:
+                note.setOffsetEnd(rs.getInt(columnIndex));
+                break;
+            case IMAGE_RECORDS:
+                note.setImageRecords(rs.getString(columnIndex));
+                break;
+            default:
+                break;
+        }
+    }
+}
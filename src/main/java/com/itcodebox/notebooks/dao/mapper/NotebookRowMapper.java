@@ -0,0 +1,49 @@
+package com.itcodebox.notebooks.dao.mapper;
+
+import com.itcodebox.notebooks.entity.Notebook;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * @author LeeWyatt
+ */
+public class NotebookRowMapper extends RowMapper<Notebook> {
+    private static final int ID = 0;
+    private static final int TITLE = 1;
+    private static final int SHOW_ORDER = 2;
+    private static final int CREATE_TIME = 3;
+    private static final int UPDATE_TIME = 4;
+
+    public NotebookRowMapper() {
+        super("id", "title", "show_order", "create_time", "update_time");
+    }
+
+    @Override
+    protected Notebook newInstance() {
+        return new Notebook();
+    }
+
+    @Override
+    protected void setField(Notebook notebook, int fieldCode, ResultSet rs, int columnIndex) throws SQLException {
+        switch (fieldCode) {
+            case ID:
+                notebook.setId(getInteger(rs, columnIndex));
+                break;
+            case TITLE:
+                notebook.setTitle(rs.getString(columnIndex));
+                break;
+            case SHOW_ORDER:
+                notebook.setShowOrder(getInteger(rs, columnIndex));
+                break;
+            case CREATE_TIME:
+                notebook.setCreateTime(getLong(rs, columnIndex));
+                break;
+            case UPDATE_TIME:
+                notebook.setUpdateTime(getLong(rs, columnIndex));
+                break;
+            default:
+                break;
+        }
+    }
+}
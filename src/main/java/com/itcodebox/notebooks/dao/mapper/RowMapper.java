@@ -0,0 +1,122 @@
+package com.itcodebox.notebooks.dao.mapper;
+
+import org.apache.commons.dbutils.ResultSetHandler;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 把查询结果转换成实体对象, 用于代替 GenerousBeanProcessor 的反射映射.
+ * 每个ResultSet只根据列名解析一次列的位置, 之后每一行都按索引读取, 并直接调用setter.
+ * 每个DAO只需要创建一个实例.
+ *
+ * @param <T> 实体类型
+ * @author LeeWyatt
+ */
+public abstract class RowMapper<T> {
+    /**
+     * 列名(小写) -> 字段编号, 字段编号就是构造方法中列名的顺序
+     */
+    private final Map<String, Integer> fieldCodes = new HashMap<>();
+
+    private final ResultSetHandler<List<T>> listHandler = this::mapRows;
+    private final ResultSetHandler<T> beanHandler = this::mapFirstRow;
+
+    /**
+     * @param columns 支持的列名, 顺序对应 setField 中的字段编号
+     */
+    protected RowMapper(String... columns) {
+        for (int i = 0; i < columns.length; i++) {
+            fieldCodes.put(columns[i], i);
+        }
+    }
+
+    public ResultSetHandler<List<T>> getListHandler() {
+        return listHandler;
+    }
+
+    public ResultSetHandler<T> getBeanHandler() {
+        return beanHandler;
+    }
+
+    public List<T> mapRows(ResultSet rs) throws SQLException {
+        int[] codes = resolveColumns(rs.getMetaData());
+        List<T> list = new ArrayList<>();
+        while (rs.next()) {
+            list.add(mapRow(rs, codes));
+        }
+        return list;
+    }
+
+    /**
+     * 逐行转换并处理, 不保存结果
+     */
+    public void forEachRow(ResultSet rs, Consumer<T> consumer) throws SQLException {
+        int[] codes = resolveColumns(rs.getMetaData());
+        while (rs.next()) {
+            consumer.accept(mapRow(rs, codes));
+        }
+    }
+
+    public T mapFirstRow(ResultSet rs) throws SQLException {
+        int[] codes = resolveColumns(rs.getMetaData());
+        return rs.next() ? mapRow(rs, codes) : null;
+    }
+
+    /**
+     * @return 每一列对应的字段编号, 不认识的列为 -1
+     */
+    private int[] resolveColumns(ResultSetMetaData metaData) throws SQLException {
+        int count = metaData.getColumnCount();
+        int[] codes = new int[count];
+        for (int i = 0; i < count; i++) {
+            String label = metaData.getColumnLabel(i + 1);
+            Integer code = label == null ? null : fieldCodes.get(label.toLowerCase(Locale.ROOT));
+            codes[i] = code == null ? -1 : code;
+        }
+        return codes;
+    }
+
+    private T mapRow(ResultSet rs, int[] codes) throws SQLException {
+        T t = newInstance();
+        for (int i = 0; i < codes.length; i++) {
+            if (codes[i] >= 0) {
+                setField(t, codes[i], rs, i + 1);
+            }
+        }
+        return t;
+    }
+
+    /**
+     * @return 新的空对象
+     */
+    protected abstract T newInstance();
+
+    /**
+     * 把当前行的某一列设置到对象上
+     *
+     * @param t           对象
+     * @param fieldCode   字段编号
+     * @param rs          结果集
+     * @param columnIndex 列的索引, 从1开始
+     * @throws SQLException sql异常
+     */
+    protected abstract void setField(T t, int fieldCode, ResultSet rs, int columnIndex) throws SQLException;
+
+    protected static Integer getInteger(ResultSet rs, int columnIndex) throws SQLException {
+        int value = rs.getInt(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    protected static Long getLong(ResultSet rs, int columnIndex) throws SQLException {
+        long value = rs.getLong(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+}
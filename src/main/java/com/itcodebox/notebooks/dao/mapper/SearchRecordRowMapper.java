@@ -0,0 +1,72 @@
+package com.itcodebox.notebooks.dao.mapper;
+
+import com.itcodebox.notebooks.entity.SearchRecord;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * 搜索的SQL根据搜索范围返回不同的列, 所以按列名解析位置
+ *
+ * @author LeeWyatt
+ */
+public class SearchRecordRowMapper extends RowMapper<SearchRecord> {
+    private static final int NOTEBOOK_ID = 0;
+    private static final int NOTEBOOK_TITLE = 1;
+    private static final int CHAPTER_ID = 2;
+    private static final int CHAPTER_TITLE = 3;
+    private static final int NOTE_ID = 4;
+    private static final int NOTE_TITLE = 5;
+    private static final int TYPE = 6;
+    private static final int CONTENT = 7;
+    private static final int DESCRIPTION = 8;
+    private static final int SNIPPET = 9;
+
+    public SearchRecordRowMapper() {
+        super("notebook_id", "notebook_title", "chapter_id", "chapter_title", "note_id", "note_title",
+                "type", "content", "description", "snippet");
+    }
+
+    @Override
+    protected SearchRecord newInstance() {
+        return new SearchRecord();
+    }
+
+    @Override
+    protected void setField(SearchRecord record, int fieldCode, ResultSet rs, int columnIndex) throws SQLException {
+        switch (fieldCode) {
+            case NOTEBOOK_ID:
+                record.setNotebookId(getInteger(rs, columnIndex));
+                break;
+            case NOTEBOOK_TITLE:
+                record.setNotebookTitle(rs.getString(columnIndex));
+                break;
+            case CHAPTER_ID:
+                record.setChapterId(getInteger(rs, columnIndex));
+                break;
+            case CHAPTER_TITLE:
+                record.setChapterTitle(rs.getString(columnIndex));
+                break;
+            case NOTE_ID:
+                record.setNoteId(getInteger(rs, columnIndex));
+                break;
+            case NOTE_TITLE:
+                record.setNoteTitle(rs.getString(columnIndex));
+                break;
+            case TYPE:
+                record.setType(rs.getString(columnIndex));
+                break;
+            case CONTENT:
+                record.setContent(rs.getString(columnIndex));
+                break;
+            case DESCRIPTION:
+                record.setDescription(rs.getString(columnIndex));
+                break;
+            case SNIPPET:
+                record.setSnippet(rs.getString(columnIndex));
+                break;
+            default:
+                break;
+        }
+    }
+}
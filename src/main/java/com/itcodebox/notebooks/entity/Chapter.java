@@ -6,7 +6,7 @@
 package com.itcodebox.notebooks.entity;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itcodebox.notebooks.utils.JsonUtil;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -45,7 +45,7 @@ public class Chapter extends Record  {
     @Override
     public String toString() {
         try {
-            return new ObjectMapper().writeValueAsString(this);
+            return JsonUtil.CHAPTER_WRITER.writeValueAsString(this);
         } catch (JsonProcessingException e) {
             e.printStackTrace();
         }
@@ -53,9 +53,8 @@ public class Chapter extends Record  {
     }
 
     public Chapter(String jsonStr) {
-        ObjectMapper objectMapper = new ObjectMapper();
         try {
-            Chapter chapter = objectMapper.readValue(jsonStr, Chapter.class);
+            Chapter chapter = JsonUtil.CHAPTER_READER.readValue(jsonStr);
             this.id = chapter.getId();
             this.createTime = chapter.getCreateTime();
             this.title = chapter.getTitle();
@@ -1,5 +1,7 @@
 package com.itcodebox.notebooks.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
 import java.util.Objects;
 
 /**
@@ -9,6 +11,11 @@ public class ImageRecord {
     private String imageTitle;
     private String imageDesc;
     private String imagePath;
+    /**
+     * 从 image_record 表查询时才有值, 不保存到 image_records 的JSON里
+     */
+    @JsonIgnore
+    private Integer noteId;
 
     public ImageRecord() {
     }
@@ -43,6 +50,15 @@ public class ImageRecord {
         this.imageTitle = imageTitle;
     }
 
+    @JsonIgnore
+    public Integer getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(Integer noteId) {
+        this.noteId = noteId;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
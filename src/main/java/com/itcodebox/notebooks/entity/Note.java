@@ -35,6 +35,36 @@ public class Note extends Record {
     @JsonIgnore
     private List<ImageRecord> imageRecordList;
 
+    /**
+     * 为true时只加载了标题等元数据, 没有加载content, description, source, offset, image_records
+     */
+    @JsonIgnore
+    private transient boolean summary;
+
+    @JsonIgnore
+    public boolean isSummary() {
+        return summary;
+    }
+
+    public void setSummary(boolean summary) {
+        this.summary = summary;
+    }
+
+    /**
+     * 把另一个笔记的正文部分复制过来, 并标记为已完整加载
+     *
+     * @param body 完整加载的笔记
+     */
+    public void copyBodyFrom(Note body) {
+        this.content = body.content;
+        this.description = body.description;
+        this.source = body.source;
+        this.offsetStart = body.offsetStart;
+        this.offsetEnd = body.offsetEnd;
+        this.imageRecords = body.imageRecords;
+        this.summary = false;
+    }
+
     @JsonIgnore
     public List<ImageRecord> getImageRecordList() {
         return ImageRecordUtil.convertToList(imageRecords);
@@ -6,7 +6,7 @@
 package com.itcodebox.notebooks.entity;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.itcodebox.notebooks.utils.JsonUtil;
 
 import java.io.IOException;
 import java.util.Objects;
@@ -33,7 +33,7 @@ public class Notebook extends Record{
     @Override
     public String toString() {
         try {
-            return new ObjectMapper().writeValueAsString(this);
+            return JsonUtil.NOTEBOOK_WRITER.writeValueAsString(this);
         } catch (JsonProcessingException e) {
             e.printStackTrace();
         }
@@ -41,9 +41,8 @@ public class Notebook extends Record{
     }
 
     public Notebook(String jsonStr) {
-        ObjectMapper objectMapper = new ObjectMapper();
         try {
-            Notebook notebook = objectMapper.readValue(jsonStr, Notebook.class);
+            Notebook notebook = JsonUtil.NOTEBOOK_READER.readValue(jsonStr);
             this.id = notebook.getId();
             this.createTime = notebook.getCreateTime();
             this.title = notebook.getTitle();
@@ -6,6 +6,12 @@ import java.util.Objects;
  * @author LeeWyatt
  */
 public class SearchRecord {
+    /**
+     * 摘要中关键字的开始和结束标记
+     */
+    public static final char SNIPPET_MATCH_START = '\u0002';
+    public static final char SNIPPET_MATCH_END = '\u0003';
+
     private String notebookTitle;
     private Integer notebookId;
     private String chapterTitle;
@@ -15,6 +21,17 @@ public class SearchRecord {
     private String type;
     private String content;
     private String description;
+    /**
+     * 全文搜索匹配到的摘要, 关键字用 SNIPPET_MATCH_START 和 SNIPPET_MATCH_END 包围
+     */
+    private String snippet;
+    /**
+     * 搜索结果列表中显示的文字和其中高亮的范围, 由 SearchRecordCellRender 第一次绘制时计算并缓存.
+     * displayKey 是计算时使用的关键字(KeywordMatcher), 关键字改变后重新计算
+     */
+    private Object displayKey;
+    private String displayText;
+    private int[] displayHighlights;
 
     public SearchRecord() {
     }
@@ -148,4 +165,31 @@ public class SearchRecord {
     public void setType(String type) {
         this.type = type;
     }
+
+    public String getSnippet() {
+        return snippet;
+    }
+
+    public void setSnippet(String snippet) {
+        this.snippet = snippet;
+        this.displayKey = null;
+    }
+
+    public Object getDisplayKey() {
+        return displayKey;
+    }
+
+    public String getDisplayText() {
+        return displayText;
+    }
+
+    public int[] getDisplayHighlights() {
+        return displayHighlights;
+    }
+
+    public void setDisplay(Object displayKey, String displayText, int[] displayHighlights) {
+        this.displayKey = displayKey;
+        this.displayText = displayText;
+        this.displayHighlights = displayHighlights;
+    }
 }
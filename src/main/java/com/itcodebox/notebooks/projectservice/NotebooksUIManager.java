@@ -590,11 +590,11 @@ public class NotebooksUIManager {
                 temp.setCreateTime(note.getCreateTime());
                 temp.setUpdateTime(note.getUpdateTime());
                 temp.setShowOrder(note.getShowOrder());
-                temp.setContent(note.getContent());
-                temp.setDescription(note.getDescription());
-                temp.setSource(note.getSource());
                 temp.setType(note.getType());
-                temp.setImageRecords(note.getImageRecords());
+                //摘要笔记没有正文, 不能覆盖已加载的正文
+                if (!note.isSummary()) {
+                    temp.copyBodyFrom(note);
+                }
                 if (Objects.equals(temp.getId(), noteTable.getSelectedRecordId())) {
                     mainPanel.getDetailPanel().refreshDetail();
                 }
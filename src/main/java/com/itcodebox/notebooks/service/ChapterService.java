@@ -3,6 +3,7 @@ package com.itcodebox.notebooks.service;
 import com.itcodebox.notebooks.entity.Chapter;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author LeeWyatt
@@ -17,6 +18,14 @@ public interface ChapterService extends CommonService<Chapter> {
      */
     List<Chapter> findAllByNotebookId(Integer notebookId);
 
+    /**
+     * 在后台线程查询, 缓存中有数据时直接返回已完成的 CompletableFuture
+     *
+     * @param notebookId 笔记本id
+     * @return 笔记本下所有的章节
+     */
+    CompletableFuture<List<Chapter>> findAllByNotebookIdAsync(Integer notebookId);
+
     /**
      * 删除指定笔记本利的全部笔记
      *
@@ -44,4 +44,10 @@ public interface CommonService<T> {
      */
     void exchangeShowOrder( Integer showOrder1, Integer showOrder2);
 
+    /**
+     * 在同一个连接, 同一个事务中执行多个操作, 只提交一次; 任何一步出错都会回滚全部操作
+     * 如: noteService.inTransaction(conn -> { ... })
+     */
+    <R> R inTransaction(TransactionCallback<R> callback);
+
 }
@@ -1,6 +1,8 @@
 package com.itcodebox.notebooks.service;
 
 import com.itcodebox.notebooks.constant.PluginConstant;
+import com.itcodebox.notebooks.dao.DataAccessException;
+import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
 import org.apache.commons.dbcp.BasicDataSource;
 import org.apache.commons.dbutils.QueryRunner;
 import org.apache.commons.dbutils.handlers.ColumnListHandler;
@@ -11,12 +13,18 @@ import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Locale;
 
 /**
  * 需要两个依赖jar
  * commons-dbcp.jar
  * commons-pool.jar
+ * <p>
+ * 数据库使用WAL模式: 一个专用的写连接 + 若干只读连接.
+ * 这样导入等后台写操作进行时, 搜索和浏览等读操作不会被阻塞.
  *
  * @author LeeWyatt
  */
@@ -26,9 +34,24 @@ public class DatabaseBasicService {
     private static final String EDITOR_OFFSET_START = "offset_start";
     private static final String EDITOR_OFFSET_END = "offset_end";
     private static final String IMAGE_RECORDS = "image_records";
+    private static final List<String> SYNCHRONOUS_VALUES = Arrays.asList("OFF", "NORMAL", "FULL", "EXTRA");
+    private static final List<String> TEMP_STORE_VALUES = Arrays.asList("DEFAULT", "FILE", "MEMORY");
+    /**
+     * 写连接(只有一个, SQLite同一时刻只允许一个写者)
+     */
     private  BasicDataSource source;
+    /**
+     * 只读连接池
+     */
+    private  BasicDataSource readSource;
+    /**
+     * 当前线程正在进行的事务所使用的连接
+     */
+    private final ThreadLocal<Connection> transactionConnection = new ThreadLocal<>();
 
     public DatabaseBasicService() {
+        AppSettingsState settings = AppSettingsState.getInstance();
+        List<String> pragmas = getConnectionPragmas(settings);
         try {
             //创建了DBCP的数据库连接池
             source = new BasicDataSource();
@@ -36,11 +59,27 @@ public class DatabaseBasicService {
             source.setMaxActive(1);
             source.setDriverClassName(DATABASE_DRIVER);
             source.setUrl(DATABASE_URL);
+            source.setConnectionInitSqls(pragmas);
+            //StatementCache 需要按物理连接缓存语句
+            source.setAccessToUnderlyingConnectionAllowed(true);
+
+            List<String> readPragmas = new ArrayList<>(pragmas);
+            //只读连接, 禁止任何写操作
+            readPragmas.add("PRAGMA query_only=1");
+            readSource = new BasicDataSource();
+            readSource.setMaxActive(Math.max(1, settings.readConnectionPoolSize));
+            readSource.setMaxIdle(Math.max(1, settings.readConnectionPoolSize));
+            readSource.setDriverClassName(DATABASE_DRIVER);
+            readSource.setUrl(DATABASE_URL);
+            readSource.setConnectionInitSqls(readPragmas);
+            readSource.setAccessToUnderlyingConnectionAllowed(true);
         } catch (Exception e) {
             e.printStackTrace();
         }
         // 如果不存在,创建DB文件
         createFileAndDir();
+        // 开启WAL模式(持久化在数据库文件中)
+        enableWal();
         // 如果表不存在,创建表
         initTable();
     }
@@ -50,8 +89,96 @@ public class DatabaseBasicService {
         return source;
     }
 
+    /**
+     * 获取写连接; 所有增删改都必须使用该连接.
+     * 如果当前线程在事务中, 返回事务的连接
+     */
     public  Connection getConnection() throws SQLException {
-        return source.getConnection();
+        Connection conn = transactionConnection.get();
+        return conn != null ? conn : source.getConnection();
+    }
+
+    /**
+     * 获取只读连接; 查询使用该连接, 不会被正在进行的写操作阻塞.
+     * 如果当前线程在事务中, 返回事务的连接, 这样可以读到事务中还未提交的修改
+     */
+    public  Connection getReadConnection() throws SQLException {
+        Connection conn = transactionConnection.get();
+        return conn != null ? conn : readSource.getConnection();
+    }
+
+    /**
+     * 在一个连接, 一个事务中执行全部操作, 最后只提交一次; 任何一步出错都会回滚全部操作.
+     * 事务期间, 当前线程调用的 Service 方法都使用该事务的连接. 嵌套调用时加入外层事务.
+     * 注意: 事务会一直占用唯一的写连接, 不要在事务中等待用户输入.
+     *
+     * @param callback 需要执行的操作
+     * @return 操作的结果
+     */
+    public <R> R inTransaction(TransactionCallback<R> callback) {
+        Connection current = transactionConnection.get();
+        try {
+            if (current != null) {
+                return callback.doInTransaction(current);
+            }
+        } catch (SQLException throwables) {
+            throw new DataAccessException(throwables);
+        }
+
+        Connection conn = null;
+        boolean committed = false;
+        try {
+            conn = source.getConnection();
+            conn.setAutoCommit(false);
+            transactionConnection.set(conn);
+            R result = callback.doInTransaction(conn);
+            conn.commit();
+            committed = true;
+            return result;
+        } catch (SQLException throwables) {
+            throw new DataAccessException(throwables);
+        } finally {
+            transactionConnection.remove();
+            //事务中写入的数据在提交前可能已被读取并缓存, 事务结束后全部失效
+            HierarchyCache.getInstance().invalidateAll();
+            if (conn != null) {
+                try {
+                    if (!committed) {
+                        conn.rollback();
+                    }
+                    conn.setAutoCommit(true);
+                } catch (SQLException throwables) {
+                    throwables.printStackTrace();
+                }
+            }
+            closeResource(conn, null, null);
+        }
+    }
+
+    /**
+     * 每个连接建立时执行的PRAGMA, 参数来自设置
+     */
+    private List<String> getConnectionPragmas(AppSettingsState settings) {
+        List<String> pragmas = new ArrayList<>();
+        String synchronous = settings.sqliteSynchronous == null ? "" : settings.sqliteSynchronous.toUpperCase(Locale.ROOT);
+        pragmas.add("PRAGMA synchronous=" + (SYNCHRONOUS_VALUES.contains(synchronous) ? synchronous : "NORMAL"));
+        // 负数表示单位为KB
+        pragmas.add("PRAGMA cache_size=-" + Math.max(0, settings.sqliteCacheSizeKb));
+        pragmas.add("PRAGMA mmap_size=" + Math.max(0L, settings.sqliteMmapSizeMb) * 1024 * 1024);
+        String tempStore = settings.sqliteTempStore == null ? "" : settings.sqliteTempStore.toUpperCase(Locale.ROOT);
+        pragmas.add("PRAGMA temp_store=" + (TEMP_STORE_VALUES.contains(tempStore) ? tempStore : "MEMORY"));
+        return pragmas;
+    }
+
+    /**
+     * 开启WAL模式. journal_mode会写入数据库文件, 对之后打开的所有连接都生效
+     */
+    private void enableWal() {
+        try {
+            new QueryRunner(getSource()).query("PRAGMA journal_mode=WAL", new ColumnListHandler<String>(1));
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        }
     }
 
     /**
@@ -72,7 +199,8 @@ public class DatabaseBasicService {
                 e.printStackTrace();
             }
         }
-        if (conn != null) {
+        //事务的连接由 inTransaction 负责关闭
+        if (conn != null && conn != transactionConnection.get()) {
             try {
                 conn.close();
             } catch (SQLException e) {
@@ -161,48 +289,19 @@ public class DatabaseBasicService {
                 ")";
 
 
-        //注意, SQLite 似乎不支持一次添加多个字段; 所以分开添加
-        String addColOffsetStart = "ALTER TABLE note ADD COLUMN "+EDITOR_OFFSET_START+" Integer DEFAULT 0;";
-        String addColOffsetEnd = "ALTER TABLE note ADD COLUMN "+EDITOR_OFFSET_END+" Integer DEFAULT 0;";
-        //注意, 再次增加一个列,记录图片信息
-        String addColImageRecords = "ALTER TABLE note ADD COLUMN "+IMAGE_RECORDS+" TEXT;";
+        Connection conn = null;
         try {
             QueryRunner queryRunner = new QueryRunner(getSource());
             queryRunner.update(createNotebookSQL);
             queryRunner.update(createChapterSQL);
             queryRunner.update(createNoteSQL);
-            boolean offsetColExists = isColumnExists("note", EDITOR_OFFSET_START, queryRunner);
-            //如果不存在该字段 , 那么升级数据库,添加该字段;
-            if (!offsetColExists) {
-                queryRunner.update(addColOffsetStart);
-                queryRunner.update(addColOffsetEnd);
-            }
-            boolean imageRecordsColExists = isColumnExists("note", IMAGE_RECORDS, queryRunner);
-            if (!imageRecordsColExists) {
-                queryRunner.update(addColImageRecords);
-            }
+            //按 user_version 依次升级数据库结构
+            conn = getConnection();
+            DatabaseMigrator.migrate(conn);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
+        } finally {
+            closeResource(conn, null, null);
         }
     }
-
-    /**
-     * 判断是否存在某个字段的方法
-     * @param table 表
-     * @param column 字段/列
-     * @param queryRunner 查询
-     * @return true 存在该字段 false 不存在该字段
-     * @throws SQLException sql异常
-     */
-    private boolean isColumnExists (String table, String column,QueryRunner queryRunner ) throws SQLException {
-        boolean isExists = false;
-        List<String> name = queryRunner.query("PRAGMA table_info("+table+")", new ColumnListHandler<String>("name"));
-        for (String s : name) {
-            if (column.equalsIgnoreCase(s)) {
-                isExists = true;
-                break;
-            }
-        }
-        return isExists;
-    }
 }
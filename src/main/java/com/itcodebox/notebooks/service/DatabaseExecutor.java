@@ -0,0 +1,84 @@
+package com.itcodebox.notebooks.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 在后台线程执行数据库查询, 避免在事件分发线程(EDT)上访问数据库.
+ * <p>
+ * 线程数与只读连接池的大小相同, 更多的线程也只会等待连接; 队列有上限,
+ * 队列满时返回异常结束的 CompletableFuture, 不会阻塞调用者.
+ * 已取消但还在排队的任务不会执行.
+ *
+ * @author LeeWyatt
+ */
+public class DatabaseExecutor implements Disposable {
+    private static final int QUEUE_CAPACITY = 64;
+
+    private final ThreadPoolExecutor executor;
+
+    public static DatabaseExecutor getInstance() {
+        return ServiceManager.getService(DatabaseExecutor.class);
+    }
+
+    private DatabaseExecutor() {
+        int threads = Math.max(1, AppSettingsState.getInstance().readConnectionPoolSize);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Notebooks Database " + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> supplier) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * 用于可以提前结束的长时间任务: 任务通过参数检查返回的 CompletableFuture 是否已经被取消
+     */
+    public <T> CompletableFuture<T> submit(Function<BooleanSupplier, T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;
+                }
+                try {
+                    future.complete(task.apply(future::isCancelled));
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,225 @@
+package com.itcodebox.notebooks.service;
+
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Savepoint;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 数据库结构迁移
+ * 使用 PRAGMA user_version 记录数据库当前的版本, 启动时依次执行所有高于该版本的迁移.
+ * 新的表结构变更只需要追加到 MIGRATIONS 的末尾, 不能修改或删除已发布的迁移.
+ * 有降级方案的迁移用 optional 包装, 失败时不会阻止后面的迁移.
+ *
+ * @author LeeWyatt
+ */
+public class DatabaseMigrator {
+
+    @FunctionalInterface
+    interface Migration {
+        /**
+         * 执行迁移
+         *
+         * @param queryRunner 查询
+         * @param conn        写连接, 已开启事务
+         * @throws SQLException sql异常
+         */
+        void migrate(QueryRunner queryRunner, Connection conn) throws SQLException;
+    }
+
+    /**
+     * 第 n 个迁移执行完成后, user_version = n
+     */
+    private static final List<Migration> MIGRATIONS = Arrays.asList(
+            // 1: 旧版本数据库补充 offset_start, offset_end, image_records 字段
+            DatabaseMigrator::addLegacyColumns,
+            // 2: 常用查询的索引
+            DatabaseMigrator::addIndexes,
+            // 3: 笔记的全文索引; SQLite 不支持 FTS5 或 trigram 时搜索改用 like
+            optional(DatabaseMigrator::addNoteFullTextIndex),
+            // 4: 图片信息表
+            DatabaseMigrator::addImageRecordTable
+    );
+
+    private DatabaseMigrator() {
+    }
+
+    /**
+     * 把数据库升级到最新版本, 每个迁移在单独的事务中执行
+     *
+     * @param conn 写连接
+     * @throws SQLException sql异常
+     */
+    public static void migrate(Connection conn) throws SQLException {
+        QueryRunner queryRunner = new QueryRunner();
+        int version = getVersion(queryRunner, conn);
+        boolean autoCommit = conn.getAutoCommit();
+        try {
+            for (int i = version; i < MIGRATIONS.size(); i++) {
+                conn.setAutoCommit(false);
+                try {
+                    MIGRATIONS.get(i).migrate(queryRunner, conn);
+                    // user_version 不支持参数绑定
+                    queryRunner.update(conn, "PRAGMA user_version=" + (i + 1));
+                    conn.commit();
+                } catch (SQLException e) {
+                    conn.rollback();
+                    throw e;
+                }
+            }
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * 可选的迁移: 失败时只回滚这个迁移自己的修改并打印异常, 版本号照常增加, 后面的迁移继续执行.
+     * 使用这个迁移的结果的代码需要自己检查结果是否存在
+     */
+    static Migration optional(Migration migration) {
+        return (queryRunner, conn) -> {
+            Savepoint savepoint = conn.setSavepoint();
+            try {
+                migration.migrate(queryRunner, conn);
+                conn.releaseSavepoint(savepoint);
+            } catch (SQLException e) {
+                conn.rollback(savepoint);
+                e.printStackTrace();
+            }
+        };
+    }
+
+    /**
+     * @return 执行完全部迁移后的版本号
+     */
+    static int latestVersion() {
+        return MIGRATIONS.size();
+    }
+
+    public static int getVersion(QueryRunner queryRunner, Connection conn) throws SQLException {
+        Number version = queryRunner.query(conn, "PRAGMA user_version", new ScalarHandler<Number>());
+        return version == null ? 0 : version.intValue();
+    }
+
+    private static void addLegacyColumns(QueryRunner queryRunner, Connection conn) throws SQLException {
+        //注意, SQLite 似乎不支持一次添加多个字段; 所以分开添加
+        if (!isColumnExists("note", "offset_start", queryRunner, conn)) {
+            queryRunner.update(conn, "ALTER TABLE note ADD COLUMN offset_start Integer DEFAULT 0;");
+        }
+        if (!isColumnExists("note", "offset_end", queryRunner, conn)) {
+            queryRunner.update(conn, "ALTER TABLE note ADD COLUMN offset_end Integer DEFAULT 0;");
+        }
+        //记录图片信息
+        if (!isColumnExists("note", "image_records", queryRunner, conn)) {
+            queryRunner.update(conn, "ALTER TABLE note ADD COLUMN image_records TEXT;");
+        }
+    }
+
+    private static void addIndexes(QueryRunner queryRunner, Connection conn) throws SQLException {
+        // findAllByChapterId: where chapter_id=? order by show_order
+        queryRunner.update(conn, "CREATE INDEX IF NOT EXISTS idx_note_chapter_order ON note(chapter_id, show_order)");
+        // deleteAllByNotebookId, getImageRecordsByNotebookId
+        queryRunner.update(conn, "CREATE INDEX IF NOT EXISTS idx_note_notebook ON note(notebook_id)");
+        // NoteDao.findByTitle / findByTitles
+        queryRunner.update(conn, "CREATE INDEX IF NOT EXISTS idx_note_chapter_title ON note(chapter_id, title)");
+        // ChapterDao.findByTitle / findAllByNotebookId, 以及各种 chapter 子查询
+        queryRunner.update(conn, "CREATE INDEX IF NOT EXISTS idx_chapter_notebook_title ON chapter(notebook_id, title)");
+        // NotebookDao.findByTitle, 以及各种 notebook 子查询
+        queryRunner.update(conn, "CREATE INDEX IF NOT EXISTS idx_notebook_title ON notebook(title)");
+        queryRunner.update(conn, "ANALYZE");
+    }
+
+    /**
+     * FTS5 外部内容表, 内容来自note表, 通过触发器保持同步.
+     * 使用 trigram 分词器, 这样和原来的 like '%kw%' 一样可以匹配任意子串(包括中文);
+     * 注意 trigram 不能匹配少于3个字符的关键字.
+     */
+    private static void addNoteFullTextIndex(QueryRunner queryRunner, Connection conn) throws SQLException {
+        queryRunner.update(conn, "CREATE VIRTUAL TABLE IF NOT EXISTS note_fts USING fts5(" +
+                "title, description, content, content='note', content_rowid='id', tokenize='trigram')");
+        queryRunner.update(conn, "CREATE TRIGGER IF NOT EXISTS note_fts_ai AFTER INSERT ON note BEGIN " +
+                "INSERT INTO note_fts(rowid, title, description, content) VALUES (new.id, new.title, new.description, new.content); " +
+                "END");
+        queryRunner.update(conn, "CREATE TRIGGER IF NOT EXISTS note_fts_ad AFTER DELETE ON note BEGIN " +
+                "INSERT INTO note_fts(note_fts, rowid, title, description, content) VALUES ('delete', old.id, old.title, old.description, old.content); " +
+                "END");
+        queryRunner.update(conn, "CREATE TRIGGER IF NOT EXISTS note_fts_au AFTER UPDATE OF title, description, content ON note BEGIN " +
+                "INSERT INTO note_fts(note_fts, rowid, title, description, content) VALUES ('delete', old.id, old.title, old.description, old.content); " +
+                "INSERT INTO note_fts(rowid, title, description, content) VALUES (new.id, new.title, new.description, new.content); " +
+                "END");
+        //为已有的笔记建立索引
+        queryRunner.update(conn, "INSERT INTO note_fts(note_fts) VALUES ('rebuild')");
+    }
+
+    /**
+     * 把 note.image_records 里的JSON拆成 image_record 表, 按笔记, 图片路径查询时可以走索引, 不需要解析JSON.
+     * note.image_records 仍然是保存时写入的字段(导入导出的JSON格式不变), image_record 表通过触发器保持同步,
+     * 和全文索引一样. 不是合法JSON数组的 image_records 不会写入 image_record 表, 也不会导致保存失败.
+     * hash 为按内容保存的图片的SHA-256, 以前随机命名的图片为null.
+     */
+    private static void addImageRecordTable(QueryRunner queryRunner, Connection conn) throws SQLException {
+        queryRunner.update(conn, "CREATE TABLE IF NOT EXISTS image_record(" +
+                "note_id INTEGER NOT NULL, show_order INTEGER NOT NULL, title TEXT, description TEXT, image_path TEXT NOT NULL, hash TEXT, " +
+                "PRIMARY KEY(note_id, show_order)) WITHOUT ROWID");
+        // NoteService.countImageReferences
+        queryRunner.update(conn, "CREATE INDEX IF NOT EXISTS idx_image_record_path ON image_record(image_path)");
+        queryRunner.update(conn, "CREATE TRIGGER IF NOT EXISTS image_record_ai AFTER INSERT ON note BEGIN " +
+                insertImageRecordsSql("new") + " END");
+        queryRunner.update(conn, "CREATE TRIGGER IF NOT EXISTS image_record_ad AFTER DELETE ON note BEGIN " +
+                "DELETE FROM image_record WHERE note_id=old.id; END");
+        queryRunner.update(conn, "CREATE TRIGGER IF NOT EXISTS image_record_au AFTER UPDATE OF id, image_records ON note " +
+                "WHEN old.id IS NOT new.id OR old.image_records IS NOT new.image_records BEGIN " +
+                "DELETE FROM image_record WHERE note_id=old.id; " + insertImageRecordsSql("new") + " END");
+        //拆分已有的图片信息
+        queryRunner.update(conn, "DELETE FROM image_record");
+        queryRunner.update(conn, insertImageRecordsSql("note"));
+    }
+
+    /**
+     * 把一条笔记的 image_records 拆成多行插入 image_record
+     *
+     * @param row 触发器中为 new; 为 note 时拆分全部笔记
+     */
+    private static String insertImageRecordsSql(String row) {
+        String records = "CASE WHEN json_valid(" + row + ".image_records) AND json_type(" + row + ".image_records)='array' " +
+                "THEN " + row + ".image_records ELSE '[]' END";
+        String path = "json_extract(j.value,'$.imagePath')";
+        return "INSERT INTO image_record(note_id, show_order, title, description, image_path, hash) " +
+                "SELECT " + row + ".id, j.key, json_extract(j.value,'$.imageTitle'), json_extract(j.value,'$.imageDesc'), " + path + ", " +
+                "CASE WHEN " + path + " GLOB '[0-9a-f][0-9a-f]/" + repeat("[0-9a-f]", 64) + ".*' THEN substr(" + path + ", 4, 64) END " +
+                "FROM " + ("new".equals(row) ? "" : row + ", ") + "json_each(" + records + ") j " +
+                "WHERE j.type='object' AND " + path + " IS NOT NULL;";
+    }
+
+    private static String repeat(String str, int count) {
+        StringBuilder builder = new StringBuilder(str.length() * count);
+        for (int i = 0; i < count; i++) {
+            builder.append(str);
+        }
+        return builder.toString();
+    }
+
+    /**
+     * 判断是否存在某个字段的方法
+     * @param table 表
+     * @param column 字段/列
+     * @param queryRunner 查询
+     * @param conn 连接
+     * @return true 存在该字段 false 不存在该字段
+     * @throws SQLException sql异常
+     */
+    private static boolean isColumnExists(String table, String column, QueryRunner queryRunner, Connection conn) throws SQLException {
+        List<String> names = queryRunner.query(conn, "PRAGMA table_info(" + table + ")", new ColumnListHandler<String>("name"));
+        for (String s : names) {
+            if (column.equalsIgnoreCase(s)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
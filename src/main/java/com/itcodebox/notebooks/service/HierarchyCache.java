@@ -0,0 +1,509 @@
+package com.itcodebox.notebooks.service;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.project.Project;
+import com.itcodebox.notebooks.entity.Chapter;
+import com.itcodebox.notebooks.entity.Note;
+import com.itcodebox.notebooks.entity.Notebook;
+import com.itcodebox.notebooks.projectservice.RecordListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.UnaryOperator;
+
+/**
+ * 笔记本/章节/笔记层级结构的内存缓存, 按id 和 (父级, 标题) 两种方式索引.
+ * <p>
+ * 缓存中保存的是副本, 读取时也返回副本, 所以调用者修改返回的对象不会影响缓存.
+ * 一致性由两方面保证: service 的写操作和事务结束时会使相关数据失效;
+ * RecordListener 的事件也会使相关数据失效, 覆盖在事务里直接通过DAO写入的情况.
+ * <p>
+ * 每次失效都会增加版本号. 查询数据库前记录版本号, 如果查询期间发生了失效, 查询结果就不放入缓存,
+ * 避免把旧数据写回缓存.
+ *
+ * @author LeeWyatt
+ */
+public class HierarchyCache {
+    /**
+     * 完整笔记(带正文)最多缓存的字符数, 超出后按最近最少使用的顺序淘汰
+     */
+    private static final long MAX_NOTE_BODY_CHARS = 2L * 1024 * 1024;
+
+    private static final String NOTEBOOK_LIST_KEY = "";
+
+    private long version;
+
+    private final Map<String, List<Notebook>> notebookList = new HashMap<>();
+    private final Map<Integer, Notebook> notebookById = new HashMap<>();
+    private final Map<String, Notebook> notebookByTitle = new HashMap<>();
+    private final Map<String, List<String>> notebookTitles = new HashMap<>();
+
+    private final Map<Integer, List<Chapter>> chaptersByNotebookId = new HashMap<>();
+    private final Map<Integer, Chapter> chapterById = new HashMap<>();
+    /**
+     * key: notebookId + 章节标题
+     */
+    private final Map<String, Chapter> chapterByTitle = new HashMap<>();
+    /**
+     * key: 笔记本标题
+     */
+    private final Map<String, List<String>> chapterTitles = new HashMap<>();
+
+    private final Map<Integer, List<Note>> noteSummariesByChapterId = new HashMap<>();
+    /**
+     * 完整的笔记, 按访问顺序排列, 用于按大小淘汰
+     */
+    private final LinkedHashMap<Integer, Note> noteById = new LinkedHashMap<>(64, 0.75F, true);
+    private long noteBodyChars;
+    /**
+     * key: chapterId + 笔记标题 或 笔记本标题 + 章节标题 + 笔记标题, value: 笔记id
+     */
+    private final Map<String, Integer> noteIdByTitle = new HashMap<>();
+    /**
+     * key: 笔记本标题 + 章节标题
+     */
+    private final Map<String, List<String>> noteTitles = new HashMap<>();
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public static HierarchyCache getInstance() {
+        return ServiceManager.getService(HierarchyCache.class);
+    }
+
+    private HierarchyCache() {
+        ApplicationManager.getApplication()
+                .getMessageBus()
+                .connect()
+                .subscribe(RecordListener.TOPIC, new InvalidationListener());
+    }
+
+    /**
+     * 查询数据库前获取版本号, 放入缓存时传回
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /*-----------Notebook--------------------*/
+
+    public Notebook getNotebook(Integer id) {
+        return get(notebookById, id, HierarchyCache::copyNotebook);
+    }
+
+    public Notebook getNotebookByTitle(String title) {
+        return get(notebookByTitle, title, HierarchyCache::copyNotebook);
+    }
+
+    public List<Notebook> getNotebooks() {
+        return get(notebookList, NOTEBOOK_LIST_KEY, list -> copyList(list, HierarchyCache::copyNotebook));
+    }
+
+    public List<String> getNotebookTitles() {
+        return get(notebookTitles, NOTEBOOK_LIST_KEY, ArrayList::new);
+    }
+
+    public synchronized Notebook putNotebook(Notebook notebook, long version) {
+        if (notebook != null && this.version == version) {
+            Notebook copy = copyNotebook(notebook);
+            notebookById.put(copy.getId(), copy);
+            notebookByTitle.put(copy.getTitle(), copy);
+        }
+        return notebook;
+    }
+
+    public synchronized List<Notebook> putNotebooks(List<Notebook> notebooks, long version) {
+        if (notebooks != null && this.version == version) {
+            notebookList.put(NOTEBOOK_LIST_KEY, copyList(notebooks, HierarchyCache::copyNotebook));
+            for (Notebook notebook : notebooks) {
+                putNotebook(notebook, version);
+            }
+        }
+        return notebooks;
+    }
+
+    public List<String> putNotebookTitles(List<String> titles, long version) {
+        return put(notebookTitles, NOTEBOOK_LIST_KEY, titles, version, ArrayList::new);
+    }
+
+    /*-----------Chapter--------------------*/
+
+    public Chapter getChapter(Integer id) {
+        return get(chapterById, id, HierarchyCache::copyChapter);
+    }
+
+    public Chapter getChapterByTitle(String title, Integer notebookId) {
+        return get(chapterByTitle, key(notebookId, title), HierarchyCache::copyChapter);
+    }
+
+    public List<Chapter> getChapters(Integer notebookId) {
+        return get(chaptersByNotebookId, notebookId, list -> copyList(list, HierarchyCache::copyChapter));
+    }
+
+    public List<String> getChapterTitles(String notebookTitle) {
+        return get(chapterTitles, notebookTitle, ArrayList::new);
+    }
+
+    public synchronized Chapter putChapter(Chapter chapter, long version) {
+        if (chapter != null && this.version == version) {
+            Chapter copy = copyChapter(chapter);
+            chapterById.put(copy.getId(), copy);
+            chapterByTitle.put(key(copy.getNotebookId(), copy.getTitle()), copy);
+        }
+        return chapter;
+    }
+
+    public synchronized List<Chapter> putChapters(Integer notebookId, List<Chapter> chapters, long version) {
+        if (chapters != null && this.version == version) {
+            chaptersByNotebookId.put(notebookId, copyList(chapters, HierarchyCache::copyChapter));
+            for (Chapter chapter : chapters) {
+                putChapter(chapter, version);
+            }
+        }
+        return chapters;
+    }
+
+    public List<String> putChapterTitles(String notebookTitle, List<String> titles, long version) {
+        return put(chapterTitles, notebookTitle, titles, version, ArrayList::new);
+    }
+
+    /*-----------Note--------------------*/
+
+    public Note getNote(Integer id) {
+        return get(noteById, id, HierarchyCache::copyNote);
+    }
+
+    public synchronized Note getNoteByTitle(String title, Integer chapterId) {
+        return getNoteByKey(key(chapterId, title));
+    }
+
+    public synchronized Note getNoteByTitles(String noteTitle, String chapterTitle, String notebookTitle) {
+        return getNoteByKey(key(notebookTitle, chapterTitle, noteTitle));
+    }
+
+    public List<Note> getNoteSummaries(Integer chapterId) {
+        return get(noteSummariesByChapterId, chapterId, list -> copyList(list, HierarchyCache::copyNote));
+    }
+
+    public List<String> getNoteTitles(String notebookTitle, String chapterTitle) {
+        return get(noteTitles, key(notebookTitle, chapterTitle), ArrayList::new);
+    }
+
+    /**
+     * 只放入完整加载的笔记, 摘要笔记没有正文
+     */
+    public synchronized Note putNote(Note note, long version) {
+        if (note == null || note.isSummary() || this.version != version) {
+            return note;
+        }
+        Note copy = copyNote(note);
+        Note old = noteById.put(copy.getId(), copy);
+        if (old != null) {
+            noteBodyChars -= bodyChars(old);
+        }
+        noteBodyChars += bodyChars(copy);
+        Iterator<Note> iterator = noteById.values().iterator();
+        while (noteBodyChars > MAX_NOTE_BODY_CHARS && iterator.hasNext()) {
+            Note eldest = iterator.next();
+            if (eldest == copy) {
+                //单个笔记超出上限时也保留, 直到下一次放入
+                continue;
+            }
+            noteBodyChars -= bodyChars(eldest);
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        }
+        return note;
+    }
+
+    public synchronized Note putNoteByTitle(Note note, Integer chapterId, String title, long version) {
+        if (note != null && this.version == version) {
+            putNote(note, version);
+            noteIdByTitle.put(key(chapterId, title), note.getId());
+        }
+        return note;
+    }
+
+    public synchronized Note putNoteByTitles(Note note, String noteTitle, String chapterTitle, String notebookTitle, long version) {
+        if (note != null && this.version == version) {
+            putNote(note, version);
+            noteIdByTitle.put(key(notebookTitle, chapterTitle, noteTitle), note.getId());
+        }
+        return note;
+    }
+
+    public List<Note> putNoteSummaries(Integer chapterId, List<Note> notes, long version) {
+        return put(noteSummariesByChapterId, chapterId, notes, version, list -> copyList(list, HierarchyCache::copyNote));
+    }
+
+    public List<String> putNoteTitles(String notebookTitle, String chapterTitle, List<String> titles, long version) {
+        return put(noteTitles, key(notebookTitle, chapterTitle), titles, version, ArrayList::new);
+    }
+
+    /*-----------失效--------------------*/
+
+    /**
+     * 全部失效. 笔记本的变化会影响以笔记本标题为key的章节和笔记数据, 所以也用这个方法
+     */
+    public synchronized void invalidateAll() {
+        version++;
+        notebookList.clear();
+        notebookById.clear();
+        notebookByTitle.clear();
+        notebookTitles.clear();
+        invalidateChapters();
+    }
+
+    /**
+     * 章节失效. 章节移动到其他笔记本时, 笔记的notebookId也会改变, 所以笔记一起失效
+     */
+    public synchronized void invalidateChapters() {
+        version++;
+        chaptersByNotebookId.clear();
+        chapterById.clear();
+        chapterByTitle.clear();
+        chapterTitles.clear();
+        invalidateNotes();
+    }
+
+    /**
+     * 指定笔记失效, 不指定时全部笔记失效. 笔记列表和标题总是全部失效
+     */
+    public synchronized void invalidateNotes(Note... notes) {
+        version++;
+        if (notes.length == 0) {
+            noteById.clear();
+            noteBodyChars = 0;
+        } else {
+            for (Note note : notes) {
+                if (note != null) {
+                    invalidateNoteById(note.getId());
+                }
+            }
+        }
+        noteSummariesByChapterId.clear();
+        noteIdByTitle.clear();
+        noteTitles.clear();
+    }
+
+    public synchronized void invalidateNoteById(Integer id) {
+        version++;
+        Note old = noteById.remove(id);
+        if (old != null) {
+            noteBodyChars -= bodyChars(old);
+        }
+        noteSummariesByChapterId.clear();
+        noteIdByTitle.clear();
+        noteTitles.clear();
+    }
+
+    /*-----------统计--------------------*/
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    public synchronized long getNoteBodyChars() {
+        return noteBodyChars;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("HierarchyCache{hit=%d, miss=%d, hitRate=%.2f, eviction=%d, noteBodyChars=%d}",
+                getHitCount(), getMissCount(), getHitRate(), getEvictionCount(), getNoteBodyChars());
+    }
+
+    private synchronized <K, V> V get(Map<K, V> map, K key, UnaryOperator<V> copier) {
+        V value = map.get(key);
+        if (value == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return copier.apply(value);
+    }
+
+    private synchronized <K, V> V put(Map<K, V> map, K key, V value, long version, UnaryOperator<V> copier) {
+        if (value != null && this.version == version) {
+            map.put(key, copier.apply(value));
+        }
+        return value;
+    }
+
+    private Note getNoteByKey(String key) {
+        Integer id = noteIdByTitle.get(key);
+        Note note = id == null ? null : noteById.get(id);
+        if (note == null) {
+            missCount.incrementAndGet();
+            return null;
+        }
+        hitCount.incrementAndGet();
+        return copyNote(note);
+    }
+
+    private static String key(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object part : parts) {
+            sb.append(part).append('\u0000');
+        }
+        return sb.toString();
+    }
+
+    private static long bodyChars(Note note) {
+        return length(note.getContent()) + length(note.getDescription()) + length(note.getSource()) + length(note.getImageRecords());
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+
+    private static <T> List<T> copyList(List<T> list, UnaryOperator<T> copier) {
+        List<T> copy = new ArrayList<>(list.size());
+        for (T t : list) {
+            copy.add(copier.apply(t));
+        }
+        return copy;
+    }
+
+    private static Notebook copyNotebook(Notebook notebook) {
+        Notebook copy = new Notebook();
+        copy.setId(notebook.getId());
+        copy.setTitle(notebook.getTitle());
+        copy.setShowOrder(notebook.getShowOrder());
+        copy.setCreateTime(notebook.getCreateTime());
+        copy.setUpdateTime(notebook.getUpdateTime());
+        return copy;
+    }
+
+    private static Chapter copyChapter(Chapter chapter) {
+        Chapter copy = new Chapter();
+        copy.setId(chapter.getId());
+        copy.setTitle(chapter.getTitle());
+        copy.setShowOrder(chapter.getShowOrder());
+        copy.setCreateTime(chapter.getCreateTime());
+        copy.setUpdateTime(chapter.getUpdateTime());
+        copy.setNotebookId(chapter.getNotebookId());
+        return copy;
+    }
+
+    private static Note copyNote(Note note) {
+        Note copy = new Note(note.getTitle(), note.getNotebookId(), note.getChapterId(), note.getCreateTime(), note.getUpdateTime());
+        copy.setId(note.getId());
+        copy.setShowOrder(note.getShowOrder());
+        copy.setType(note.getType());
+        copy.copyBodyFrom(note);
+        copy.setSummary(note.isSummary());
+        return copy;
+    }
+
+    /**
+     * 记录变化的事件都在数据库写入之后发布, 收到事件时使相关数据失效
+     */
+    private class InvalidationListener implements RecordListener {
+        @Override
+        public void onRefresh() {
+            invalidateAll();
+        }
+
+        @Override
+        public void onNotebookAdd(Project eventProject, Notebook notebook, boolean isSelected, boolean editing) {
+            invalidateAll();
+        }
+
+        @Override
+        public void onNotebookUpdated(Project eventProject, Notebook[] notebooks) {
+            invalidateAll();
+        }
+
+        @Override
+        public void onNotebookTitleUpdated(Project eventProject, Notebook notebook) {
+            invalidateAll();
+        }
+
+        @Override
+        public void onNotebookRemoved(Project eventProject, Notebook notebook) {
+            invalidateAll();
+        }
+
+        @Override
+        public void onNotebookDragMove(Project eventProject, Notebook notebook, int rowFromIndex, int rowEndIndex) {
+            invalidateAll();
+        }
+
+        @Override
+        public void onChapterAdd(Project eventProject, Chapter chapter, boolean isSelected, boolean editing) {
+            invalidateChapters();
+        }
+
+        @Override
+        public void onChapterUpdated(Project eventProject, Chapter[] chapters) {
+            invalidateChapters();
+        }
+
+        @Override
+        public void onChapterTitleUpdated(Project eventProject, Chapter chapter) {
+            invalidateChapters();
+        }
+
+        @Override
+        public void onChapterRemoved(Project eventProject, Chapter chapter) {
+            invalidateChapters();
+        }
+
+        @Override
+        public void onChapterDragMove(Project eventProject, Chapter chapter, int rowFromIndex, int rowEndIndex) {
+            invalidateChapters();
+        }
+
+        @Override
+        public void onNoteAdd(Project eventProject, Note note) {
+            invalidateNotes(note);
+        }
+
+        @Override
+        public void onNoteAdd(Project eventProject, List<Note> noteList) {
+            invalidateNotes(noteList.toArray(new Note[0]));
+        }
+
+        @Override
+        public void onNoteUpdated(Project eventProject, Note[] notes) {
+            invalidateNotes(notes);
+        }
+
+        @Override
+        public void onNoteTitleUpdated(Project eventProject, Note note) {
+            invalidateNotes(note);
+        }
+
+        @Override
+        public void onNoteRemoved(Project eventProject, Note note) {
+            invalidateNotes(note);
+        }
+
+        @Override
+        public void onNoteDragMove(Project eventProject, Note note, int rowFromIndex, int rowEndIndex) {
+            invalidateNotes(note);
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.itcodebox.notebooks.service;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+import com.itcodebox.notebooks.utils.CustomUIUtil;
+import org.jetbrains.annotations.Nullable;
+
+import javax.swing.*;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 已解码的缩略图的内存缓存, 按 图片文件名 + 缩略图尺寸 索引.
+ * <p>
+ * 按解码后的像素大小(宽 x 高 x 4字节)统计占用, 超出 AppSettingsState.imageCacheSizeMb 后
+ * 按最近最少使用的顺序淘汰. 缩略图重新生成或者图片被删除时需要调用 invalidate.
+ * 和 HierarchyCache 一样, 读取期间发生了失效时, 读取的结果不放入缓存.
+ *
+ * @author LeeWyatt
+ */
+public class ImageCache {
+    private static final long BYTES_PER_MB = 1024L * 1024;
+
+    /**
+     * 按访问顺序排列, 用于按大小淘汰
+     */
+    private final LinkedHashMap<String, CachedImage> images = new LinkedHashMap<>(64, 0.75F, true);
+    private long bytes;
+    private long version;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+    private final AtomicLong evictionCount = new AtomicLong();
+
+    public static ImageCache getInstance() {
+        return ServiceManager.getService(ImageCache.class);
+    }
+
+    private ImageCache() {
+    }
+
+    /**
+     * 获取图片的缩略图(没有缩略图时为原图); 没有命中缓存时从磁盘读取并解码
+     *
+     * @param imageName 图片目录下的原图文件名
+     * @return 图片不存在或者无法解码时返回 null
+     */
+    @Nullable
+    public CachedImage getThumbnail(String imageName) {
+        String key = imageName + '@' + AppSettingsState.getInstance().thumbMaxSize;
+        long version;
+        synchronized (this) {
+            CachedImage image = images.get(key);
+            if (image != null) {
+                hitCount.incrementAndGet();
+                return image;
+            }
+            version = this.version;
+        }
+        missCount.incrementAndGet();
+        CachedImage image = load(CustomUIUtil.getThumbFile(imageName));
+        if (image != null) {
+            put(key, image, version);
+        }
+        return image;
+    }
+
+    /**
+     * 删除这张图片所有尺寸的缓存
+     */
+    public synchronized void invalidate(String imageName) {
+        version++;
+        String prefix = imageName + '@';
+        Iterator<Map.Entry<String, CachedImage>> iterator = images.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, CachedImage> entry = iterator.next();
+            if (entry.getKey().startsWith(prefix)) {
+                bytes -= entry.getValue().getBytes();
+                iterator.remove();
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        version++;
+        images.clear();
+        bytes = 0;
+    }
+
+    private synchronized void put(String key, CachedImage image, long version) {
+        long maxBytes = getMaxBytes();
+        //单张图片超出上限时不缓存
+        if (this.version != version || image.getBytes() > maxBytes) {
+            return;
+        }
+        CachedImage old = images.put(key, image);
+        if (old != null) {
+            bytes -= old.getBytes();
+        }
+        bytes += image.getBytes();
+        Iterator<CachedImage> iterator = images.values().iterator();
+        while (bytes > maxBytes && iterator.hasNext()) {
+            bytes -= iterator.next().getBytes();
+            iterator.remove();
+            evictionCount.incrementAndGet();
+        }
+    }
+
+    private CachedImage load(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try {
+            //不使用 new ImageIcon(path), 它会被 Toolkit 按文件名一直缓存, 文件更新后也不会重新读取
+            ImageIcon icon = new ImageIcon(Files.readAllBytes(file.toPath()));
+            if (icon.getIconWidth() <= 0 || icon.getIconHeight() <= 0) {
+                return null;
+            }
+            return new CachedImage(icon, file.length());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public long getMaxBytes() {
+        return Math.max(1, AppSettingsState.getInstance().imageCacheSizeMb) * BYTES_PER_MB;
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    public synchronized int getSize() {
+        return images.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    public double getHitRate() {
+        long hits = hitCount.get();
+        long total = hits + missCount.get();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ImageCache{size=%d, bytes=%d, hit=%d, miss=%d, hitRate=%.2f, eviction=%d}",
+                getSize(), getBytes(), getHitCount(), getMissCount(), getHitRate(), getEvictionCount());
+    }
+
+    /**
+     * 解码后的图片, 以及图片文件的大小
+     */
+    public static class CachedImage {
+        private final ImageIcon icon;
+        private final long fileLength;
+
+        CachedImage(ImageIcon icon, long fileLength) {
+            this.icon = icon;
+            this.fileLength = fileLength;
+        }
+
+        public ImageIcon getIcon() {
+            return icon;
+        }
+
+        public long getFileLength() {
+            return fileLength;
+        }
+
+        /**
+         * 解码后占用的内存, 按每个像素4字节估算
+         */
+        public long getBytes() {
+            return 4L * icon.getIconWidth() * icon.getIconHeight();
+        }
+    }
+}
@@ -1,8 +1,11 @@
 package com.itcodebox.notebooks.service;
 
+import com.itcodebox.notebooks.entity.ImageRecord;
 import com.itcodebox.notebooks.entity.Note;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * @author LeeWyatt
@@ -14,6 +17,31 @@ public interface NoteService extends CommonService<Note> {
      */
     List<Note> findAllByChapterId(Integer chapterId);
 
+    /**
+     * 只加载表格显示需要的元数据, 正文通过 findBodiesAsync 按需加载
+     *
+     * @param chapterId 章节id
+     * @return 章节下所有笔记的摘要
+     */
+    List<Note> findSummariesByChapterId(Integer chapterId);
+
+    /**
+     * 在后台线程查询, 缓存中有数据时直接返回已完成的 CompletableFuture
+     *
+     * @param chapterId 章节id
+     * @return 章节下所有笔记的摘要
+     */
+    CompletableFuture<List<Note>> findSummariesByChapterIdAsync(Integer chapterId);
+
+    /**
+     * 在后台线程查询摘要笔记的正文, 不修改传入的对象; 全部命中缓存时直接返回已完成的 CompletableFuture.
+     * 已经完整加载的笔记会被跳过, 查询到的正文由调用者在EDT上通过 Note.copyBodyFrom 填充
+     *
+     * @param notes 需要加载正文的笔记
+     * @return 完整加载的笔记
+     */
+    CompletableFuture<List<Note>> findBodiesAsync(List<Note> notes);
+
     /**
      * 删除指定章节下的所有笔记
      *
@@ -42,9 +70,45 @@ public interface NoteService extends CommonService<Note> {
     Note findByTitles(String noteTile, String chapterTitle, String notebookTitle);
 
 
-    List<String> getImageRecordsByNotebookId( int notebookId);
+    /**
+     * 笔记本下全部笔记的图片, 从 image_record 表按索引查询, 不需要解析每条笔记的JSON
+     */
+    List<ImageRecord> getImageRecordsByNotebookId( int notebookId);
+
+    List<ImageRecord> getImageRecordsByChapterId( int chapterId);
+
+    /**
+     * 笔记的全部图片, 按图片在笔记里的顺序
+     */
+    List<ImageRecord> getImageRecordsByNoteId( int noteId);
 
-    List<String> getImageRecordsByChapterId( int chapterId);
+    /**
+     * 统计引用了该图片的笔记数量; 相同内容的图片只保存一份, 没有笔记引用时才能删除图片文件
+     *
+     * @param imagePath 图片目录下的图片路径
+     * @return 查询失败时返回-1
+     */
+    int countImageReferences(String imagePath);
 
-    List<String> getImageRecordsByNoteId( int noteId);
+    /**
+     * 逐条处理章节下的笔记(包括内容), 不把全部笔记读入内存
+     *
+     * @return 全部处理完时返回true; 查询失败时返回false
+     */
+    boolean forEachByChapterId(Integer chapterId, Consumer<Note> consumer);
+
+    /**
+     * 统计笔记数量
+     *
+     * @param notebookId 为null时统计全部笔记
+     * @return 查询失败时返回-1
+     */
+    int countNotes(Integer notebookId);
+
+    /**
+     * 逐条处理全部笔记的 image_records, 不把全部笔记读入内存
+     *
+     * @return 全部处理完时返回true; 查询失败时返回false
+     */
+    boolean forEachImageRecords(Consumer<String> consumer);
 }
\ No newline at end of file
@@ -3,6 +3,7 @@ package com.itcodebox.notebooks.service;
 import com.itcodebox.notebooks.entity.Notebook;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author LeeWyatt
@@ -21,6 +22,13 @@ public interface NotebookService extends CommonService<Notebook> {
      */
     List<Notebook> findAll();
 
+    /**
+     * 在后台线程查询, 缓存中有数据时直接返回已完成的 CompletableFuture
+     *
+     * @return 全部笔记本
+     */
+    CompletableFuture<List<Notebook>> findAllAsync();
+
     /**
      *获取全部笔记的标题;用于首页展示
      * @return 获取全部笔记本的标题
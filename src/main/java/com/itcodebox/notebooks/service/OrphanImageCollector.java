@@ -0,0 +1,366 @@
+package com.itcodebox.notebooks.service;
+
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.intellij.openapi.ui.Messages;
+import com.itcodebox.notebooks.constant.PluginConstant;
+import com.itcodebox.notebooks.entity.ImageRecord;
+import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
+import com.itcodebox.notebooks.ui.notify.NotifyUtil;
+import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+import com.itcodebox.notebooks.utils.ImageRecordUtil;
+import com.itcodebox.notebooks.utils.ImageStoreUtil;
+import com.itcodebox.notebooks.utils.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
+
+/**
+ * 清理没有笔记引用的图片(标记-清除).
+ * <p>
+ * 标记: 逐行读取 note.image_records, 只把图片路径放入集合, 不把笔记读入内存.
+ * 清除: 逐个遍历图片目录(包括按内容保存时的分目录), 原图没有被引用的图片和缩略图就是无用图片,
+ * 可以移动到 ORPHAN_IMAGE_DIRECTORY_PATH 下按时间命名的目录里, 也可以直接删除.
+ * <p>
+ * 先空跑一次统计无用图片, 用户确认后才会真正移动或者删除. 为了不误删刚保存还没写入笔记的图片,
+ * 最近修改过的文件和还在生成缩略图的图片都会跳过; 导入期间(只读模式)不运行.
+ *
+ * @author LeeWyatt
+ */
+public class OrphanImageCollector {
+    /**
+     * 最近修改过的文件不清理: 添加和导入图片时, 先保存图片, 后更新笔记
+     */
+    private static final long GRACE_MILLIS = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * 报告里列出的文件数
+     */
+    private static final int SAMPLE_SIZE = 10;
+    private static final Pattern IMAGE_PATH = Pattern.compile("\"imagePath\"\\s*:\\s*\"((?:[^\"\\\\]|\\\\.)*)\"");
+    private static final Pattern SHARD_NAME = Pattern.compile("[0-9a-f]{2}");
+    private static final DateTimeFormatter DIR_TIME_FORMATTER = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public enum Mode {
+        /**
+         * 只统计, 不修改文件
+         */
+        DRY_RUN,
+        /**
+         * 移动到 ORPHAN_IMAGE_DIRECTORY_PATH
+         */
+        QUARANTINE,
+        DELETE
+    }
+
+    public static OrphanImageCollector getInstance() {
+        return ServiceManager.getService(OrphanImageCollector.class);
+    }
+
+    private OrphanImageCollector() {
+    }
+
+    /**
+     * 在后台统计无用图片, 然后询问用户移动还是删除
+     */
+    public void collect(@Nullable Project project) {
+        if (AppSettingsState.getInstance().readOnlyMode || !running.compareAndSet(false, true)) {
+            NotifyUtil.showInfoNotification(project, PluginConstant.NOTIFICATION_CLEAR_CACHE, message("orphanImage.title"), message("orphanImage.busy"));
+            return;
+        }
+        run(project, Mode.DRY_RUN, report -> {
+            if (report.getOrphanCount() == 0) {
+                NotifyUtil.showInfoNotification(project, PluginConstant.NOTIFICATION_CLEAR_CACHE, message("orphanImage.title"),
+                        message("orphanImage.notify.none", String.valueOf(report.getLiveCount())));
+                return false;
+            }
+            int choose = Messages.showYesNoCancelDialog(project,
+                    message("orphanImage.dialog.message", String.valueOf(report.getOrphanCount()),
+                            StringUtil.formatFileSize(report.getOrphanBytes()), report.getSampleText(),
+                            PluginConstant.ORPHAN_IMAGE_DIRECTORY_PATH.toString()),
+                    message("orphanImage.title"),
+                    message("orphanImage.dialog.quarantine"),
+                    message("orphanImage.dialog.delete"),
+                    message("button.cancel"),
+                    Messages.getQuestionIcon());
+            if (choose != Messages.YES && choose != Messages.NO) {
+                return false;
+            }
+            //清除时重新标记, 空跑之后笔记可能又有修改
+            run(project, choose == Messages.YES ? Mode.QUARANTINE : Mode.DELETE, result -> {
+                NotifyUtil.showInfoNotification(project, PluginConstant.NOTIFICATION_CLEAR_CACHE, message("orphanImage.title"),
+                        message(result.getMode() == Mode.DELETE ? "orphanImage.notify.deleted" : "orphanImage.notify.quarantined",
+                                String.valueOf(result.getOrphanCount()), StringUtil.formatFileSize(result.getOrphanBytes()),
+                                String.valueOf(result.getTarget())));
+                return false;
+            });
+            return true;
+        });
+    }
+
+    /**
+     * @param onSuccess 在EDT上处理结果; 返回true表示又启动了下一个任务, 运行标记由下一个任务释放
+     */
+    private void run(@Nullable Project project, Mode mode, Predicate<Report> onSuccess) {
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, message("orphanImage.title"), true) {
+            private Report report;
+            private boolean handedOver;
+
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                report = collect(indicator, mode);
+            }
+
+            @Override
+            public void onSuccess() {
+                if (report == null) {
+                    NotifyUtil.showWarningNotification(project, PluginConstant.NOTIFICATION_CLEAR_CACHE, message("orphanImage.title"), message("orphanImage.notify.markFailed"));
+                    return;
+                }
+                handedOver = onSuccess.test(report);
+            }
+
+            @Override
+            public void onFinished() {
+                if (!handedOver) {
+                    running.set(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * 标记并清除无用图片
+     *
+     * @return 统计结果; 读取笔记失败时返回null, 这时不会清除任何文件
+     */
+    @Nullable
+    public Report collect(ProgressIndicator indicator, Mode mode) {
+        long cutoff = System.currentTimeMillis() - GRACE_MILLIS;
+        indicator.setIndeterminate(true);
+        indicator.setText(message("orphanImage.indicator.mark"));
+        Set<String> live = mark(indicator);
+        if (live == null) {
+            return null;
+        }
+        indicator.setText(message("orphanImage.indicator.sweep"));
+        Report report = new Report(mode, live.size());
+        if (mode == Mode.QUARANTINE) {
+            report.target = PluginConstant.ORPHAN_IMAGE_DIRECTORY_PATH.resolve(LocalDateTime.now().format(DIR_TIME_FORMATTER));
+        }
+        Path imageDir = PluginConstant.IMAGE_DIRECTORY_PATH;
+        if (!Files.isDirectory(imageDir)) {
+            return report;
+        }
+        //逐个处理, 不保存文件列表
+        try (Stream<Path> stream = Files.walk(imageDir)) {
+            Iterator<Path> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                indicator.checkCanceled();
+                Path file = iterator.next();
+                if (!Files.isRegularFile(file)) {
+                    continue;
+                }
+                String imageName = ImageStoreUtil.toImageName(imageDir, file);
+                if (!isOrphan(imageName, live) || Files.getLastModifiedTime(file).toMillis() > cutoff) {
+                    continue;
+                }
+                long length = Files.size(file);
+                sweep(imageName, file, report);
+                report.addOrphan(imageName, length);
+                indicator.setText2(imageName);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        if (mode != Mode.DRY_RUN) {
+            deleteEmptyShards(imageDir);
+        }
+        return report;
+    }
+
+    /**
+     * 收集全部笔记引用的图片路径
+     *
+     * @return 查询或者解析失败时返回null
+     */
+    @Nullable
+    private Set<String> mark(ProgressIndicator indicator) {
+        Set<String> live = new HashSet<>();
+        AtomicBoolean malformed = new AtomicBoolean();
+        boolean success = NoteServiceImpl.getInstance().forEachImageRecords(imageRecords -> {
+            indicator.checkCanceled();
+            if (!markImageRecords(imageRecords, live)) {
+                malformed.set(true);
+            }
+        });
+        return success && !malformed.get() ? live : null;
+    }
+
+    /**
+     * 从 image_records 中取出图片路径. 一般直接用正则表达式提取, 不创建ImageRecord;
+     * 路径里有转义字符时再按JSON解析
+     *
+     * @return 无法解析时返回false
+     */
+    static boolean markImageRecords(String imageRecords, Set<String> live) {
+        Matcher matcher = IMAGE_PATH.matcher(imageRecords);
+        boolean found = false;
+        boolean escaped = false;
+        while (matcher.find()) {
+            found = true;
+            String imagePath = matcher.group(1);
+            if (imagePath.indexOf('\\') >= 0) {
+                escaped = true;
+                break;
+            }
+            live.add(imagePath);
+        }
+        if (!escaped) {
+            //没有图片路径时, 只能是空数组
+            return found || imageRecords.trim().replace(" ", "").equals("[]");
+        }
+        List<ImageRecord> records = ImageRecordUtil.convertToList(imageRecords);
+        if (records.isEmpty()) {
+            return false;
+        }
+        for (ImageRecord record : records) {
+            if (record.getImagePath() != null) {
+                live.add(record.getImagePath());
+            }
+        }
+        return true;
+    }
+
+    private boolean isOrphan(String imageName, Set<String> live) {
+        //只处理图片和保存图片时的临时文件
+        int index = imageName.lastIndexOf('.');
+        if (index <= 0 || !(PluginConstant.IMG_EXTENSION_LIST.contains(StringUtil.getExtension(imageName)) || imageName.endsWith(".tmp"))) {
+            return false;
+        }
+        //缩略图跟随原图
+        String originName = ImageStoreUtil.isThumbName(imageName)
+                ? imageName.substring(0, index - PluginConstant.ThumbExtension.length()) + imageName.substring(index)
+                : imageName;
+        return !live.contains(originName) && !ThumbnailService.getInstance().isPending(originName);
+    }
+
+    private void sweep(String imageName, Path file, Report report) throws IOException {
+        if (report.mode == Mode.DRY_RUN) {
+            return;
+        }
+        ImageCache.getInstance().invalidate(imageName);
+        if (report.mode == Mode.DELETE) {
+            Files.deleteIfExists(file);
+            return;
+        }
+        Path target = report.target.resolve(imageName);
+        Files.createDirectories(target.getParent());
+        Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void deleteEmptyShards(Path imageDir) {
+        try (Stream<Path> stream = Files.list(imageDir)) {
+            Iterator<Path> iterator = stream.iterator();
+            while (iterator.hasNext()) {
+                Path dir = iterator.next();
+                if (Files.isDirectory(dir) && SHARD_NAME.matcher(dir.getFileName().toString()).matches()) {
+                    try (Stream<Path> children = Files.list(dir)) {
+                        if (!children.findAny().isPresent()) {
+                            Files.deleteIfExists(dir);
+                        }
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 清理结果. 只记录数量, 大小和前几个文件名, 不保存全部文件名
+     */
+    public static class Report {
+        private final Mode mode;
+        private final int liveCount;
+        private final List<String> samples = new ArrayList<>(SAMPLE_SIZE);
+        private int orphanCount;
+        private long orphanBytes;
+        private Path target;
+
+        Report(Mode mode, int liveCount) {
+            this.mode = mode;
+            this.liveCount = liveCount;
+        }
+
+        void addOrphan(String imageName, long length) {
+            orphanCount++;
+            orphanBytes += length;
+            if (samples.size() < SAMPLE_SIZE) {
+                samples.add(imageName);
+            }
+        }
+
+        public Mode getMode() {
+            return mode;
+        }
+
+        public int getLiveCount() {
+            return liveCount;
+        }
+
+        public int getOrphanCount() {
+            return orphanCount;
+        }
+
+        public long getOrphanBytes() {
+            return orphanBytes;
+        }
+
+        public List<String> getSamples() {
+            return samples;
+        }
+
+        /**
+         * 移动到的目录; 没有移动时为null
+         */
+        @Nullable
+        public Path getTarget() {
+            return target;
+        }
+
+        public String getSampleText() {
+            StringBuilder builder = new StringBuilder();
+            for (String sample : samples) {
+                builder.append('\n').append(sample);
+            }
+            if (orphanCount > samples.size()) {
+                builder.append("\n...");
+            }
+            return builder.toString();
+        }
+    }
+}
@@ -2,12 +2,50 @@ package com.itcodebox.notebooks.service;
 
 import com.itcodebox.notebooks.entity.SearchMode;
 import com.itcodebox.notebooks.entity.SearchRecord;
+import com.itcodebox.notebooks.utils.MatchRules;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author LeeWyatt
  */
 public interface SearchRecordService {
     List<SearchRecord> searchKeywords(String keywords, SearchMode searchMode);
+
+    /**
+     * 最多返回 limit 条搜索结果; 结果包含全部关键字, 按相关度从高到低排列, 见 SearchRanker
+     */
+    List<SearchRecord> searchKeywords(String keywords, SearchMode searchMode, int limit);
+
+    /**
+     * 按匹配规则搜索, 最多返回 limit 条搜索结果; 匹配规则为 REGEX 时 keywords 是完整的正则表达式
+     */
+    List<SearchRecord> searchKeywords(String keywords, SearchMode searchMode, MatchRules matchRules, int limit);
+
+    /**
+     * 在后台线程搜索, 最多返回 limit 条搜索结果
+     */
+    CompletableFuture<List<SearchRecord>> searchKeywordsAsync(String keywords, SearchMode searchMode, int limit);
+
+    /**
+     * 在后台线程按匹配规则搜索, 最多返回 limit 条搜索结果. 取消返回的 CompletableFuture 时搜索会提前结束
+     */
+    CompletableFuture<List<SearchRecord>> searchKeywordsAsync(String keywords, SearchMode searchMode, MatchRules matchRules, int limit);
+
+    /**
+     * 在已有的搜索结果里按新的关键字过滤, 不再查询数据库. 按新的关键字重新排序, 并重新生成摘要
+     *
+     * @param records    已有的搜索结果, 必须是完整的结果(没有被截断)
+     * @param keywords   新的关键字
+     * @param searchMode 搜索模式, 必须和已有的搜索结果相同
+     * @return 过滤后的结果
+     */
+    List<SearchRecord> filterKeywords(List<SearchRecord> records, String keywords, SearchMode searchMode);
+
+    /**
+     * 按匹配规则在已有的搜索结果里过滤, 匹配规则必须和已有的搜索结果相同.
+     * 正则表达式改变后的结果不一定是旧结果的子集, 所以 REGEX 不能过滤, 需要重新搜索
+     */
+    List<SearchRecord> filterKeywords(List<SearchRecord> records, String keywords, SearchMode searchMode, MatchRules matchRules);
 }
@@ -0,0 +1,269 @@
+package com.itcodebox.notebooks.service;
+
+import com.intellij.openapi.Disposable;
+import com.intellij.openapi.components.ServiceManager;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.intellij.openapi.progress.ProgressManager;
+import com.intellij.openapi.progress.Task;
+import com.intellij.openapi.project.Project;
+import com.itcodebox.notebooks.constant.PluginConstant;
+import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+import com.itcodebox.notebooks.utils.CustomUIUtil;
+import com.itcodebox.notebooks.utils.ImageStoreUtil;
+import com.itcodebox.notebooks.utils.StringUtil;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.Dimension;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
+
+/**
+ * 在后台线程生成缩略图, 避免在事件分发线程(EDT)上解码和缩放大图片.
+ * <p>
+ * 线程数为CPU核数的一半, 不和IDE抢占CPU; 队列有上限, 队列满时返回异常结束的 CompletableFuture.
+ * 还没生成完的缩略图记录在 pending 里, 界面可以据此先显示占位图标, 完成后再刷新.
+ * <p>
+ * 缩略图尺寸修改后, 可以用 rebuildThumbnails 检查所有图片, 重新生成缺少的或者尺寸不对的缩略图.
+ *
+ * @author LeeWyatt
+ */
+public class ThumbnailService implements Disposable {
+    private static final int QUEUE_CAPACITY = 256;
+    /**
+     * 重建缩略图时, 每个线程最多同时提交的任务数, 避免占满队列
+     */
+    private static final int REBUILD_TASKS_PER_THREAD = 4;
+    private static final long REBUILD_WAIT_MILLIS = 100;
+
+    private final ThreadPoolExecutor executor;
+    /**
+     * 还没有生成完的缩略图, key 为图片目录下的原图文件名
+     */
+    private final Map<String, CompletableFuture<File>> pending = new ConcurrentHashMap<>();
+
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    /**
+     * 重建期间又请求了重建(比如再次修改了尺寸), 本次结束后需要再检查一次
+     */
+    private volatile boolean rebuildRequested;
+
+    public static ThumbnailService getInstance() {
+        return ServiceManager.getService(ThumbnailService.class);
+    }
+
+    private ThumbnailService() {
+        int threads = Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Notebooks Thumbnail " + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.NORM_PRIORITY - 1);
+                    return thread;
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * 为图片目录下的图片生成缩略图; 同一张图片正在生成时, 返回同一个 CompletableFuture
+     *
+     * @param imageName 图片目录下的原图文件名
+     * @return 完成时返回缩略图文件(图片不需要缩小时, 缩略图文件不存在)
+     */
+    public CompletableFuture<File> submit(String imageName) {
+        CompletableFuture<File> future = new CompletableFuture<>();
+        CompletableFuture<File> existing = pending.putIfAbsent(imageName, future);
+        if (existing != null) {
+            return existing;
+        }
+        File imageFile = PluginConstant.IMAGE_DIRECTORY_PATH.resolve(imageName).toFile();
+        File thumbFile = PluginConstant.IMAGE_DIRECTORY_PATH.resolve(CustomUIUtil.convertToThumbName(imageName)).toFile();
+        //在提交时读取设置, 后台线程不访问设置
+        int thumbMaxSize = AppSettingsState.getInstance().thumbMaxSize;
+        try {
+            executor.execute(() -> {
+                try {
+                    CustomUIUtil.writeThumbImageToFile(imageFile, thumbFile, thumbMaxSize);
+                    ImageCache.getInstance().invalidate(imageName);
+                    pending.remove(imageName, future);
+                    future.complete(thumbFile);
+                } catch (Throwable throwable) {
+                    throwable.printStackTrace();
+                    pending.remove(imageName, future);
+                    future.completeExceptionally(throwable);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.remove(imageName, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 缩略图是否还在生成中
+     */
+    public boolean isPending(String imageName) {
+        return imageName != null && pending.containsKey(imageName);
+    }
+
+    /**
+     * @return 正在生成的缩略图; 没有在生成时返回 null
+     */
+    @Nullable
+    public CompletableFuture<File> getPending(String imageName) {
+        return imageName == null ? null : pending.get(imageName);
+    }
+
+    /**
+     * 在后台检查图片目录, 为缺少缩略图或者缩略图尺寸不对的图片重新生成缩略图. 可以取消
+     */
+    public void rebuildThumbnails(@Nullable Project project) {
+        if (!rebuilding.compareAndSet(false, true)) {
+            rebuildRequested = true;
+            return;
+        }
+        ProgressManager.getInstance().run(new Task.Backgroundable(project, message("thumbnail.rebuild.title"), true) {
+            @Override
+            public void run(@NotNull ProgressIndicator indicator) {
+                rebuild(indicator);
+            }
+
+            @Override
+            public void onFinished() {
+                rebuilding.set(false);
+                if (rebuildRequested) {
+                    rebuildRequested = false;
+                    rebuildThumbnails(null);
+                }
+            }
+        });
+    }
+
+    private void rebuild(ProgressIndicator indicator) {
+        indicator.setIndeterminate(false);
+        indicator.setText(message("thumbnail.rebuild.scanning"));
+        List<String> imageNames = findStaleThumbnails(indicator);
+        int total = imageNames.size();
+        int maxInFlight = executor.getMaximumPoolSize() * REBUILD_TASKS_PER_THREAD;
+        Deque<CompletableFuture<File>> inFlight = new ArrayDeque<>();
+        int done = 0;
+        for (String imageName : imageNames) {
+            indicator.checkCanceled();
+            if (inFlight.size() >= maxInFlight) {
+                await(inFlight.poll(), indicator);
+                updateProgress(indicator, ++done, total);
+            }
+            inFlight.add(submit(imageName));
+        }
+        while (!inFlight.isEmpty()) {
+            await(inFlight.poll(), indicator);
+            updateProgress(indicator, ++done, total);
+        }
+    }
+
+    private void updateProgress(ProgressIndicator indicator, int done, int total) {
+        indicator.setFraction((double) done / total);
+        indicator.setText(message("thumbnail.rebuild.indicator.text", String.valueOf(done), String.valueOf(total)));
+    }
+
+    /**
+     * 等待任务完成, 期间响应取消
+     */
+    private void await(CompletableFuture<File> future, ProgressIndicator indicator) {
+        while (true) {
+            indicator.checkCanceled();
+            try {
+                future.get(REBUILD_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+                return;
+            } catch (TimeoutException ignored) {
+            } catch (ExecutionException e) {
+                //异常已经在生成时打印
+                return;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * 找出缺少缩略图或者缩略图尺寸和设置不符的图片. 只读取图片头部的尺寸信息, 不解码图片.
+     * 原图不需要缩小时, 删除旧的缩略图, 否则会一直显示旧的缩略图
+     *
+     * @return 需要重新生成缩略图的原图文件名
+     */
+    private List<String> findStaleThumbnails(ProgressIndicator indicator) {
+        List<String> imageNames = new ArrayList<>();
+        Path imageDir = PluginConstant.IMAGE_DIRECTORY_PATH;
+        List<Path> files;
+        //按内容保存的图片在下一级的分目录里
+        try (Stream<Path> stream = Files.walk(imageDir, 2)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return imageNames;
+        }
+        int thumbMaxSize = AppSettingsState.getInstance().thumbMaxSize;
+        for (int i = 0; i < files.size(); i++) {
+            indicator.checkCanceled();
+            indicator.setFraction((double) i / files.size());
+            String imageName = ImageStoreUtil.toImageName(imageDir, files.get(i));
+            if (!isOriginImage(imageName) || isPending(imageName)) {
+                continue;
+            }
+            Dimension originSize = CustomUIUtil.getImageSize(files.get(i).toFile());
+            if (originSize == null) {
+                continue;
+            }
+            File thumbFile = imageDir.resolve(CustomUIUtil.convertToThumbName(imageName)).toFile();
+            if (Math.max(originSize.width, originSize.height) <= thumbMaxSize) {
+                if (thumbFile.isFile() && thumbFile.delete()) {
+                    ImageCache.getInstance().invalidate(imageName);
+                }
+                continue;
+            }
+            Dimension thumbSize = thumbFile.isFile() ? CustomUIUtil.getImageSize(thumbFile) : null;
+            //缩放时取整, 允许相差1个像素
+            if (thumbSize == null || Math.abs(Math.max(thumbSize.width, thumbSize.height) - thumbMaxSize) > 1) {
+                imageNames.add(imageName);
+            }
+        }
+        return imageNames;
+    }
+
+    private boolean isOriginImage(String fileName) {
+        int index = fileName.lastIndexOf('.');
+        return index > 0
+                && PluginConstant.IMG_EXTENSION_LIST.contains(StringUtil.getExtension(fileName))
+                && !ImageStoreUtil.isThumbName(fileName);
+    }
+
+    @Override
+    public void dispose() {
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,19 @@
+package com.itcodebox.notebooks.service;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 在事务中执行的操作
+ *
+ * @author LeeWyatt
+ */
+@FunctionalInterface
+public interface TransactionCallback<R> {
+    /**
+     * @param conn 事务使用的写连接; 事务期间当前线程调用的 Service 方法也都会使用这个连接
+     * @return 结果
+     * @throws SQLException sql异常, 抛出后整个事务回滚
+     */
+    R doInTransaction(Connection conn) throws SQLException;
+}
@@ -6,10 +6,14 @@ import com.itcodebox.notebooks.dao.impl.ChapterDaoImpl;
 import com.itcodebox.notebooks.entity.Chapter;
 import com.itcodebox.notebooks.service.ChapterService;
 import com.itcodebox.notebooks.service.DatabaseBasicService;
+import com.itcodebox.notebooks.service.DatabaseExecutor;
+import com.itcodebox.notebooks.service.HierarchyCache;
+import com.itcodebox.notebooks.service.TransactionCallback;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author LeeWyatt
@@ -17,6 +21,8 @@ import java.util.List;
 public class ChapterServiceImpl implements ChapterService {
     private final DatabaseBasicService databaseBasicService = ServiceManager.getService(DatabaseBasicService.class);
     private final ChapterDao chapterDao = ChapterDaoImpl.getInstance();
+    private final HierarchyCache hierarchyCache = HierarchyCache.getInstance();
+    private final DatabaseExecutor databaseExecutor = DatabaseExecutor.getInstance();
 
     private ChapterServiceImpl() {
     }
@@ -28,10 +34,15 @@ public class ChapterServiceImpl implements ChapterService {
 
     @Override
     public List<Chapter> findAllByNotebookId(Integer notebookId) {
+        List<Chapter> cached = hierarchyCache.getChapters(notebookId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return chapterDao.findAllByNotebookId(conn, notebookId);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putChapters(notebookId, chapterDao.findAllByNotebookId(conn, notebookId), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -40,6 +51,16 @@ public class ChapterServiceImpl implements ChapterService {
         return null;
     }
 
+    @Override
+    public CompletableFuture<List<Chapter>> findAllByNotebookIdAsync(Integer notebookId) {
+        List<Chapter> cached = hierarchyCache.getChapters(notebookId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return databaseExecutor.submit(() -> findAllByNotebookId(notebookId));
+    }
+
+
     @Override
     public void deleteAllByNotebookId(Integer notebookId) {
         Connection conn = null;
@@ -50,15 +71,21 @@ public class ChapterServiceImpl implements ChapterService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateChapters();
         }
     }
 
     @Override
     public Chapter findByTitle(String title, Integer notebookId) {
+        Chapter cached = hierarchyCache.getChapterByTitle(title, notebookId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return chapterDao.findByTitle(conn, title, notebookId);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putChapter(chapterDao.findByTitle(conn, title, notebookId), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -69,10 +96,15 @@ public class ChapterServiceImpl implements ChapterService {
 
     @Override
     public List<String> getTitles(String notebookTitle) {
+        List<String> cached = hierarchyCache.getChapterTitles(notebookTitle);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return chapterDao.getTitles(conn, notebookTitle);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putChapterTitles(notebookTitle, chapterDao.getTitles(conn, notebookTitle), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -91,6 +123,7 @@ public class ChapterServiceImpl implements ChapterService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateChapters();
         }
     }
 
@@ -104,6 +137,7 @@ public class ChapterServiceImpl implements ChapterService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateChapters();
         }
         return null;
     }
@@ -118,6 +152,7 @@ public class ChapterServiceImpl implements ChapterService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateChapters();
         }
     }
 
@@ -131,6 +166,7 @@ public class ChapterServiceImpl implements ChapterService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateChapters();
         }
     }
 
@@ -144,15 +180,21 @@ public class ChapterServiceImpl implements ChapterService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateChapters();
         }
     }
 
     @Override
     public Chapter findById(Integer id) {
+        Chapter cached = hierarchyCache.getChapter(id);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return chapterDao.findById(conn, id);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putChapter(chapterDao.findById(conn, id), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -171,6 +213,12 @@ public class ChapterServiceImpl implements ChapterService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateChapters();
         }
     }
+
+    @Override
+    public <R> R inTransaction(TransactionCallback<R> callback) {
+        return databaseBasicService.inTransaction(callback);
+    }
 }
@@ -1,15 +1,24 @@
 package com.itcodebox.notebooks.service.impl;
 
 import com.intellij.openapi.components.ServiceManager;
+import com.itcodebox.notebooks.dao.ImageRecordDao;
 import com.itcodebox.notebooks.dao.NoteDao;
+import com.itcodebox.notebooks.dao.impl.ImageRecordDaoImpl;
 import com.itcodebox.notebooks.dao.impl.NoteDaoImpl;
+import com.itcodebox.notebooks.entity.ImageRecord;
 import com.itcodebox.notebooks.entity.Note;
 import com.itcodebox.notebooks.service.DatabaseBasicService;
+import com.itcodebox.notebooks.service.DatabaseExecutor;
+import com.itcodebox.notebooks.service.HierarchyCache;
+import com.itcodebox.notebooks.service.TransactionCallback;
 import com.itcodebox.notebooks.service.NoteService;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 /**
  * @author LeeWyatt
@@ -17,6 +26,9 @@ import java.util.List;
 public class  NoteServiceImpl implements NoteService {
     private final DatabaseBasicService databaseBasicService =  ServiceManager.getService(DatabaseBasicService.class);
     private final NoteDao noteDao = NoteDaoImpl.getInstance();
+    private final ImageRecordDao imageRecordDao = ImageRecordDaoImpl.getInstance();
+    private final HierarchyCache hierarchyCache = HierarchyCache.getInstance();
+    private final DatabaseExecutor databaseExecutor = DatabaseExecutor.getInstance();
 
     private NoteServiceImpl() {
     }
@@ -35,6 +47,7 @@ public class  NoteServiceImpl implements NoteService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateNotes(ary);
         }
     }
 
@@ -48,6 +61,7 @@ public class  NoteServiceImpl implements NoteService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateNotes(note);
         }
         return null;
     }
@@ -62,6 +76,7 @@ public class  NoteServiceImpl implements NoteService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateNoteById(id);
         }
     }
 
@@ -75,6 +90,7 @@ public class  NoteServiceImpl implements NoteService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateNotes(ary);
         }
     }
 
@@ -88,15 +104,21 @@ public class  NoteServiceImpl implements NoteService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateNotes(note);
         }
     }
 
     @Override
     public Note findById(Integer id) {
+        Note cached = hierarchyCache.getNote(id);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return noteDao.findById(conn, id);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNote(noteDao.findById(conn, id), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -115,6 +137,7 @@ public class  NoteServiceImpl implements NoteService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateNotes();
         }
     }
 
@@ -122,7 +145,7 @@ public class  NoteServiceImpl implements NoteService {
     public List<Note> findAllByChapterId(Integer chapterId) {
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
+            conn = databaseBasicService.getReadConnection();
             return noteDao.findAllByChapterId(conn, chapterId);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
@@ -132,6 +155,77 @@ public class  NoteServiceImpl implements NoteService {
         return null;
     }
 
+    @Override
+    public List<Note> findSummariesByChapterId(Integer chapterId) {
+        List<Note> cached = hierarchyCache.getNoteSummaries(chapterId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
+        Connection conn = null;
+        try {
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNoteSummaries(chapterId, noteDao.findSummariesByChapterId(conn, chapterId), version);
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        } finally {
+            databaseBasicService.closeResource(conn, null, null);
+        }
+        return null;
+    }
+
+    @Override
+    public CompletableFuture<List<Note>> findSummariesByChapterIdAsync(Integer chapterId) {
+        List<Note> cached = hierarchyCache.getNoteSummaries(chapterId);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return databaseExecutor.submit(() -> findSummariesByChapterId(chapterId));
+    }
+
+
+    @Override
+    public CompletableFuture<List<Note>> findBodiesAsync(List<Note> notes) {
+        List<Note> bodies = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        for (Note note : notes) {
+            if (note == null || !note.isSummary()) {
+                continue;
+            }
+            Note cached = hierarchyCache.getNote(note.getId());
+            if (cached != null) {
+                bodies.add(cached);
+            } else {
+                ids.add(note.getId());
+            }
+        }
+        if (ids.isEmpty()) {
+            return CompletableFuture.completedFuture(bodies);
+        }
+        return databaseExecutor.submit(() -> {
+            bodies.addAll(findBodiesByIds(ids));
+            return bodies;
+        });
+    }
+
+    private List<Note> findBodiesByIds(List<Integer> ids) {
+        long version = hierarchyCache.getVersion();
+        Connection conn = null;
+        try {
+            conn = databaseBasicService.getReadConnection();
+            List<Note> bodies = noteDao.findAllByIds(conn, ids);
+            for (Note body : bodies) {
+                hierarchyCache.putNote(body, version);
+            }
+            return bodies;
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        } finally {
+            databaseBasicService.closeResource(conn, null, null);
+        }
+        return new ArrayList<>();
+    }
+
     @Override
     public void deleteAllByChapterId(Integer chapterId) {
         Connection conn = null;
@@ -142,6 +236,7 @@ public class  NoteServiceImpl implements NoteService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateNotes();
         }
     }
 
@@ -155,15 +250,21 @@ public class  NoteServiceImpl implements NoteService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateNotes();
         }
     }
 
     @Override
     public List<String> getTitles(String notebookTitle, String chapterTitle) {
+        List<String> cached = hierarchyCache.getNoteTitles(notebookTitle, chapterTitle);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return noteDao.getTitles(conn, notebookTitle, chapterTitle);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNoteTitles(notebookTitle, chapterTitle, noteDao.getTitles(conn, notebookTitle, chapterTitle), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -174,10 +275,15 @@ public class  NoteServiceImpl implements NoteService {
 
     @Override
     public Note findByTitle(String noteTitle, Integer chapterId) {
+        Note cached = hierarchyCache.getNoteByTitle(noteTitle, chapterId);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return noteDao.findByTitle(conn, noteTitle,chapterId);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNoteByTitle(noteDao.findByTitle(conn, noteTitle,chapterId), chapterId, noteTitle, version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -188,10 +294,15 @@ public class  NoteServiceImpl implements NoteService {
 
     @Override
     public Note findByTitles(String noteTile, String chapterTitle, String notebookTitle) {
+        Note cached = hierarchyCache.getNoteByTitles(noteTile, chapterTitle, notebookTitle);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return noteDao.findByTitles(conn,noteTile ,chapterTitle,notebookTitle);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNoteByTitles(noteDao.findByTitles(conn,noteTile ,chapterTitle,notebookTitle), noteTile, chapterTitle, notebookTitle, version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -201,11 +312,11 @@ public class  NoteServiceImpl implements NoteService {
     }
 
     @Override
-    public List<String> getImageRecordsByNotebookId(int notebookId) {
+    public List<ImageRecord> getImageRecordsByNotebookId(int notebookId) {
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return noteDao.getImageRecordsByNotebookId(conn,notebookId);
+            conn = databaseBasicService.getReadConnection();
+            return imageRecordDao.findAllByNotebookId(conn, notebookId);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -215,11 +326,11 @@ public class  NoteServiceImpl implements NoteService {
     }
 
     @Override
-    public List<String> getImageRecordsByChapterId(int chapterId) {
+    public List<ImageRecord> getImageRecordsByChapterId(int chapterId) {
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return noteDao.getImageRecordsByChapterId(conn,chapterId);
+            conn = databaseBasicService.getReadConnection();
+            return imageRecordDao.findAllByChapterId(conn, chapterId);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -229,11 +340,11 @@ public class  NoteServiceImpl implements NoteService {
     }
 
     @Override
-    public List<String> getImageRecordsByNoteId( int noteId) {
+    public List<ImageRecord> getImageRecordsByNoteId(int noteId) {
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return noteDao.getImageRecordsByNoteId(conn,noteId);
+            conn = databaseBasicService.getReadConnection();
+            return imageRecordDao.findAllByNoteId(conn, noteId);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -242,4 +353,64 @@ public class  NoteServiceImpl implements NoteService {
         return null;
     }
 
+    @Override
+    public int countImageReferences(String imagePath) {
+        Connection conn = null;
+        try {
+            conn = databaseBasicService.getReadConnection();
+            return imageRecordDao.countNotesByImagePath(conn, imagePath);
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        } finally {
+            databaseBasicService.closeResource(conn, null, null);
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean forEachByChapterId(Integer chapterId, Consumer<Note> consumer) {
+        Connection conn = null;
+        try {
+            conn = databaseBasicService.getReadConnection();
+            return noteDao.forEachByChapterId(conn, chapterId, consumer);
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        } finally {
+            databaseBasicService.closeResource(conn, null, null);
+        }
+        return false;
+    }
+
+    @Override
+    public int countNotes(Integer notebookId) {
+        Connection conn = null;
+        try {
+            conn = databaseBasicService.getReadConnection();
+            return noteDao.countByNotebookId(conn, notebookId);
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        } finally {
+            databaseBasicService.closeResource(conn, null, null);
+        }
+        return -1;
+    }
+
+    @Override
+    public boolean forEachImageRecords(Consumer<String> consumer) {
+        Connection conn = null;
+        try {
+            conn = databaseBasicService.getReadConnection();
+            return noteDao.forEachImageRecords(conn, consumer);
+        } catch (SQLException throwables) {
+            throwables.printStackTrace();
+        } finally {
+            databaseBasicService.closeResource(conn, null, null);
+        }
+        return false;
+    }
+
+    @Override
+    public <R> R inTransaction(TransactionCallback<R> callback) {
+        return databaseBasicService.inTransaction(callback);
+    }
 }
@@ -5,11 +5,15 @@ import com.itcodebox.notebooks.dao.NotebookDao;
 import com.itcodebox.notebooks.dao.impl.NotebookDaoImpl;
 import com.itcodebox.notebooks.entity.Notebook;
 import com.itcodebox.notebooks.service.DatabaseBasicService;
+import com.itcodebox.notebooks.service.DatabaseExecutor;
+import com.itcodebox.notebooks.service.HierarchyCache;
+import com.itcodebox.notebooks.service.TransactionCallback;
 import com.itcodebox.notebooks.service.NotebookService;
 
 import java.sql.Connection;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @author LeeWyatt
@@ -17,6 +21,8 @@ import java.util.List;
 public class NotebookServiceImpl implements NotebookService {
     private final DatabaseBasicService databaseBasicService =  ServiceManager.getService(DatabaseBasicService.class);
     private final NotebookDao notebookDao = NotebookDaoImpl.getInstance();
+    private final HierarchyCache hierarchyCache = HierarchyCache.getInstance();
+    private final DatabaseExecutor databaseExecutor = DatabaseExecutor.getInstance();
 
     public static NotebookServiceImpl getInstance() {
         return  ServiceManager.getService(NotebookServiceImpl.class);
@@ -35,6 +41,7 @@ public class NotebookServiceImpl implements NotebookService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateAll();
         }
     }
 
@@ -48,6 +55,7 @@ public class NotebookServiceImpl implements NotebookService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateAll();
         }
         return null;
     }
@@ -62,6 +70,7 @@ public class NotebookServiceImpl implements NotebookService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateAll();
         }
     }
 
@@ -75,6 +84,7 @@ public class NotebookServiceImpl implements NotebookService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateAll();
         }
     }
 
@@ -88,15 +98,21 @@ public class NotebookServiceImpl implements NotebookService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateAll();
         }
     }
 
     @Override
     public Notebook findById(Integer id) {
+        Notebook cached = hierarchyCache.getNotebook(id);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return notebookDao.findById(conn, id);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNotebook(notebookDao.findById(conn, id), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -115,15 +131,21 @@ public class NotebookServiceImpl implements NotebookService {
             throwables.printStackTrace();
         } finally {
             databaseBasicService.closeResource(conn, null, null);
+            hierarchyCache.invalidateAll();
         }
     }
 
     @Override
     public Notebook findByTitle(String title) {
+        Notebook cached = hierarchyCache.getNotebookByTitle(title);
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return notebookDao.findByTitle(conn, title);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNotebook(notebookDao.findByTitle(conn, title), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -134,10 +156,15 @@ public class NotebookServiceImpl implements NotebookService {
 
     @Override
     public List<Notebook> findAll() {
+        List<Notebook> cached = hierarchyCache.getNotebooks();
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return notebookDao.findAll(conn);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNotebooks(notebookDao.findAll(conn), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -146,12 +173,27 @@ public class NotebookServiceImpl implements NotebookService {
         return null;
     }
 
+    @Override
+    public CompletableFuture<List<Notebook>> findAllAsync() {
+        List<Notebook> cached = hierarchyCache.getNotebooks();
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return databaseExecutor.submit(this::findAll);
+    }
+
+
     @Override
     public List<String> getTitles() {
+        List<String> cached = hierarchyCache.getNotebookTitles();
+        if (cached != null) {
+            return cached;
+        }
+        long version = hierarchyCache.getVersion();
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return notebookDao.getTitles(conn);
+            conn = databaseBasicService.getReadConnection();
+            return hierarchyCache.putNotebookTitles(notebookDao.getTitles(conn), version);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -160,4 +202,8 @@ public class NotebookServiceImpl implements NotebookService {
         return null;
     }
 
+    @Override
+    public <R> R inTransaction(TransactionCallback<R> callback) {
+        return databaseBasicService.inTransaction(callback);
+    }
 }
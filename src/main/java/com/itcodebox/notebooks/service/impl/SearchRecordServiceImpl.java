@@ -6,18 +6,33 @@ import com.itcodebox.notebooks.dao.impl.SearchRecordDaoImpl;
 import com.itcodebox.notebooks.entity.SearchMode;
 import com.itcodebox.notebooks.entity.SearchRecord;
 import com.itcodebox.notebooks.service.DatabaseBasicService;
+import com.itcodebox.notebooks.service.DatabaseExecutor;
 import com.itcodebox.notebooks.service.SearchRecordService;
 
+import com.itcodebox.notebooks.utils.MatchRules;
+import com.itcodebox.notebooks.utils.SearchRanker;
+import com.itcodebox.notebooks.utils.StringUtil;
+
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.BooleanSupplier;
 
 /**
  * @author LeeWyatt
  */
 public class SearchRecordServiceImpl implements SearchRecordService {
+    /**
+     * 重新生成摘要时, 匹配位置前后保留的字符数(和全文搜索的 snippet 长度大致相同)
+     */
+    private static final int SNIPPET_CONTEXT_BEFORE = 12;
+    private static final int SNIPPET_CONTEXT_AFTER = 24;
+
     private final DatabaseBasicService databaseBasicService =  ServiceManager.getService(DatabaseBasicService.class);
     private final SearchRecordDao searchRecordDao = SearchRecordDaoImpl.getInstance();
+    private final DatabaseExecutor databaseExecutor = DatabaseExecutor.getInstance();
 
     private SearchRecordServiceImpl() {
     }
@@ -28,10 +43,25 @@ public class SearchRecordServiceImpl implements SearchRecordService {
 
     @Override
     public List<SearchRecord> searchKeywords(String keywords, SearchMode searchMode) {
+        return searchKeywords(keywords, searchMode, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<SearchRecord> searchKeywords(String keywords, SearchMode searchMode, int limit) {
+        return searchKeywords(keywords, searchMode, MatchRules.IGNORE_CASE, limit);
+    }
+
+    @Override
+    public List<SearchRecord> searchKeywords(String keywords, SearchMode searchMode, MatchRules matchRules, int limit) {
+        return searchKeywords(keywords, searchMode, matchRules, limit, () -> false);
+    }
+
+    private List<SearchRecord> searchKeywords(String keywords, SearchMode searchMode, MatchRules matchRules, int limit,
+                                              BooleanSupplier canceled) {
         Connection conn = null;
         try {
-            conn = databaseBasicService.getConnection();
-            return searchRecordDao.searchKeywords(conn, keywords,searchMode);
+            conn = databaseBasicService.getReadConnection();
+            return searchRecordDao.searchKeywords(conn, keywords, searchMode, matchRules, limit, canceled);
         } catch (SQLException throwables) {
             throwables.printStackTrace();
         } finally {
@@ -39,4 +69,108 @@ public class SearchRecordServiceImpl implements SearchRecordService {
         }
         return null;
     }
+
+    @Override
+    public CompletableFuture<List<SearchRecord>> searchKeywordsAsync(String keywords, SearchMode searchMode, int limit) {
+        return searchKeywordsAsync(keywords, searchMode, MatchRules.IGNORE_CASE, limit);
+    }
+
+    @Override
+    public CompletableFuture<List<SearchRecord>> searchKeywordsAsync(String keywords, SearchMode searchMode, MatchRules matchRules, int limit) {
+        return databaseExecutor.submit(canceled -> searchKeywords(keywords, searchMode, matchRules, limit, canceled));
+    }
+
+    @Override
+    public List<SearchRecord> filterKeywords(List<SearchRecord> records, String keywords, SearchMode searchMode) {
+        return filterKeywords(records, keywords, searchMode, MatchRules.IGNORE_CASE);
+    }
+
+    @Override
+    public List<SearchRecord> filterKeywords(List<SearchRecord> records, String keywords, SearchMode searchMode, MatchRules matchRules) {
+        String[] kws = StringUtil.splitRawKeywords(keywords);
+        if (records == null || kws == null) {
+            return new ArrayList<>();
+        }
+        boolean content = searchMode == SearchMode.NoteAndContent || searchMode == SearchMode.NoteAndContentAndDescription
+                || searchMode == SearchMode.AllAndContent || searchMode == SearchMode.AllAndContentAndDescription;
+        boolean description = searchMode == SearchMode.NoteAndDescription || searchMode == SearchMode.NoteAndContentAndDescription
+                || searchMode == SearchMode.AllAndDescription || searchMode == SearchMode.AllAndContentAndDescription;
+        //新关键字的结果是旧结果的子集, 所以不会超过旧结果的条数
+        SearchRanker ranker = new SearchRanker(kws, matchRules == MatchRules.MATCH_CASE, description, content, records.size());
+        for (SearchRecord record : records) {
+            ranker.offer(record);
+        }
+        List<SearchRecord> result = ranker.getResult();
+        for (SearchRecord record : result) {
+            //只有全文搜索的结果才有摘要, 旧的摘要标记的是旧关键字, 需要重新生成
+            if (record.getSnippet() == null) {
+                continue;
+            }
+            String matchedField = null;
+            if (content && containsAny(record.getContent(), kws)) {
+                matchedField = record.getContent();
+            } else if (description && containsAny(record.getDescription(), kws)) {
+                matchedField = record.getDescription();
+            } else if (containsAny(record.getNoteTitle(), kws)) {
+                matchedField = record.getNoteTitle();
+            }
+            record.setSnippet(matchedField == null ? null : buildSnippet(matchedField, kws));
+        }
+        return result;
+    }
+
+    private boolean containsAny(String text, String[] kws) {
+        if (text == null) {
+            return false;
+        }
+        for (String kw : kws) {
+            if (StringUtil.indexOfIgnoreCase(text, kw, 0) != -1) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 截取第一个匹配位置附近的文字, 并用 SNIPPET_MATCH_START 和 SNIPPET_MATCH_END 标记其中的关键字
+     */
+    private String buildSnippet(String text, String[] kws) {
+        int first = -1;
+        for (String kw : kws) {
+            int index = StringUtil.indexOfIgnoreCase(text, kw, 0);
+            if (index != -1 && (first == -1 || index < first)) {
+                first = index;
+            }
+        }
+        if (first == -1) {
+            return null;
+        }
+        int start = Math.max(0, first - SNIPPET_CONTEXT_BEFORE);
+        int end = Math.min(text.length(), first + SNIPPET_CONTEXT_AFTER);
+        StringBuilder builder = new StringBuilder(end - start + 16);
+        if (start > 0) {
+            builder.append("...");
+        }
+        int i = start;
+        while (i < end) {
+            int matchedLength = 0;
+            for (String kw : kws) {
+                if (kw.length() > matchedLength && text.regionMatches(true, i, kw, 0, kw.length())) {
+                    matchedLength = kw.length();
+                }
+            }
+            if (matchedLength == 0) {
+                builder.append(text.charAt(i++));
+                continue;
+            }
+            builder.append(SearchRecord.SNIPPET_MATCH_START).append(text, i, i + matchedLength).append(SearchRecord.SNIPPET_MATCH_END);
+            i += matchedLength;
+            end = Math.max(end, i);
+        }
+        if (end < text.length()) {
+            builder.append("...");
+        }
+        return builder.toString();
+    }
+
 }
@@ -24,6 +24,7 @@ import com.intellij.ui.content.ContentFactory;
 import com.itcodebox.notebooks.constant.PluginConstant;
 import com.itcodebox.notebooks.projectservice.NotebooksUIManager;
 import com.itcodebox.notebooks.projectservice.RecordListener;
+import com.itcodebox.notebooks.service.OrphanImageCollector;
 import com.itcodebox.notebooks.ui.dialog.ClearCacheDialog;
 import com.itcodebox.notebooks.ui.dialog.TipForUsingDialog;
 import com.itcodebox.notebooks.ui.panes.MainPanel;
@@ -74,6 +75,7 @@ public class NoteWindowFactory implements ToolWindowFactory, DumbAware {
         gearActions.add(initActionImportJson());
         gearActions.add(new Separator());
         gearActions.add(initActionClearCache());
+        gearActions.add(initActionCleanUpImages());
         twImpl.setAdditionalGearActions(gearActions);
         Disposer.register(project, content);
 
@@ -93,6 +95,15 @@ public class NoteWindowFactory implements ToolWindowFactory, DumbAware {
         };
     }
 
+    private DumbAwareAction initActionCleanUpImages() {
+        return new DumbAwareAction(message("orphanImage.action.text"), "", PluginIcons.ImageColorful) {
+            @Override
+            public void actionPerformed(@NotNull AnActionEvent e) {
+                OrphanImageCollector.getInstance().collect(project);
+            }
+        };
+    }
+
     @NotNull
     private DumbAwareAction initRefreshAction() {
         return new DumbAwareAction(message("mainPanel.action.refresh.text"), "", AllIcons.Actions.Refresh) {
@@ -8,7 +8,6 @@ import com.intellij.openapi.ui.Messages;
 import com.intellij.openapi.ui.TextFieldWithBrowseButton;
 import com.intellij.openapi.ui.ValidationInfo;
 import com.intellij.openapi.util.Condition;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.intellij.ui.DocumentAdapter;
 import com.intellij.ui.JBColor;
@@ -21,10 +20,12 @@ import com.itcodebox.notebooks.constant.PluginConstant;
 import com.itcodebox.notebooks.entity.ImageRecord;
 import com.itcodebox.notebooks.entity.Note;
 import com.itcodebox.notebooks.projectservice.RecordListener;
+import com.itcodebox.notebooks.service.ThumbnailService;
 import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
 import com.itcodebox.notebooks.ui.tables.ImageTable;
 import com.itcodebox.notebooks.utils.CustomUIUtil;
 import com.itcodebox.notebooks.utils.ImageRecordUtil;
+import com.itcodebox.notebooks.utils.ImageStoreUtil;
 import com.itcodebox.notebooks.utils.StringUtil;
 import icons.PluginIcons;
 import org.jetbrains.annotations.NotNull;
@@ -213,19 +214,19 @@ public class AddImageDialog extends DialogWrapper {
     @Override
     protected void doOKAction() {
         File originFile = new File(imagePathField.getText());
-        String name = originFile.getName();
-        //随机字符串 + 包含带"."的拓展名
-        String randomStr = StringUtil.random(32, true, true);
-        String extensionWithPoint = "." + StringUtil.getExtension(name);
-        String fileName = randomStr + extensionWithPoint;
-        String thumbFileName = randomStr + PluginConstant.ThumbExtension + extensionWithPoint;
+        String fileName;
         try {
-            //复制图片
-            FileUtil.copy(originFile, PluginConstant.IMAGE_DIRECTORY_PATH.resolve(fileName).toFile());
-            //创建缩略图
-            CustomUIUtil.writeThumbImageToFile(originFile, PluginConstant.IMAGE_DIRECTORY_PATH.resolve(thumbFileName).toFile());
+            //按内容保存图片, 相同内容的图片只保存一份, 也只生成一次缩略图
+            fileName = ImageStoreUtil.nameOf(originFile);
+            if (!ImageStoreUtil.reuse(fileName)) {
+                ImageStoreUtil.put(originFile, fileName);
+                //在后台创建缩略图, 完成前表格里显示占位图标
+                ThumbnailService.getInstance().submit(fileName)
+                        .whenComplete((thumbFile, throwable) -> ApplicationManager.getApplication().invokeLater(imageTable::repaint));
+            }
         } catch (IOException e) {
             e.printStackTrace();
+            return;
         }
         ImageRecord imageRecord = new ImageRecord(imageTitleField.getText(), imageDescTextArea.getText(), fileName);
         List<ImageRecord> records = new ArrayList<>(imageTable.getListTableModel().getItems());
@@ -9,6 +9,8 @@ import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.util.ui.FormBuilder;
 import com.intellij.util.ui.JBEmptyBorder;
 import com.itcodebox.notebooks.constant.PluginConstant;
+import com.itcodebox.notebooks.service.ImageCache;
+import com.itcodebox.notebooks.service.ThumbnailService;
 import com.itcodebox.notebooks.ui.notify.NotifyUtil;
 import com.itcodebox.notebooks.utils.CustomFileUtil;
 import com.itcodebox.notebooks.utils.StringUtil;
@@ -27,7 +29,7 @@ import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
  */
 public class ClearCacheDialog extends DialogWrapper {
     private static final int DEFAULT_WIDTH = 350;
-    private static final int DEFAULT_HEIGHT = 160;
+    private static final int DEFAULT_HEIGHT = 210;
     private final Project project;
 
     public ClearCacheDialog(Project project) {
@@ -50,10 +52,23 @@ public class ClearCacheDialog extends DialogWrapper {
         JLabel amountLabel = new JLabel();
         amountLabel.setText(getFileAmount(thumbDir));
 
+        //内存中已解码的缩略图
+        ImageCache imageCache = ImageCache.getInstance();
+        JLabel imageCacheLabel = new JLabel(message("cacheDialog.imageCache.info",
+                String.valueOf(imageCache.getSize()),
+                StringUtil.formatFileSize(imageCache.getBytes()),
+                StringUtil.formatFileSize(imageCache.getMaxBytes())));
+        JLabel hitRateLabel = new JLabel(message("cacheDialog.imageCache.hitRate",
+                String.valueOf(Math.round(imageCache.getHitRate() * 100)),
+                String.valueOf(imageCache.getHitCount()),
+                String.valueOf(imageCache.getMissCount())));
+
         JPanel panel = FormBuilder
                 .createFormBuilder()
                 .addLabeledComponent(new JLabel(message("cacheDialog.label.size"), PluginIcons.Data, JLabel.LEFT), sizeLabel)
                 .addLabeledComponent(new JLabel(message("cacheDialog.label.amount"), AllIcons.Actions.GroupByPrefix, JLabel.LEFT), amountLabel)
+                .addLabeledComponent(new JLabel(message("cacheDialog.label.imageCache"), PluginIcons.ImageColorful, JLabel.LEFT), imageCacheLabel)
+                .addLabeledComponent(new JLabel(message("cacheDialog.label.hitRate"), AllIcons.Actions.Find, JLabel.LEFT), hitRateLabel)
                 .getPanel();
         panel.setBorder(BorderFactory.createCompoundBorder(BorderFactory.createEtchedBorder(),new JBEmptyBorder(0,5,0,5)));
         //panel.setBackground(JBColor.WHITE);
@@ -74,6 +89,9 @@ public class ClearCacheDialog extends DialogWrapper {
 
     @Override
     protected void doOKAction() {
+        ImageCache.getInstance().clear();
+        //检查并补齐缺少的缩略图
+        ThumbnailService.getInstance().rebuildThumbnails(project);
         File thumbDir = PluginConstant.TEMP_IMAGE_DIRECTORY_PATH.toFile();
         if (!thumbDir.exists()) {
             super.doOKAction();
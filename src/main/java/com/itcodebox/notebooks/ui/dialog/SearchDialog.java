@@ -10,9 +10,11 @@ import com.intellij.openapi.ui.DialogWrapper;
 import com.intellij.openapi.util.Disposer;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.openapi.wm.ToolWindowManager;
+import com.intellij.ui.DocumentAdapter;
 import com.intellij.ui.JBSplitter;
 import com.intellij.ui.SearchTextField;
 import com.intellij.ui.components.*;
+import com.intellij.ui.components.labels.LinkLabel;
 import com.intellij.ui.components.panels.HorizontalBox;
 import com.intellij.util.ui.JBEmptyBorder;
 import com.itcodebox.notebooks.constant.PluginColors;
@@ -24,14 +26,18 @@ import com.itcodebox.notebooks.ui.component.CodeEditorUtil;
 import com.itcodebox.notebooks.ui.tables.ChapterTable;
 import com.itcodebox.notebooks.ui.tables.NoteTable;
 import com.itcodebox.notebooks.ui.tables.NotebookTable;
+import com.itcodebox.notebooks.utils.LatestRequest;
+import com.itcodebox.notebooks.utils.MatchRules;
 import com.itcodebox.notebooks.utils.StringUtil;
 import icons.PluginIcons;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
+import javax.swing.event.DocumentEvent;
 import java.awt.*;
 import java.awt.event.ItemEvent;
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
@@ -42,6 +48,14 @@ import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
 public class SearchDialog extends DialogWrapper {
     private static final int DEFAULT_WIDTH = 600;
     private static final int DEFAULT_HEIGHT = 630;
+    /**
+     * 每次最多显示的搜索结果条数, 点击"加载更多"再显示下一页
+     */
+    private static final int PAGE_SIZE = 100;
+    /**
+     * 输入停止多久之后才开始搜索(毫秒)
+     */
+    private static final int SEARCH_DELAY = 200;
 
     private final SearchTextField searchField = new SearchTextField();
     private final Editor fieldContent;
@@ -56,8 +70,26 @@ public class SearchDialog extends DialogWrapper {
     private final JBList<SearchRecord> recordListView = new JBList<>(listModel);
     private final JBCheckBox checkBoxContent = new JBCheckBox(message("searchDialog.checkBox.content"), true);
     private final JBCheckBox checkBoxDescription = new JBCheckBox(message("searchDialog.checkBox.description"), true);
+    private final JBCheckBox checkBoxMatchCase = new JBCheckBox(message("searchDialog.checkBox.matchCase"), false);
+    private final JBCheckBox checkBoxRegex = new JBCheckBox(message("searchDialog.checkBox.regex"), false);
     private final Project project;
     private final JBLabel resultLabel = new JBLabel();
+    private final LinkLabel<Object> loadMoreLink = new LinkLabel<Object>(message("searchDialog.link.loadMore"), null);
+    private final LatestRequest searchRequest = new LatestRequest();
+    private final Timer searchTimer = new Timer(SEARCH_DELAY, e -> doSearch(false));
+
+    /**
+     * 当前显示的搜索结果对应的关键字, 搜索模式, 匹配规则和条数上限
+     */
+    private String lastText;
+    private SearchMode lastMode;
+    private MatchRules lastRules;
+    private int lastLimit;
+    /**
+     * 当前显示的搜索结果是否完整(没有被截断), 只有完整的结果才能直接过滤
+     */
+    private boolean lastComplete;
+    private List<SearchRecord> lastRecords = new ArrayList<>();
 
     public SearchDialog(Project project) {
         super(true);
@@ -110,6 +142,13 @@ public class SearchDialog extends DialogWrapper {
         super.doOKAction();
     }
 
+    @Override
+    protected void dispose() {
+        searchTimer.stop();
+        searchRequest.cancel();
+        super.dispose();
+    }
+
     @Override
     public @Nullable JComponent getPreferredFocusedComponent() {
         return searchField;
@@ -130,6 +169,10 @@ public class SearchDialog extends DialogWrapper {
         HorizontalBox hBox = new HorizontalBox();
         hBox.add(listTitleLabel);
         hBox.add(resultLabel);
+        hBox.add(Box.createHorizontalStrut(8));
+        hBox.add(loadMoreLink);
+        loadMoreLink.setVisible(false);
+        loadMoreLink.setListener((aSource, aLinkData) -> loadMore(), null);
         hBox.setBorder(new JBEmptyBorder(2, 0, 3, 0));
         lvPane.add(hBox, BorderLayout.NORTH);
         recordListView.setCellRenderer(cellRender);
@@ -164,7 +207,15 @@ public class SearchDialog extends DialogWrapper {
         JPanel topPanel = new JPanel(new BorderLayout());
         topPanel.add(searchField);
 
-        searchField.getTextEditor().addActionListener(e -> doSearch());
+        //输入时延迟搜索, 回车时立即搜索
+        searchTimer.setRepeats(false);
+        searchField.addDocumentListener(new DocumentAdapter() {
+            @Override
+            protected void textChanged(@NotNull DocumentEvent e) {
+                searchTimer.restart();
+            }
+        });
+        searchField.getTextEditor().addActionListener(e -> doSearch(true));
         //先默认选择Note吧
         comboBox.setSelectedIndex(1);
         comboBox.addItemListener(e -> {
@@ -172,42 +223,133 @@ public class SearchDialog extends DialogWrapper {
                 int selectedIndex = comboBox.getSelectedIndex();
                 checkBoxContent.setEnabled(selectedIndex == 0 || selectedIndex == 1);
                 checkBoxDescription.setEnabled(selectedIndex == 0 || selectedIndex == 1);
-                doSearch();
+                doSearch(false);
             }
         });
 
-        checkBoxContent.addItemListener(e -> doSearch());
+        checkBoxContent.addItemListener(e -> doSearch(false));
 
-        checkBoxDescription.addItemListener(e -> doSearch());
+        checkBoxDescription.addItemListener(e -> doSearch(false));
+        checkBoxMatchCase.addItemListener(e -> doSearch(false));
+        //正则表达式本身区分大小写, 不区分时可以用 (?i)
+        checkBoxRegex.addItemListener(e -> {
+            checkBoxMatchCase.setEnabled(!checkBoxRegex.isSelected());
+            doSearch(false);
+        });
         JPanel westPanel = new JPanel(new FlowLayout(FlowLayout.LEFT, 2, 0));
         westPanel.add(comboBox);
         westPanel.add(checkBoxContent);
         westPanel.add(checkBoxDescription);
         topPanel.add(westPanel, BorderLayout.WEST);
+        JPanel eastPanel = new JPanel(new FlowLayout(FlowLayout.RIGHT, 2, 0));
+        eastPanel.add(checkBoxMatchCase);
+        eastPanel.add(checkBoxRegex);
+        topPanel.add(eastPanel, BorderLayout.EAST);
 
         return topPanel;
     }
 
-    private void doSearch() {
-        searchField.addCurrentTextToHistory();
+    /**
+     * @param explicit 是否是按回车发起的搜索; 是的话记录搜索历史, 并把焦点移到结果列表
+     */
+    private void doSearch(boolean explicit) {
+        searchTimer.stop();
+        if (explicit) {
+            searchField.addCurrentTextToHistory();
+        }
         String text = searchField.getText();
-        listModel.clear();
-        //添加数据
-        List<SearchRecord> records = SearchRecordServiceImpl.getInstance().searchKeywords(text, getSearchMode());
-        if (records != null) {
-            if (records.size() == 0) {
-                resultLabel.setForeground(PluginColors.WARN_COLOR);
-            } else {
-                resultLabel.setForeground(PluginColors.NOTE_GROUP_SELECTED);
-            }
-            resultLabel.setText(" " + records.size() + message("searchDialog.label.searchResultText"));
-            listModel.addAll(records);
-            if (records.size() != 0) {
+        SearchMode searchMode = getSearchMode();
+        MatchRules matchRules = getMatchRules();
+        SearchRecordServiceImpl service = SearchRecordServiceImpl.getInstance();
+        //在上次完整的结果基础上继续输入时, 新结果一定是旧结果的子集, 直接过滤, 不再查询数据库; 正则表达式除外
+        if (lastComplete && searchMode == lastMode && matchRules == lastRules && matchRules != MatchRules.REGEX
+                && StringUtil.isRefinement(lastText, text, matchRules == MatchRules.MATCH_CASE)) {
+            searchRequest.cancel();
+            showSearchResult(text, searchMode, matchRules,
+                    service.filterKeywords(lastRecords, text, searchMode, matchRules), lastLimit, explicit);
+            return;
+        }
+        search(text, searchMode, matchRules, PAGE_SIZE, explicit);
+    }
+
+    private void loadMore() {
+        if (lastText != null && !lastComplete) {
+            search(lastText, lastMode, lastRules, lastLimit + PAGE_SIZE, false);
+        }
+    }
+
+    /**
+     * 在后台搜索, 新的搜索会取消还没返回的旧搜索. 多查询一条, 用来判断是否还有更多的结果
+     */
+    private void search(String text, SearchMode searchMode, MatchRules matchRules, int limit, boolean explicit) {
+        searchRequest.submit(SearchRecordServiceImpl.getInstance().searchKeywordsAsync(text, searchMode, matchRules, limit + 1),
+                records -> showSearchResult(text, searchMode, matchRules, records, limit, explicit));
+    }
+
+    private void showSearchResult(String text, SearchMode searchMode, MatchRules matchRules, List<SearchRecord> records, int limit, boolean explicit) {
+        if (records == null) {
+            return;
+        }
+        boolean complete = records.size() <= limit;
+        if (!complete) {
+            records = new ArrayList<>(records.subList(0, limit));
+        }
+        lastText = text;
+        lastMode = searchMode;
+        lastRules = matchRules;
+        lastLimit = limit;
+        lastComplete = complete;
+        lastRecords = records;
+
+        if (records.size() == 0) {
+            resultLabel.setForeground(PluginColors.WARN_COLOR);
+        } else {
+            resultLabel.setForeground(PluginColors.NOTE_GROUP_SELECTED);
+        }
+        resultLabel.setText(" " + records.size() + (complete ? "" : "+") + message("searchDialog.label.searchResultText"));
+        loadMoreLink.setVisible(!complete);
+        //正则表达式不是关键字, 不在路径中高亮. 关键字不再用于 like, 高亮时不需要转义
+        cellRender.setKeywords(matchRules == MatchRules.REGEX ? new String[0] : StringUtil.splitRawKeywords(text));
+        updateListModel(records);
+        if (records.size() != 0) {
+            if (explicit) {
                 recordListView.requestFocus();
                 recordListView.setSelectedIndex(0);
+            } else if (recordListView.getSelectedIndex() == -1) {
+                recordListView.setSelectedIndex(0);
+            }
+        }
+        //关键字变了, 保留下来的行也需要重新绘制高亮
+        recordListView.repaint();
+    }
+
+    /**
+     * 只替换发生变化的部分: 保留和新结果相同的开头部分, 这样"加载更多"只会追加新的行, 选中的行也不会丢失
+     */
+    private void updateListModel(List<SearchRecord> records) {
+        int same = 0;
+        int size = Math.min(listModel.size(), records.size());
+        while (same < size && listModel.get(same).equals(records.get(same))) {
+            //同一条记录, 摘要可能不同
+            if (listModel.get(same) != records.get(same)) {
+                listModel.set(same, records.get(same));
             }
-            cellRender.setKeywords(StringUtil.splitKeywords(text));
+            same++;
+        }
+        if (same < listModel.size()) {
+            listModel.removeRange(same, listModel.size() - 1);
+        }
+        if (same < records.size()) {
+            listModel.addAll(records.subList(same, records.size()));
+        }
+    }
+
+    @NotNull
+    private MatchRules getMatchRules() {
+        if (checkBoxRegex.isSelected()) {
+            return MatchRules.REGEX;
         }
+        return checkBoxMatchCase.isSelected() ? MatchRules.MATCH_CASE : MatchRules.IGNORE_CASE;
     }
 
     @NotNull
@@ -5,54 +5,64 @@ import com.intellij.ui.HighlightableComponent;
 import com.intellij.ui.JBColor;
 import com.itcodebox.notebooks.constant.PluginColors;
 import com.itcodebox.notebooks.entity.SearchRecord;
-import com.itcodebox.notebooks.utils.StringUtil;
+import com.itcodebox.notebooks.utils.KeywordMatcher;
 import icons.PluginIcons;
 
 import javax.swing.*;
 import java.awt.*;
-import java.util.List;
+import java.util.Arrays;
 
 /**
+ * 复用同一组组件绘制每一行. 每条结果显示的文字和高亮范围只在第一次绘制时计算, 缓存在 SearchRecord 中,
+ * 关键字改变后才重新计算, 滚动时不再重复匹配关键字.
+ *
  * @author LeeWyatt
  */
 public class SearchRecordCellRender implements ListCellRenderer<SearchRecord> {
     private static  final TextAttributes ATTRIBUTES = new TextAttributes( JBColor.ORANGE,null, null,null, Font.BOLD);
+    private static final String NO_SNIPPET = " [ ... ]";
 
-    @Override
-    public Component getListCellRendererComponent(JList<? extends SearchRecord> listView, SearchRecord record, int index, boolean isSelected, boolean cellHasFocus) {
-        FlowLayout layout = new FlowLayout(FlowLayout.LEFT, 0, 0);
+    private final JPanel panel = new JPanel(new FlowLayout(FlowLayout.LEFT, 0, 0));
+    private final JLabel iconLabel = new JLabel();
+    private final HighlightableComponent component = new HighlightableComponent();
+    /**
+     * 每次设置关键字时重新创建, 同时作为 SearchRecord 中缓存的标记
+     */
+    private KeywordMatcher matcher = new KeywordMatcher(null);
+    private boolean hasKeywords;
 
-        JPanel panel = new JPanel(layout);
-        HighlightableComponent component = new HighlightableComponent();
-        if (record != null) {
+    public SearchRecordCellRender() {
+        component.setOpaque(false);
+        panel.add(iconLabel);
+        panel.add(component);
+    }
 
-            JLabel iconLabel = new JLabel();
+    @Override
+    public Component getListCellRendererComponent(JList<? extends SearchRecord> listView, SearchRecord record, int index, boolean isSelected, boolean cellHasFocus) {
+        if (record == null) {
+            iconLabel.setIcon(null);
+            component.setText("");
+        } else {
             if (record.getNoteId() != null) {
                 iconLabel.setIcon(PluginIcons.NoteCell);
             } else if (record.getChapterId() != null) {
                 iconLabel.setIcon(PluginIcons.ChapterCell);
             } else if (record.getNotebookId() != null) {
                 iconLabel.setIcon(PluginIcons.NotebookCell);
+            } else {
+                iconLabel.setIcon(null);
             }
-            panel.add(iconLabel);
-            String s = record.getPath("   ");
-            boolean flag = false;
-            String path = record.getPath(" > ");
-            component.setText(path);
-            component.setOpaque(false);
-            if (keywords != null) {
-                for (String keyword : keywords) {
-                    List<Integer> stringIndexList = StringUtil.getStringIndex(s, keyword);
-                    for (Integer integer : stringIndexList) {
-                        flag =true;
-                        component.addHighlighter(integer,integer+keyword.length(),ATTRIBUTES);
-                    }
-                }
-                if (!flag) {
-                    component.setText(path +" [ ... ]");
-                    component.addHighlighter(path.length()+3,path.length()+6,ATTRIBUTES);
-                }
+            if (record.getDisplayKey() != matcher) {
+                updateDisplay(record);
             }
+            //setText 会清除之前的高亮
+            component.setText(record.getDisplayText());
+            int[] highlights = record.getDisplayHighlights();
+            for (int i = 0; i + 1 < highlights.length; i += 2) {
+                component.addHighlighter(highlights[i], highlights[i + 1], ATTRIBUTES);
+            }
+            //文字的宽度变了, 绘制前需要重新布局
+            component.invalidate();
         }
         Color background;
         if (isSelected) {
@@ -68,17 +78,65 @@ public class SearchRecordCellRender implements ListCellRenderer<SearchRecord> {
                 background = PluginColors.ODD_ROW;
             }
         }
-        panel.add(component);
         panel.setBackground(background);
-        //component.setBackground(background);
         component.setForeground(isSelected?JBColor.WHITE:JBColor.BLACK);
         return panel;
     }
 
-    private String[] keywords;
-    public void setKeywords(String[] keywords){
-        this.keywords = keywords;
+    /**
+     * 计算显示的文字和高亮范围: 路径中有关键字时高亮路径; 否则显示全文搜索的摘要, 没有摘要时显示 [ ... ]
+     */
+    private void updateDisplay(SearchRecord record) {
+        String path = record.getPath(" > ");
+        if (!hasKeywords) {
+            record.setDisplay(matcher, path, KeywordMatcher.NO_MATCHES);
+            return;
+        }
+        //分隔符换成相同长度的空格再匹配, 避免关键字匹配到分隔符
+        int[] ranges = matcher.findRanges(record.getPath("   "));
+        if (ranges.length > 0) {
+            record.setDisplay(matcher, path, ranges);
+        } else if (record.getSnippet() != null) {
+            appendSnippet(record, path, record.getSnippet());
+        } else {
+            record.setDisplay(matcher, path + NO_SNIPPET, new int[]{path.length() + 3, path.length() + 6});
+        }
+    }
+
+    /**
+     * 在路径后面显示全文搜索的摘要, 并高亮其中匹配的关键字
+     */
+    private void appendSnippet(SearchRecord record, String path, String snippet) {
+        StringBuilder builder = new StringBuilder(path.length() + snippet.length() + 4);
+        builder.append(path).append("  [ ");
+        int[] highlights = new int[8];
+        int count = 0;
+        for (int i = 0; i < snippet.length(); i++) {
+            char c = snippet.charAt(i);
+            if (c == SearchRecord.SNIPPET_MATCH_START || c == SearchRecord.SNIPPET_MATCH_END) {
+                if (count == highlights.length) {
+                    highlights = Arrays.copyOf(highlights, count * 2);
+                }
+                highlights[count++] = builder.length();
+            } else if (Character.isWhitespace(c)) {
+                // 摘要中可能有换行, 合并成一个空格
+                if (builder.charAt(builder.length() - 1) != ' ') {
+                    builder.append(' ');
+                }
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append(" ]");
+        record.setDisplay(matcher, builder.toString(), Arrays.copyOf(highlights, count & ~1));
     }
 
+    /**
+     * @param keywords 需要高亮的关键字(忽略大小写); 为null时只显示路径
+     */
+    public void setKeywords(String[] keywords){
+        this.matcher = new KeywordMatcher(keywords);
+        this.hasKeywords = keywords != null;
+    }
 
 }
@@ -22,6 +22,7 @@ import com.itcodebox.notebooks.ui.tables.ChapterTable;
 import com.itcodebox.notebooks.ui.tables.NoteTable;
 import com.itcodebox.notebooks.ui.tables.NotebookTable;
 import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+import com.itcodebox.notebooks.utils.LatestRequest;
 
 import javax.swing.*;
 import java.awt.*;
@@ -30,6 +31,7 @@ import java.awt.event.FocusListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
 /**
@@ -40,6 +42,8 @@ public class ChapterPanel extends JPanel implements FocusListener{
     private final ProjectStorage projectStorage ;
     private final JButton btnAddChapter;
     private final ChapterTable chapterTable;
+    private final DetailPanel detailPanel;
+    private final LatestRequest noteRequest = new LatestRequest();
     private boolean isCascadeOperation;
 
 
@@ -50,6 +54,7 @@ public class ChapterPanel extends JPanel implements FocusListener{
         projectStorage = ServiceManager.getService(project,ProjectStorage.class);
         this.noteTable = noteTable;
         this.chapterTable=chapterTable;
+        this.detailPanel = detailPanel;
         btnAddChapter = new JButton(message("button.addChapter"), AllIcons.General.Add);
         setReadOnly(AppSettingsState.getInstance().readOnlyMode);
         btnAddChapter.addActionListener(event -> {
@@ -92,7 +97,6 @@ public class ChapterPanel extends JPanel implements FocusListener{
             Chapter chapter = chapterTable.getSelectedObject();
             projectStorage.selectedChapterId=(chapter==null?-1:chapter.getId());
             refreshNoteTable(chapter);
-            detailPanel.refreshComboBoxModel(RefreshType.Notebook);
         });
 
         setShowFocusBorder(AppSettingsState.getInstance().showFocusBorder);
@@ -114,22 +118,29 @@ public class ChapterPanel extends JPanel implements FocusListener{
         btnAddChapter.setEnabled(!isReadOnly);
     }
 
+    /**
+     * 笔记在后台加载, 只处理最后一次选择的章节的结果
+     */
     private void refreshNoteTable(Chapter chapter) {
-        if (chapter != null) {
-            NoteService service = NoteServiceImpl.getInstance();
-            List<Note> list = service.findAllByChapterId(chapter.getId());
+        if (chapter == null) {
+            noteRequest.cancel();
+            noteTable.clearRows();
+            detailPanel.refreshComboBoxModel(RefreshType.Notebook);
+            return;
+        }
+        NoteService service = NoteServiceImpl.getInstance();
+        CompletableFuture<List<Note>> future = service.findSummariesByChapterIdAsync(chapter.getId());
+        //加载期间不显示上一个章节的笔记
+        noteTable.beginLoading();
+        boolean cascade = isCascadeOperation;
+        noteRequest.submit(future, list -> {
             if (list != null) {
-                noteTable.getRecordModel().setItems(list);
-                if (isCascadeOperation) {
-                    noteTable.selectedFirst();
-                }
+                noteTable.loadRows(list, cascade);
             } else {
                 noteTable.clearRows();
             }
-        } else {
-            noteTable.clearRows();
-        }
-
+            detailPanel.refreshComboBoxModel(RefreshType.Notebook);
+        });
     }
 
     @Override
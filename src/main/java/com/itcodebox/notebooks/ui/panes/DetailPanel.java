@@ -362,7 +362,7 @@ public class DetailPanel extends JPanel {
                     e -> new AddNoteDialog(project, new Note()).show(),
                     e -> {
                         Note note = noteTable.getSelectedObject();
-                        if (note != null) {
+                        if (note != null && !note.isSummary()) {
                             new EditNoteDialog(project, note).show();
                         }
                     },
@@ -378,7 +378,7 @@ public class DetailPanel extends JPanel {
                                 Messages.getWarningIcon());
                         if (result == Messages.OK) {
                             // 准备工作: 获取相关图片资料
-                            List<String> records = noteService.getImageRecordsByNoteId(note.getId());
+                            List<ImageRecord> records = noteService.getImageRecordsByNoteId(note.getId());
                             // 数据库里删除
                             noteService.delete(note.getId());
                             ApplicationManager
@@ -418,7 +418,7 @@ public class DetailPanel extends JPanel {
                         Chapter chapter = chapterTable.getSelectedObject();
                         if (result == Messages.OK && chapter != null) {
                             // 准备工作: 获取相关图片
-                            List<String> records = noteService.getImageRecordsByChapterId(chapter.getId());
+                            List<ImageRecord> records = noteService.getImageRecordsByChapterId(chapter.getId());
                             //一. 从数据库删除
                             chapterService.delete(chapter.getId());
                             //二. 通知UI删除
@@ -462,7 +462,7 @@ public class DetailPanel extends JPanel {
                         Notebook notebook = notebookTable.getSelectedObject();
                         if (result == Messages.OK && notebook != null) {
                             // 准备工作: 获取相关图片
-                            List<String> records = noteService.getImageRecordsByNotebookId(notebook.getId());
+                            List<ImageRecord> records = noteService.getImageRecordsByNotebookId(notebook.getId());
                             //1. 数据库里删除
                             notebookService.delete(notebook.getId());
                             //2. UI更新
@@ -493,7 +493,7 @@ public class DetailPanel extends JPanel {
 
     public void copyContentText() {
         Note note = noteTable.getSelectedObject();
-        if (note == null) {
+        if (note == null || note.isSummary()) {
             return;
         }
         StringSelection contents = new StringSelection(note.getContent());
@@ -553,6 +553,8 @@ public class DetailPanel extends JPanel {
     public void refreshDetail() {
         Note selectedNote = noteTable.getSelectedObject();
         boolean isNotNull = (selectedNote != null);
+        //正文还在后台加载时先显示空白, 加载完成后会再次刷新
+        boolean isLoaded = isNotNull && !selectedNote.isSummary();
 
         // 更新格式
         String oldType = fieldFileType.getText();
@@ -561,12 +563,12 @@ public class DetailPanel extends JPanel {
             fieldFileType.setText(newType);
         }
         //1. 更新图片信息
-        imagePanel.setNote(selectedNote);
+        imagePanel.setNote(isLoaded ? selectedNote : null);
         //2. 更新普通面板数据 以及描述信息和笔记内容
         CodeEditorUtil.setEditorHighlighter(fieldContent, isNotNull ? selectedNote.getType() : "");
         Document document = fieldContent.getDocument();
         String oldContent = document.getText();
-        String newContent = isNotNull ? selectedNote.getContent() : "";
+        String newContent = isLoaded ? selectedNote.getContent() : "";
         if (!newContent.equals(oldContent)) {
             //fieldContent.getCaretModel().moveToOffset();
             int textLength = document.getTextLength();
@@ -574,7 +576,7 @@ public class DetailPanel extends JPanel {
                     () -> document.replaceString(0, textLength, newContent)));
         }
         String oldDesc = fieldDesc.getText();
-        String newDesc = isNotNull ? selectedNote.getDescription() : "";
+        String newDesc = isLoaded ? selectedNote.getDescription() : "";
         if (!newDesc.equals(oldDesc)) {
             fieldDesc.setText(newDesc);
             fieldDesc.setCaretPosition(0);
@@ -678,7 +680,7 @@ public class DetailPanel extends JPanel {
             @Override
             public void update(@NotNull AnActionEvent e) {
                 Note selectedNote = noteTable.getSelectedObject();
-                e.getPresentation().setEnabled(selectedNote != null && !selectedNote.getContent().isEmpty());
+                e.getPresentation().setEnabled(selectedNote != null && !selectedNote.isSummary() && !selectedNote.getContent().isEmpty());
             }
         };
     }
@@ -688,7 +690,7 @@ public class DetailPanel extends JPanel {
             @Override
             public void actionPerformed(@NotNull AnActionEvent e) {
                 Note note = noteTable.getSelectedObject();
-                if (note == null || note.getSource().isEmpty()) {
+                if (note == null || note.isSummary() || note.getSource().isEmpty()) {
                     return;
                 }
 
@@ -763,7 +765,7 @@ public class DetailPanel extends JPanel {
             @Override
             public void update(@NotNull AnActionEvent e) {
                 Note selectedNote = noteTable.getSelectedObject();
-                e.getPresentation().setEnabled(selectedNote != null && !selectedNote.getSource().isEmpty());
+                e.getPresentation().setEnabled(selectedNote != null && !selectedNote.isSummary() && !selectedNote.getSource().isEmpty());
             }
 
         };
@@ -776,7 +778,7 @@ public class DetailPanel extends JPanel {
                 Note selectedNote = noteTable.getSelectedObject();
                 Editor selectedTextEditor = FileEditorManager.getInstance(project).getSelectedTextEditor();
                 // 注意判断笔记是否为空, 当前选择的Editor是否可以写
-                if (selectedNote == null || selectedNote.getContent().isEmpty() || selectedTextEditor == null || !selectedTextEditor.getDocument().isWritable()) {
+                if (selectedNote == null || selectedNote.isSummary() || selectedNote.getContent().isEmpty() || selectedTextEditor == null || !selectedTextEditor.getDocument().isWritable()) {
                     return;
                 }
                 Document document = selectedTextEditor.getDocument();
@@ -792,7 +794,7 @@ public class DetailPanel extends JPanel {
             public void update(@NotNull AnActionEvent e) {
                 Note selectedNote = noteTable.getSelectedObject();
                 Editor selectedTextEditor = FileEditorManager.getInstance(project).getSelectedTextEditor();
-                e.getPresentation().setEnabled(selectedNote != null && !selectedNote.getContent().isEmpty() && selectedTextEditor != null && selectedTextEditor.getDocument().isWritable());
+                e.getPresentation().setEnabled(selectedNote != null && !selectedNote.isSummary() && !selectedNote.getContent().isEmpty() && selectedTextEditor != null && selectedTextEditor.getDocument().isWritable());
             }
         };
     }
@@ -820,7 +822,7 @@ public class DetailPanel extends JPanel {
 
             private void saveChanged() {
                 Note note = noteTable.getSelectedObject();
-                if (note == null) {
+                if (note == null || note.isSummary()) {
                     return;
                 }
                 note.setDescription(fieldDesc.getText());
@@ -848,7 +850,8 @@ public class DetailPanel extends JPanel {
             @Override
             public void update(@NotNull AnActionEvent e) {
                 Note note = noteTable.getSelectedObject();
-                if (note == null) {
+                //正文还没有加载时编辑框是空白的, 不能当作修改保存
+                if (note == null || note.isSummary()) {
                     e.getPresentation().setEnabled(false);
                     return;
                 }
@@ -18,13 +18,14 @@ import com.itcodebox.notebooks.constant.PluginConstant;
 import com.itcodebox.notebooks.entity.ImageRecord;
 import com.itcodebox.notebooks.entity.Note;
 import com.itcodebox.notebooks.projectservice.RecordListener;
+import com.itcodebox.notebooks.service.ImageCache;
+import com.itcodebox.notebooks.service.ThumbnailService;
 import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
 import com.itcodebox.notebooks.ui.dialog.AddImageDialog;
 import com.itcodebox.notebooks.ui.dialog.FullImageDialog;
 import com.itcodebox.notebooks.ui.tables.ImageTable;
 import com.itcodebox.notebooks.ui.tables.ImageTableCellRenderer;
 import com.itcodebox.notebooks.utils.CustomFileUtil;
-import com.itcodebox.notebooks.utils.CustomUIUtil;
 import com.itcodebox.notebooks.utils.ImageRecordUtil;
 import com.itcodebox.notebooks.utils.StringUtil;
 import icons.PluginIcons;
@@ -41,6 +42,7 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
 
@@ -99,7 +101,11 @@ public class ImagePanel extends JPanel {
 
         this.note = note;
         ImageRecord selectedImageRecord = imageTable.getSelectedObject();
-        List<ImageRecord> records = ImageRecordUtil.convertToList(note.getImageRecords());
+        //从 image_record 表按笔记id查询, 不需要解析JSON; 只加载了元数据的笔记也能显示图片
+        List<ImageRecord> records = NoteServiceImpl.getInstance().getImageRecordsByNoteId(note.getId());
+        if (records == null) {
+            records = new ArrayList<>();
+        }
         imageTable.getListTableModel().setItems(records);
         int index = selectedImageRecord == null ? -1 : imageTable.getListTableModel().indexOf(selectedImageRecord);
         if (records.size() > 0) {
@@ -205,27 +211,19 @@ public class ImagePanel extends JPanel {
                 lengthIconLabel.setText("0 Byte");
                 return;
             }
-            File thumbFile = CustomUIUtil.getThumbFile(imageRecord.getImagePath());
-            ImageIcon icon = new ImageIcon(thumbFile.getAbsolutePath());
-
-            int width = icon.getIconWidth();
-            int height = icon.getIconHeight();
-            if (width == -1) {
-                imageLabel.setIcon(PluginIcons.ImageDefaultBig);
-            } else {
-                imageLabel.setIcon(icon);
-            }
-
-            imageTitleField.setText(imageRecord.getImageTitle());
-            imageTitleField.setCaretPosition(0);
-            imageDescTextArea.setText(imageRecord.getImageDesc());
-            imageDescTextArea.setCaretPosition(0);
-            sizeIconLabel.setText(width + "x" + height);
-            if (thumbFile.exists() && thumbFile.isFile()) {
-                lengthIconLabel.setText(StringUtil.formatFileSize(thumbFile.length()));
-            } else {
-                lengthIconLabel.setText("0 Byte");
+            //缩略图还在生成中, 先显示占位图片, 生成完成后如果还是选中这张图片, 再刷新
+            CompletableFuture<File> pendingThumb = ThumbnailService.getInstance().getPending(imageRecord.getImagePath());
+            if (pendingThumb != null) {
+                showImageInfo(imageRecord, PluginIcons.ImageDefaultBig, "-1x-1", "0 Byte");
+                pendingThumb.whenComplete((file, throwable) -> ApplicationManager.getApplication().invokeLater(() -> {
+                    imageTable.repaint();
+                    if (imageTable.getSelectedObject() == imageRecord) {
+                        showImageRecord(imageRecord);
+                    }
+                }));
+                return;
             }
+            showImageRecord(imageRecord);
         });
 
         imageTable.addMouseListener(new MouseAdapter() {
@@ -292,6 +290,30 @@ public class ImagePanel extends JPanel {
         return popupMenu;
     }
 
+    /**
+     * 显示图片的缩略图和信息
+     */
+    private void showImageRecord(ImageRecord imageRecord) {
+        //解码后的缩略图有缓存, 来回切换图片时不需要再读取磁盘
+        ImageCache.CachedImage image = ImageCache.getInstance().getThumbnail(imageRecord.getImagePath());
+        if (image == null) {
+            showImageInfo(imageRecord, PluginIcons.ImageDefaultBig, "-1x-1", "0 Byte");
+            return;
+        }
+        ImageIcon icon = image.getIcon();
+        showImageInfo(imageRecord, icon, icon.getIconWidth() + "x" + icon.getIconHeight(), StringUtil.formatFileSize(image.getFileLength()));
+    }
+
+    private void showImageInfo(ImageRecord imageRecord, Icon icon, String size, String length) {
+        imageLabel.setIcon(icon);
+        imageTitleField.setText(imageRecord.getImageTitle());
+        imageTitleField.setCaretPosition(0);
+        imageDescTextArea.setText(imageRecord.getImageDesc());
+        imageDescTextArea.setCaretPosition(0);
+        sizeIconLabel.setText(size);
+        lengthIconLabel.setText(length);
+    }
+
     private ImageIcon getIconFromPath(String path) {
         if (path == null || path.trim().isEmpty()) {
             return null;
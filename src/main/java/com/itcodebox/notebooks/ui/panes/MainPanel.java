@@ -5,13 +5,11 @@ import com.intellij.openapi.project.Project;
 import com.intellij.openapi.wm.ToolWindow;
 import com.intellij.ui.JBSplitter;
 import com.intellij.ui.components.JBTextField;
-import com.intellij.ui.table.TableView;
 import com.intellij.util.ui.ColumnInfo;
 import com.intellij.util.ui.ListTableModel;
 import com.itcodebox.notebooks.entity.Chapter;
 import com.itcodebox.notebooks.entity.Note;
 import com.itcodebox.notebooks.entity.Notebook;
-import com.itcodebox.notebooks.entity.Record;
 import com.itcodebox.notebooks.projectservice.ProjectStorage;
 import com.itcodebox.notebooks.ui.tables.*;
 import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
@@ -24,7 +22,6 @@ import javax.swing.table.TableCellRenderer;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
-import java.util.List;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
 
@@ -321,39 +318,24 @@ public class MainPanel extends JPanel {
     }
 
     /**
-     * 恢复选择的状态
+     * 恢复选择的状态. 表格是异步加载的, 还没加载的行会在加载完成后再选择
      */
     public void resetTableSelected() {
         int notebookId = projectStorage.selectedNotebookId;
-        if (notebookId == -1 || !findRecordInTable(notebookTable, notebookId)) {
+        if (notebookId == -1) {
             return;
         }
+        notebookTable.selectedRowById(notebookId);
         int chapterId = projectStorage.selectedChapterId;
-        if (chapterId == -1 || !findRecordInTable(chapterTable, chapterId)) {
+        if (chapterId == -1) {
             return;
         }
+        chapterTable.selectedRowById(chapterId);
         int noteId = projectStorage.selectedNoteId;
         if (noteId == -1) {
             return;
         }
-        findRecordInTable(noteTable, noteId);
-    }
-
-    /**
-     * 查找记录, 如果有就选中
-     */
-    private boolean findRecordInTable(@NotNull TableView<? extends Record> tableView, int id) {
-        boolean findIt = false;
-        List<? extends Record> items = tableView.getItems();
-        for (int i = 0; i < items.size(); i++) {
-            Record item = items.get(i);
-            if (item.getId() == id || item.getId().equals(id)) {
-                findIt = true;
-                tableView.getSelectionModel().setSelectionInterval(i, i);
-                break;
-            }
-        }
-        return findIt;
+        noteTable.selectedRowById(noteId);
     }
 
 }
@@ -10,14 +10,19 @@ import com.intellij.ui.components.JBScrollPane;
 import com.itcodebox.notebooks.constant.PluginConstant;
 import com.itcodebox.notebooks.entity.Note;
 import com.itcodebox.notebooks.projectservice.ProjectStorage;
+import com.itcodebox.notebooks.service.NoteService;
+import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
 import com.itcodebox.notebooks.ui.dialog.AddNoteDialog;
 import com.itcodebox.notebooks.ui.tables.NoteTable;
 import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+import com.itcodebox.notebooks.utils.LatestRequest;
 
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.FocusEvent;
 import java.awt.event.FocusListener;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
 
@@ -28,9 +33,12 @@ public class NotePanel extends JPanel implements FocusListener{
     private final Project project;
     private final JButton btnAddNote;
     private final NoteTable noteTable;
+    private final DetailPanel detailPanel;
+    private final LatestRequest bodyRequest = new LatestRequest();
     public NotePanel(Project project, NoteTable noteTable, DetailPanel detailPanel) {
         this.project = project;
         this.noteTable = noteTable;
+        this.detailPanel = detailPanel;
         ProjectStorage projectStorage = ServiceManager.getService(project, ProjectStorage.class);
         setLayout(new BorderLayout());
         btnAddNote = new JButton(message("button.addNote"), AllIcons.General.Add);
@@ -46,6 +54,7 @@ public class NotePanel extends JPanel implements FocusListener{
         noteTable.getSelectionModel().addListSelectionListener(e -> {
             Note note = noteTable.getSelectedObject();
             projectStorage.selectedNoteId = (note == null ? -1 : note.getId());
+            loadBodies(note);
             detailPanel.refreshComboBoxModel(RefreshType.Notebook);
         });
 
@@ -53,6 +62,24 @@ public class NotePanel extends JPanel implements FocusListener{
         setShowFocusBorder(AppSettingsState.getInstance().showFocusBorder);
     }
 
+    /**
+     * 正文在后台加载, 只处理最后一次选择的笔记的结果; 加载完成后如果笔记仍然被选中, 刷新详情面板
+     */
+    private void loadBodies(Note note) {
+        if (note == null || !note.isSummary()) {
+            bodyRequest.cancel();
+            return;
+        }
+        NoteService service = NoteServiceImpl.getInstance();
+        CompletableFuture<List<Note>> future = service.findBodiesAsync(noteTable.getSummariesAround(noteTable.getSelectedRow()));
+        bodyRequest.submit(future, bodies -> {
+            noteTable.fillBodies(bodies);
+            if (noteTable.getSelectedObject() == note && !note.isSummary()) {
+                detailPanel.refreshDetail();
+            }
+        });
+    }
+
     public void setShowFocusBorder(boolean showFocusBorder) {
         if (showFocusBorder) {
             setBorder(PluginConstant.FOCUS_LOST_BORDER);
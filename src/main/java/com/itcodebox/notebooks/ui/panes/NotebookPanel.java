@@ -18,6 +18,7 @@ import com.itcodebox.notebooks.ui.tables.AbstractRecordTable;
 import com.itcodebox.notebooks.ui.tables.ChapterTable;
 import com.itcodebox.notebooks.ui.tables.NotebookTable;
 import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+import com.itcodebox.notebooks.utils.LatestRequest;
 
 import javax.swing.*;
 import java.awt.*;
@@ -26,6 +27,7 @@ import java.awt.event.FocusListener;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
 
@@ -37,6 +39,9 @@ public class NotebookPanel extends JPanel implements FocusListener{
     private final NotebookTable notebookTable;
     private final ProjectStorage projectStorage;
     private final JButton btnAddNotebook;
+    private final DetailPanel detailPanel;
+    private final LatestRequest notebookRequest = new LatestRequest();
+    private final LatestRequest chapterRequest = new LatestRequest();
 
     private boolean isCascadeOperation;
 
@@ -48,6 +53,7 @@ public class NotebookPanel extends JPanel implements FocusListener{
         projectStorage = ServiceManager.getService(project, ProjectStorage.class);
         this.notebookTable = notebookTable;
         this.chapterTable = chapterTable;
+        this.detailPanel = detailPanel;
         btnAddNotebook = new JButton(message("button.addNotebook"), AllIcons.General.Add);
         setReadOnly(AppSettingsState.getInstance().readOnlyMode);
         btnAddNotebook.addActionListener(event -> {
@@ -79,7 +85,6 @@ public class NotebookPanel extends JPanel implements FocusListener{
             Notebook notebook = notebookTable.getSelectedObject();
             projectStorage.selectedNotebookId = (notebook == null ? -1 : notebook.getId());
             refreshChapterTable(notebook);
-            detailPanel.refreshComboBoxModel(RefreshType.Notebook);
         });
 
         setShowFocusBorder(AppSettingsState.getInstance().showFocusBorder);
@@ -97,32 +102,43 @@ public class NotebookPanel extends JPanel implements FocusListener{
 
     public void reloadData() {
         NotebookService service = NotebookServiceImpl.getInstance();
-        notebookTable.clearRows();
-        List<Notebook> items = service.findAll();
-        if (items != null) {
-            notebookTable.getRecordModel().setItems(items);
-        }
+        notebookTable.beginLoading();
+        notebookRequest.submit(service.findAllAsync(), items -> {
+            if (items != null) {
+                notebookTable.loadRows(items, false);
+            } else {
+                notebookTable.clearRows();
+            }
+        });
     }
 
     public void setReadOnly(boolean isReadOnly) {
         btnAddNotebook.setEnabled(!isReadOnly);
     }
 
+    /**
+     * 章节在后台加载, 只处理最后一次选择的笔记本的结果
+     */
     private void refreshChapterTable(Notebook notebook) {
-        if (notebook != null) {
-            ChapterService service = ChapterServiceImpl.getInstance();
-            List<Chapter> list = service.findAllByNotebookId(notebook.getId());
+        if (notebook == null) {
+            chapterRequest.cancel();
+            chapterTable.clearRows();
+            detailPanel.refreshComboBoxModel(RefreshType.Notebook);
+            return;
+        }
+        ChapterService service = ChapterServiceImpl.getInstance();
+        CompletableFuture<List<Chapter>> future = service.findAllByNotebookIdAsync(notebook.getId());
+        //加载期间不显示上一个笔记本的章节
+        chapterTable.beginLoading();
+        boolean cascade = isCascadeOperation;
+        chapterRequest.submit(future, list -> {
             if (list != null) {
-                chapterTable.getRecordModel().setItems(list);
-                if (isCascadeOperation) {
-                    chapterTable.selectedFirst();
-                }
+                chapterTable.loadRows(list, cascade);
             } else {
                 chapterTable.clearRows();
             }
-        } else {
-            chapterTable.clearRows();
-        }
+            detailPanel.refreshComboBoxModel(RefreshType.Notebook);
+        });
     }
 
     @Override
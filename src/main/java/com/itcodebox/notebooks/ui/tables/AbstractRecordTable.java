@@ -7,12 +7,18 @@ import com.intellij.ui.table.TableView;
 import com.intellij.util.ui.ListTableModel;
 import com.itcodebox.notebooks.entity.Record;
 import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+import gnu.trove.TIntIntHashMap;
 
 import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import javax.swing.event.TableModelListener;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * @author LeeWyatt
@@ -46,11 +52,31 @@ public abstract class AbstractRecordTable<T extends Record> extends TableView<T>
     protected ListTableModel<T> recordModel;
     protected Project project;
 
+    /**
+     * 数据是异步加载的, 要选择的行可能还没有加载. 先记录下来, 下一次加载完成后再选择
+     */
+    private Integer pendingSelectionId;
+
+    /**
+     * 异步加载还没有完成
+     */
+    private boolean loading;
+
     /**
      * tableSpeedSearch 搜索的好像就是toString里的内容,所以toString里返回的只是title的字符串
      */
     private TableSpeedSearch tableSpeedSearch;
 
+    /**
+     * id 到行号的索引, 按id查找行时不再遍历全部数据.
+     * 在末尾添加行时直接更新; 其他变化(删除, 插入, 移动, 重新设置数据, 编辑)时作废, 下次查找时重新建立.
+     * 使用平台自带的 trove4j 的 TIntIntHashMap, 不需要装箱; 没有的id get 返回0, 所以要先 containsKey
+     */
+    private final TIntIntHashMap idIndex = new TIntIntHashMap();
+    private boolean indexValid;
+    private int indexedRows;
+    private final TableModelListener indexUpdater = this::updateIndex;
+
     public AbstractRecordTable(Project project) {
         this.project = project;
         // 单选
@@ -92,7 +118,12 @@ public abstract class AbstractRecordTable<T extends Record> extends TableView<T>
     };
 
     public void setRecordModel(ListTableModel<T> recordModel) {
+        if (this.recordModel != null) {
+            this.recordModel.removeTableModelListener(indexUpdater);
+        }
         this.recordModel = recordModel;
+        indexValid = false;
+        recordModel.addTableModelListener(indexUpdater);
         setModelAndUpdateColumns(recordModel);
     }
 
@@ -106,6 +137,10 @@ public abstract class AbstractRecordTable<T extends Record> extends TableView<T>
 
     public void addAndSelected(T t, boolean editing) {
         addRow(t);
+        if (loading) {
+            //加载完成后会重新设置数据, 到时候再选择
+            pendingSelectionId = t.getId();
+        }
         int index = getRecordModel().indexOf(t);
         if (index == -1) {
             return;
@@ -157,12 +192,7 @@ public abstract class AbstractRecordTable<T extends Record> extends TableView<T>
         if (t == null || t.getId() == null) {
             return;
         }
-        int index = findIndexById(t.getId());
-        //思考 如果不判断index为-1,会不会报错
-        if (index != -1) {
-            scrollRectToVisible(getCellRect(index, 0, true));
-            setRowSelectionInterval(index, index);
-        }
+        selectedRowById(t.getId());
     }
 
     public void selectedRowByTitle(String title) {
@@ -186,6 +216,48 @@ public abstract class AbstractRecordTable<T extends Record> extends TableView<T>
         if (index != -1) {
             scrollRectToVisible(getCellRect(index, 0, true));
             setRowSelectionInterval(index, index);
+        } else if (loading) {
+            //加载完成后会重新设置数据, 到时候再选择
+            pendingSelectionId = id;
+        }
+    }
+
+    /**
+     * 开始异步加载: 清空表格, 加载完成后调用 loadRows
+     */
+    public void beginLoading() {
+        clearRows();
+        loading = true;
+    }
+
+    /**
+     * 设置异步加载完成的数据. 如果加载期间要求选择过某行, 优先选择该行; 否则根据 selectFirst 决定是否选择第一行
+     *
+     * @param items       加载的数据
+     * @param selectFirst 是否选择第一行
+     */
+    public void loadRows(List<T> items, boolean selectFirst) {
+        List<T> rows = new ArrayList<>(items);
+        if (loading) {
+            //加载期间通过事件添加的行, 查询结果里可能还没有
+            Set<Integer> loadedIds = new HashSet<>(items.size() * 2);
+            for (T item : items) {
+                loadedIds.add(item.getId());
+            }
+            for (T row : recordModel.getItems()) {
+                if (loadedIds.add(row.getId())) {
+                    rows.add(row);
+                }
+            }
+            loading = false;
+        }
+        Integer pendingId = pendingSelectionId;
+        pendingSelectionId = null;
+        recordModel.setItems(rows);
+        if (pendingId != null && findIndexById(pendingId) != -1) {
+            selectedRowById(pendingId);
+        } else if (selectFirst) {
+            selectedFirst();
         }
     }
 
@@ -222,6 +294,7 @@ public abstract class AbstractRecordTable<T extends Record> extends TableView<T>
     }
 
     public void clearRows() {
+        loading = false;
         int count = recordModel.getRowCount();
         for (int i = count - 1; i >= 0; i--) {
             recordModel.removeRow(i);
@@ -232,48 +305,33 @@ public abstract class AbstractRecordTable<T extends Record> extends TableView<T>
      * 通过ID 来查找是否包含某行
      */
     public boolean containRow(Integer id) {
-        if (recordModel == null) {
-            return false;
-        }
-        List<T> items = recordModel.getItems();
-        for (T item : items) {
-            if (id.equals(item.getId())) {
-                return true;
-            }
-        }
-        return false;
+        return findIndexById(id) != -1;
     }
 
     /**
      * 通过id 来找到某行
      */
     public T findById(Integer id) {
-        if (id == null || recordModel == null) {
-            return null;
-        }
-        List<T> items = recordModel.getItems();
-        for (T item : items) {
-            if (id.equals(item.getId())) {
-                return item;
-            }
-        }
-        return null;
+        int index = findIndexById(id);
+        return index == -1 ? null : recordModel.getItem(index);
     }
 
     public int findIndexById(Integer id) {
         if (id == null || recordModel == null) {
             return -1;
         }
-        List<T> items = recordModel.getItems();
-        int size = items.size();
-        for (int i = 0; i < size; i++) {
-            if (id.equals(items.get(i).getId())) {
-                return i;
-            }
+        ensureIndex();
+        int index = idIndex.containsKey(id) ? idIndex.get(id) : -1;
+        if (index != -1 && (index >= recordModel.getRowCount() || !id.equals(recordModel.getItem(index).getId()))) {
+            rebuildIndex();
+            index = idIndex.containsKey(id) ? idIndex.get(id) : -1;
         }
-        return -1;
+        return index;
     }
 
+    /**
+     * 标题可能被直接修改而没有事件(如 item.setTitle), 有重名时索引不能保证找到第一行, 所以按顺序查找; 只在少数操作中使用
+     */
     public int findIndexByTitle(String  title) {
         if (title == null || recordModel == null) {
             return -1;
@@ -288,6 +346,48 @@ public abstract class AbstractRecordTable<T extends Record> extends TableView<T>
         return -1;
     }
 
+    private void updateIndex(TableModelEvent e) {
+        if (!indexValid) {
+            return;
+        }
+        int rowCount = recordModel.getRowCount();
+        //在末尾添加的行, 直接加入索引
+        if (e.getType() == TableModelEvent.INSERT && e.getFirstRow() == indexedRows && e.getLastRow() == rowCount - 1) {
+            for (int i = e.getFirstRow(); i <= e.getLastRow(); i++) {
+                addToIndex(recordModel.getItem(i), i);
+            }
+            indexedRows = rowCount;
+            return;
+        }
+        indexValid = false;
+    }
+
+    private void ensureIndex() {
+        if (!indexValid) {
+            rebuildIndex();
+        }
+    }
+
+    private void rebuildIndex() {
+        idIndex.clear();
+        List<T> items = recordModel.getItems();
+        int size = items.size();
+        for (int i = 0; i < size; i++) {
+            addToIndex(items.get(i), i);
+        }
+        indexedRows = size;
+        indexValid = true;
+    }
+
+    /**
+     * 有重复时保留第一行, 和按顺序查找的结果相同
+     */
+    private void addToIndex(T item, int index) {
+        if (item.getId() != null && !idIndex.containsKey(item.getId())) {
+            idIndex.put(item.getId(), index);
+        }
+    }
+
     public void selectedFirst() {
         if (recordModel.getRowCount() > 0) {
             selectedRow(recordModel.getItem(0));
@@ -6,6 +6,7 @@ import com.intellij.openapi.ui.JBMenuItem;
 import com.intellij.openapi.ui.JBPopupMenu;
 import com.intellij.openapi.ui.Messages;
 import com.itcodebox.notebooks.entity.Chapter;
+import com.itcodebox.notebooks.entity.ImageRecord;
 import com.itcodebox.notebooks.projectservice.RecordListener;
 import com.itcodebox.notebooks.service.impl.ChapterServiceImpl;
 import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
@@ -64,7 +65,7 @@ public class ChapterTable extends AbstractRecordTable<Chapter> {
                 Chapter chapter = chapterTable.getSelectedObject();
                 if (result == Messages.OK && chapter != null) {
                     // 准备工作: 获取相关图片
-                    List<String> records = NoteServiceImpl.getInstance().getImageRecordsByChapterId(chapter.getId());
+                    List<ImageRecord> records = NoteServiceImpl.getInstance().getImageRecordsByChapterId(chapter.getId());
                     //一. 从数据库删除
                     ChapterServiceImpl.getInstance().delete(chapter.getId());
                     //二. 通知UI删除
@@ -12,6 +12,7 @@ import com.itcodebox.notebooks.service.NoteService;
 import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
 import com.itcodebox.notebooks.ui.panes.MainPanel;
 import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
+import org.jetbrains.annotations.Nullable;
 
 import javax.activation.ActivationDataFlavor;
 import javax.activation.DataHandler;
@@ -81,6 +82,14 @@ public class ChapterTableDragOnHandler extends TransferHandler {
             }
 
             NoteService noteService = NoteServiceImpl.getInstance();
+            //表格里的笔记可能只加载了元数据; 移动是删除后重新插入, 必须先取得完整的笔记, 否则正文和图片会丢失
+            if (note.isSummary()) {
+                Note fullNote = noteService.findById(note.getId());
+                if (fullNote == null || fullNote.isSummary()) {
+                    return false;
+                }
+                note.copyBodyFrom(fullNote);
+            }
             //Note 如果重名的处理方式
             Note noteTemp = noteService.findByTitle(note.getTitle(), chapter.getId());
             if (noteTemp != null) {
@@ -91,24 +100,16 @@ public class ChapterTableDragOnHandler extends TransferHandler {
                         message("chapterTable.DragOn.titleConflict.no"),
                         message("button.cancel"),
                         Messages.getQuestionIcon());
-                //替换操作
+                //替换操作: 删除目标章节的同名note, 移动当前Note到新的章节
                 if (result == Messages.YES) {
-                    //1. 删除目标章节的note
-                    noteService.delete(noteTemp.getId());
-                    //2. 删除后的UI更新
-                    ApplicationManager.getApplication()
-                            .getMessageBus()
-                            .syncPublisher(RecordListener.TOPIC)
-                            .onNoteRemoved(project,noteTemp);
-                    //3. 移动当前Note到新的章节
-                    moveToNewChapter(chapter, note, noteService);
+                    moveToNewChapter(chapter, note, noteService, noteTemp);
                     return true;
                 }else if (result==Messages.NO){
                     uiManager.getMainPanel().getNoteTable().editRow(note);
                 }
                 return false;
             }else{
-                moveToNewChapter(chapter, note, noteService);
+                moveToNewChapter(chapter, note, noteService, null);
                 return true;
             }
         } catch (Exception e) {
@@ -117,21 +118,31 @@ public class ChapterTableDragOnHandler extends TransferHandler {
         }
     }
 
-    private void moveToNewChapter(Chapter chapter, Note note, NoteService noteService) {
-        noteService.delete(note.getId());
+    /**
+     * 在一个事务中移动Note(删除后重新插入), 提交成功后再更新UI
+     *
+     * @param replacedNote 目标章节中需要被替换的同名Note, 没有时为null
+     */
+    private void moveToNewChapter(Chapter chapter, Note note, NoteService noteService, @Nullable Note replacedNote) {
+        Integer sourceChapterId = note.getChapterId();
+        Note newNote = noteService.inTransaction(conn -> {
+            if (replacedNote != null) {
+                noteService.delete(replacedNote.getId());
+            }
+            noteService.delete(note.getId());
+            note.setChapterId(chapter.getId());
+            return noteService.insert(note);
+        });
+        //UI删除时还需要原来的章节
+        note.setChapterId(sourceChapterId);
+        RecordListener publisher = ApplicationManager.getApplication().getMessageBus().syncPublisher(RecordListener.TOPIC);
         //1. 删除
-        ApplicationManager.getApplication()
-                .getMessageBus()
-                .syncPublisher(RecordListener.TOPIC)
-                .onNoteRemoved(project, note);
-        //2. 修改
-        note.setChapterId(chapter.getId());
-        Note newNote = noteService.insert(note);
-        //3. 添加
-        ApplicationManager.getApplication()
-                .getMessageBus()
-                .syncPublisher(RecordListener.TOPIC)
-                .onNoteAdd(project, newNote);
+        if (replacedNote != null) {
+            publisher.onNoteRemoved(project, replacedNote);
+        }
+        publisher.onNoteRemoved(project, note);
+        //2. 添加
+        publisher.onNoteAdd(project, newNote);
     }
 
     @Override
@@ -1,10 +1,12 @@
 package com.itcodebox.notebooks.ui.tables;
 
+import com.intellij.icons.AllIcons;
 import com.intellij.util.ui.JBEmptyBorder;
 import com.intellij.util.ui.JBUI;
 import com.itcodebox.notebooks.constant.PluginColors;
 import com.itcodebox.notebooks.constant.PluginConstant;
 import com.itcodebox.notebooks.entity.ImageRecord;
+import com.itcodebox.notebooks.service.ThumbnailService;
 import icons.PluginIcons;
 import org.jetbrains.annotations.NotNull;
 
@@ -21,6 +23,10 @@ public class ImageTableCellRenderer implements TableCellRenderer {
         if (path == null || path.trim().isEmpty()) {
             return PluginIcons.Unknown;
         }
+        //缩略图还在生成中
+        if (ThumbnailService.getInstance().isPending(path)) {
+            return AllIcons.Process.Step_1;
+        }
         String fileType = path.toLowerCase();
         Icon icon;
         if (fileType.endsWith(PluginConstant.GIF)) {
@@ -7,6 +7,7 @@ import com.intellij.openapi.ui.JBMenuItem;
 import com.intellij.openapi.ui.JBPopupMenu;
 import com.intellij.openapi.ui.Messages;
 import com.itcodebox.notebooks.constant.PluginConstant;
+import com.itcodebox.notebooks.entity.ImageRecord;
 import com.itcodebox.notebooks.entity.Note;
 import com.itcodebox.notebooks.projectservice.RecordListener;
 import com.itcodebox.notebooks.service.NoteService;
@@ -16,6 +17,7 @@ import com.itcodebox.notebooks.utils.CustomFileUtil;
 import icons.PluginIcons;
 
 import java.awt.datatransfer.StringSelection;
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
@@ -25,6 +27,11 @@ import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
  */
 public class NoteTable extends AbstractRecordTable<Note> {
 
+    /**
+     * 加载选中笔记的正文时, 顺便预加载上下相邻的几行
+     */
+    private static final int PREFETCH_ROWS = 2;
+
     private final NoteTableDragMoveHandler dragMoveHandler;
 
     public NoteTable(Project project) {
@@ -38,6 +45,43 @@ public class NoteTable extends AbstractRecordTable<Note> {
         setTransferHandler(dragMoveHandler);
     }
 
+    /**
+     * 表格里的笔记只加载了元数据, 选中时在后台加载正文, 顺便预加载上下相邻的几行
+     *
+     * @param row 视图中的行号
+     * @return 指定行及相邻行中还没有加载正文的笔记
+     */
+    public List<Note> getSummariesAround(int row) {
+        List<Note> notes = new ArrayList<>();
+        if (row < 0) {
+            return notes;
+        }
+        int from = Math.max(0, row - PREFETCH_ROWS);
+        int to = Math.min(getRowCount() - 1, row + PREFETCH_ROWS);
+        for (int i = from; i <= to; i++) {
+            Note note = getRow(i);
+            if (note != null && note.isSummary()) {
+                notes.add(note);
+            }
+        }
+        return notes;
+    }
+
+    /**
+     * 把后台查询到的正文填充到表格里对应的笔记; 只能在EDT上调用.
+     * 表格已经重新加载或者笔记已经被修改时, 跳过不再是摘要的笔记
+     *
+     * @param bodies 完整加载的笔记
+     */
+    public void fillBodies(List<Note> bodies) {
+        for (Note body : bodies) {
+            Note note = findById(body.getId());
+            if (note != null && note.isSummary()) {
+                note.copyBodyFrom(body);
+            }
+        }
+    }
+
     @Override
     public JBPopupMenu createPopupMenu() {
         return new TablePopupMenu();
@@ -55,7 +99,7 @@ public class NoteTable extends AbstractRecordTable<Note> {
             JBMenuItem menuItemCopy = new JBMenuItem(message("menu.item.copyContent"), AllIcons.Actions.Copy);
             menuItemCopy.addActionListener(e -> {
                 Note note = noteTable.getSelectedObject();
-                if (note != null) {
+                if (note != null && !note.isSummary()) {
                     String content = note.getContent();
                     PluginConstant.CLIPBOARD.setContents(new StringSelection(content == null || content.trim().isEmpty() ? "No data" : content), null);
                 }
@@ -66,7 +110,7 @@ public class NoteTable extends AbstractRecordTable<Note> {
             JBMenuItem menuItemEdit = new JBMenuItem(message("menu.item.editNote"), AllIcons.Actions.Edit);
             menuItemEdit.addActionListener(e -> {
                 Note note = noteTable.getSelectedObject();
-                if (note != null) {
+                if (note != null && !note.isSummary()) {
                     new EditNoteDialog(project, note).show();
                 }
             });
@@ -84,7 +128,7 @@ public class NoteTable extends AbstractRecordTable<Note> {
                 if (result == Messages.OK && note != null) {
                     NoteService noteService = NoteServiceImpl.getInstance();
                     //准备工作: 获取相关图片
-                    List<String> records = noteService.getImageRecordsByNoteId(note.getId());
+                    List<ImageRecord> records = noteService.getImageRecordsByNoteId(note.getId());
                     //数据库里删除
                     noteService.delete(note.getId());
                     ApplicationManager
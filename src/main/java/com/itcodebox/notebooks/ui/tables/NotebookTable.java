@@ -7,6 +7,7 @@ import com.intellij.openapi.ui.JBMenuItem;
 import com.intellij.openapi.ui.JBPopupMenu;
 import com.intellij.openapi.ui.Messages;
 import com.intellij.ui.SeparatorComponent;
+import com.itcodebox.notebooks.entity.ImageRecord;
 import com.itcodebox.notebooks.entity.Notebook;
 import com.itcodebox.notebooks.projectservice.RecordListener;
 import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
@@ -83,7 +84,7 @@ public class NotebookTable extends AbstractRecordTable<Notebook> {
                 Notebook notebook = notebookTable.getSelectedObject();
                 if (result == Messages.OK && notebook != null) {
                     // 准备工作: 获取相关图片
-                    List<String> records = NoteServiceImpl.getInstance().getImageRecordsByNotebookId(notebook.getId());
+                    List<ImageRecord> records = NoteServiceImpl.getInstance().getImageRecordsByNotebookId(notebook.getId());
                     //1. 数据库里删除
                     NotebookServiceImpl.getInstance().delete(notebook.getId());
                     //2. UI更新
@@ -25,6 +25,7 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.datatransfer.DataFlavor;
 import java.awt.datatransfer.Transferable;
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
@@ -140,6 +141,11 @@ public class NotebookTableDragOnTransferHandler extends TransferHandler {
         NoteService noteService = NoteServiceImpl.getInstance();
         List<Note> noteList = noteService.findAllByChapterId(sourceChapter.getId());
 
+        //1. 先确定每个Note的处理方式. 需要询问用户, 所以不能放在事务里
+        // 目标章节中被覆盖的同名Note
+        List<Note> overwrittenNotes = new ArrayList<>();
+        // 需要移动到目标章节的Note
+        List<Note> movedNotes = new ArrayList<>();
         // 下次循环是否询问同名时的冲突操作
         int batchChoose = ASK;
         //是否有残留,有跳过或者全部跳过的Note
@@ -168,23 +174,17 @@ public class NotebookTableDragOnTransferHandler extends TransferHandler {
                                     message("notebookTable.merge.choose4"),
                             }, 0, Messages.getWarningIcon());
 
-                    //如果关闭了窗口, 没有进行任何操作
+                    //如果关闭了窗口或者停止, 之前选择的操作依然执行, 但是不删除章节
                     if (result == CLOSE || result == STOP) {
-                        return;
+                        hasLeftOver = true;
+                        break;
                     } else if (result == OVERWRITE || result == OVERWRITE_ALL) {
                         // 选择了替换操作
                         if (result == OVERWRITE_ALL) {
                             batchChoose = OVERWRITE_ALL;
                         }
-                        //1. 删除目标章节的note
-                        noteService.delete(noteTemp.getId());
-                        //2. 删除后的UI更新
-                        ApplicationManager.getApplication()
-                                .getMessageBus()
-                                .syncPublisher(RecordListener.TOPIC)
-                                .onNoteRemoved(project, noteTemp);
-                        //3. 移动当前Note到新的章节
-                        moveToNewChapter(targetChapter, note, noteService);
+                        overwrittenNotes.add(noteTemp);
+                        movedNotes.add(note);
                     } else if (result == SKIP_ALL) {
                         batchChoose = SKIP_ALL;
                         hasLeftOver = true;
@@ -192,83 +192,89 @@ public class NotebookTableDragOnTransferHandler extends TransferHandler {
                         hasLeftOver = true;
                     }
                 } else if (batchChoose == OVERWRITE_ALL) {
-                    //1. 删除目标章节的note
-                    noteService.delete(noteTemp.getId());
-                    //2. 删除后的UI更新
-                    ApplicationManager.getApplication()
-                            .getMessageBus()
-                            .syncPublisher(RecordListener.TOPIC)
-                            .onNoteRemoved(project, noteTemp);
-                    //3. 移动当前Note到新的章节
-                    moveToNewChapter(targetChapter, note, noteService);
+                    overwrittenNotes.add(noteTemp);
+                    movedNotes.add(note);
                 }
 
             } else {
-                moveToNewChapter(targetChapter, note, noteService);
+                movedNotes.add(note);
             }
 
         }
+
+        //2. 在一个事务中执行全部修改
         //如果全部移动,没有残留. 那么需要删除章节
-        if (!hasLeftOver) {
-            chapterService.delete(sourceChapter.getId());
-            ApplicationManager.getApplication()
-                    .getMessageBus()
-                    .syncPublisher(RecordListener.TOPIC)
-                    .onChapterRemoved(project, sourceChapter);
+        boolean deleteSourceChapter = !hasLeftOver;
+        List<Note> newNotes = noteService.inTransaction(conn -> {
+            for (Note note : overwrittenNotes) {
+                noteService.delete(note.getId());
+            }
+            List<Note> result = new ArrayList<>(movedNotes.size());
+            for (Note note : movedNotes) {
+                result.add(moveToNewChapter(targetChapter, note, noteService));
+            }
+            if (deleteSourceChapter) {
+                chapterService.delete(sourceChapter.getId());
+            }
+            return result;
+        });
+
+        //3. 提交成功后, 更新UI
+        RecordListener publisher = ApplicationManager.getApplication().getMessageBus().syncPublisher(RecordListener.TOPIC);
+        for (Note note : overwrittenNotes) {
+            publisher.onNoteRemoved(project, note);
+        }
+        for (int i = 0; i < movedNotes.size(); i++) {
+            publisher.onNoteRemoved(project, movedNotes.get(i));
+            publisher.onNoteAdd(project, newNotes.get(i));
+        }
+        if (deleteSourceChapter) {
+            publisher.onChapterRemoved(project, sourceChapter);
         }
 
     }
 
-    private void moveToNewChapter(Chapter chapter, Note note, NoteService noteService) {
+    /**
+     * 把Note移动到新的章节(删除后重新插入), 需要在事务中调用
+     *
+     * @return 新插入的Note
+     */
+    private Note moveToNewChapter(Chapter chapter, Note note, NoteService noteService) {
         noteService.delete(note.getId());
-        //1. 删除
-        ApplicationManager.getApplication()
-                .getMessageBus()
-                .syncPublisher(RecordListener.TOPIC)
-                .onNoteRemoved(project, note);
-        //2. 修改
+        Integer sourceChapterId = note.getChapterId();
         note.setChapterId(chapter.getId());
         Note newNote = noteService.insert(note);
-        //3. 添加
-        ApplicationManager.getApplication()
-                .getMessageBus()
-                .syncPublisher(RecordListener.TOPIC)
-                .onNoteAdd(project, newNote);
+        //恢复, UI删除时还需要原来的章节
+        note.setChapterId(sourceChapterId);
+        return newNote;
     }
 
     private void moveToNotebook(@NotNull Notebook notebook, @NotNull Chapter sourceChapter, @NotNull ChapterServiceImpl chapterService) {
         //1. 查找该Chapter下的全部Note
         NoteService noteService = NoteServiceImpl.getInstance();
         List<Note> noteList = noteService.findAllByChapterId(sourceChapter.getId());
-        //2. 从数据库和视图中 删除该Chapter
-        chapterService.delete(sourceChapter.getId());
-        ApplicationManager
-                .getApplication()
-                .getMessageBus()
-                .syncPublisher(RecordListener.TOPIC)
-                .onChapterRemoved(project, sourceChapter);
-        //3. 修改chapter的bookid
-        sourceChapter.setNotebookId(notebook.getId());
-        //4. 插入更新后的chapter
-        Chapter targetChapter = chapterService.insert(sourceChapter);
-        ApplicationManager
-                .getApplication()
-                .getMessageBus()
-                .syncPublisher(RecordListener.TOPIC)
-                .onChapterAdd(project, targetChapter, false, false);
-
-        //5. 更新Note的 从属关系
-        for (Note note : noteList) {
-            note.setNotebookId(notebook.getId());
-            note.setChapterId(targetChapter.getId());
-        }
-        Note[] noteAry = new Note[noteList.size()];
-        //6. 向数据库插入新的notes
-        noteService.insert(noteList.toArray(noteAry));
-        ApplicationManager.getApplication()
-                .getMessageBus()
-                .syncPublisher(RecordListener.TOPIC)
-                .onNoteAdd(project, noteList);
+        Integer sourceNotebookId = sourceChapter.getNotebookId();
+        Chapter targetChapter = chapterService.inTransaction(conn -> {
+            //2. 从数据库删除该Chapter
+            chapterService.delete(sourceChapter.getId());
+            //3. 修改chapter的bookid, 插入更新后的chapter
+            sourceChapter.setNotebookId(notebook.getId());
+            Chapter newChapter = chapterService.insert(sourceChapter);
+            //4. 更新Note的 从属关系
+            for (Note note : noteList) {
+                note.setNotebookId(notebook.getId());
+                note.setChapterId(newChapter.getId());
+            }
+            //5. 向数据库批量插入新的notes
+            noteService.insert(noteList.toArray(new Note[0]));
+            return newChapter;
+        });
+        //6. 提交成功后, 更新视图
+        sourceChapter.setNotebookId(sourceNotebookId);
+        RecordListener publisher = ApplicationManager.getApplication().getMessageBus().syncPublisher(RecordListener.TOPIC);
+        publisher.onChapterRemoved(project, sourceChapter);
+        publisher.onChapterAdd(project, targetChapter, false, false);
+        publisher.onNoteAdd(project, noteList);
     }
 
     private String getPath(Note note) {
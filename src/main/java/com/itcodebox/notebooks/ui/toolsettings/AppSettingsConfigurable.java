@@ -2,6 +2,7 @@ package com.itcodebox.notebooks.ui.toolsettings;
 
 import com.intellij.openapi.application.ApplicationManager;
 import com.intellij.openapi.options.Configurable;
+import com.itcodebox.notebooks.service.ThumbnailService;
 import org.jetbrains.annotations.Nullable;
 
 import javax.swing.*;
@@ -78,7 +79,12 @@ public class AppSettingsConfigurable implements Configurable {
                     .onSetShowFocusBorder(newShowFocusBorder);
         }
         settings.showFocusBorder = settingsPanel.getShowFocusBorder();
-        settings.thumbMaxSize = settingsPanel.getThumbMaxSize();
+        //3. 缩略图尺寸改变后, 在后台重新生成缩略图
+        int newThumbMaxSize = settingsPanel.getThumbMaxSize();
+        if (newThumbMaxSize != settings.thumbMaxSize) {
+            settings.thumbMaxSize = newThumbMaxSize;
+            ThumbnailService.getInstance().rebuildThumbnails(null);
+        }
     }
 
     @Override
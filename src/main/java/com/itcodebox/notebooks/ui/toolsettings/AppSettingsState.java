@@ -63,6 +63,36 @@ public class AppSettingsState implements PersistentStateComponent<AppSettingsSta
      */
     public boolean showFocusBorder = true;
 
+    /**
+     * 只读连接池的最大连接数(写连接始终只有一个)
+     */
+    public int readConnectionPoolSize = 4;
+
+    /**
+     * SQLite PRAGMA synchronous: OFF / NORMAL / FULL / EXTRA. WAL模式下NORMAL已足够安全
+     */
+    public String sqliteSynchronous = "NORMAL";
+
+    /**
+     * SQLite PRAGMA cache_size, 每个连接的页缓存大小, 单位KB
+     */
+    public int sqliteCacheSizeKb = 8192;
+
+    /**
+     * SQLite PRAGMA mmap_size, 内存映射大小, 单位MB; 0表示关闭
+     */
+    public int sqliteMmapSizeMb = 64;
+
+    /**
+     * SQLite PRAGMA temp_store: DEFAULT / FILE / MEMORY
+     */
+    public String sqliteTempStore = "MEMORY";
+
+    /**
+     * 已解码的缩略图在内存中最多占用的大小, 单位MB
+     */
+    public int imageCacheSizeMb = 32;
+
 
     ///**
     // * 正在进行导入或者导出操作
@@ -0,0 +1,59 @@
+package com.itcodebox.notebooks.utils;
+
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * 正则表达式匹配时使用的文字, 每读取 CHECK_INTERVAL 个字符检查一次搜索是否已经被取消.
+ * <p>
+ * 回溯严重的正则表达式在一条很长的内容上可能匹配很久, Matcher 本身不能中断,
+ * 但每一步都要通过 charAt 读取字符, 在这里抛出 CancellationException 就能结束匹配.
+ * 计数器没有同步, 一个对象只能在一个线程中使用.
+ *
+ * @author LeeWyatt
+ */
+public class CancellableCharSequence implements CharSequence {
+    private static final int CHECK_INTERVAL = 1024;
+
+    private final CharSequence text;
+    private final BooleanSupplier canceled;
+    private int reads;
+
+    /**
+     * @param text     原来的文字
+     * @param canceled 搜索是否已经被取消
+     */
+    public CancellableCharSequence(CharSequence text, BooleanSupplier canceled) {
+        this.text = text;
+        this.canceled = canceled;
+    }
+
+    /**
+     * @throws CancellationException 搜索已经被取消
+     */
+    @Override
+    public char charAt(int index) {
+        if (++reads == CHECK_INTERVAL) {
+            reads = 0;
+            if (canceled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+        }
+        return text.charAt(index);
+    }
+
+    @Override
+    public int length() {
+        return text.length();
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return new CancellableCharSequence(text.subSequence(start, end), canceled);
+    }
+
+    @Override
+    public String toString() {
+        return text.toString();
+    }
+}
@@ -6,10 +6,11 @@ import com.intellij.openapi.fileChooser.FileChooserFactory;
 import com.intellij.openapi.project.Project;
 import com.intellij.openapi.ui.InputValidatorEx;
 import com.intellij.openapi.ui.Messages;
-import com.intellij.openapi.util.io.FileUtil;
 import com.intellij.openapi.vfs.VirtualFile;
 import com.itcodebox.notebooks.constant.PluginConstant;
 import com.itcodebox.notebooks.entity.ImageRecord;
+import com.itcodebox.notebooks.service.ImageCache;
+import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
 import org.apache.commons.io.file.PathUtils;
 import org.jetbrains.annotations.NonNls;
 import org.jetbrains.annotations.Nullable;
@@ -141,70 +142,37 @@ public class CustomFileUtil {
         return dirName;
     }
 
-    /**
-     * 复制(图片)文件夹
-     */
-    public static void copyDirectory(File originDir, File destDir) throws IOException {
-        File[] files = originDir.listFiles();
-        if (files == null) {
-            return;
-        }
-        if (!destDir.exists()) {
-            destDir.mkdir();
-        }
-        for (File file : files) {
-            FileUtil.copy(file, destDir.toPath().resolve(file.getName()).toFile());
-        }
-    }
-
-    /**
-     * 注意 1.  List imageRecords 这里每一条记录都是JSON ,还需要转一次才能得到路径
-     * 注意 2.  导出图片时,无需导出缩略图, 因为这里是Markdown需要原图,无需缩略图
-     */
-    public static void exportImagesToDirectory(List<String> imageRecords, File destDir) throws IOException {
-        for (String imgRecordStr : imageRecords) {
-            if (imgRecordStr == null || imgRecordStr.trim().isEmpty()) {
-                continue;
-            }
-            List<ImageRecord> recordList = ImageRecordUtil.convertToList(imgRecordStr);
-            for (ImageRecord imageRecord : recordList) {
-                try {
-                    File fromFile = PluginConstant.IMAGE_DIRECTORY_PATH.resolve(imageRecord.getImagePath()).toFile();
-                    File toFile = destDir.toPath().resolve(imageRecord.getImagePath()).toFile();
-                    if (!fromFile.exists() || toFile.exists()) {
-                        continue;
-                    }
-                    FileUtil.copy(fromFile, toFile);
-                } catch (Exception exception) {
-                    exception.printStackTrace();
-                }
-            }
-        }
-    }
-
     /**
      * 删除图片时,记得删除缩略图
      *
      * @param imageRecords
      */
-    public static void deleteImages(List<String> imageRecords) {
-        for (String imgRecordStr : imageRecords) {
-            if (imgRecordStr == null || imgRecordStr.trim().isEmpty()) {
-                continue;
-            }
-            List<ImageRecord> recordList = ImageRecordUtil.convertToList(imgRecordStr);
-            for (ImageRecord imageRecord : recordList) {
-                try {
-                    deleteImagesAndThumb(imageRecord.getImagePath());
-                } catch (Exception exception) {
-                    exception.printStackTrace();
-                }
+    public static void deleteImages(List<ImageRecord> imageRecords) {
+        for (ImageRecord imageRecord : imageRecords) {
+            try {
+                deleteImagesAndThumb(imageRecord.getImagePath());
+            } catch (Exception exception) {
+                exception.printStackTrace();
             }
         }
     }
 
+    /**
+     * 删除图片和缩略图. 相同内容的图片只保存了一份, 还有笔记引用这张图片时不删除;
+     * 所以调用前需要先更新数据库里的笔记
+     */
     public static void deleteImagesAndThumb(String imageName) throws IOException {
-        PathUtils.deleteFile(PluginConstant.IMAGE_DIRECTORY_PATH.resolve(imageName));
+        if (NoteServiceImpl.getInstance().countImageReferences(imageName) != 0) {
+            return;
+        }
+        ImageCache.getInstance().invalidate(imageName);
+        Path imagePath = PluginConstant.IMAGE_DIRECTORY_PATH.resolve(imageName);
+        PathUtils.deleteFile(imagePath);
         PathUtils.deleteFile(PluginConstant.IMAGE_DIRECTORY_PATH.resolve(CustomUIUtil.convertToThumbName(imageName)));
+        //分目录已经空了, 一起删除
+        Path parent = imagePath.getParent();
+        if (ImageStoreUtil.isStoredName(imageName) && parent != null && PathUtils.isEmptyDirectory(parent)) {
+            Files.deleteIfExists(parent);
+        }
     }
 }
@@ -7,6 +7,8 @@ import com.itcodebox.notebooks.ui.toolsettings.AppSettingsState;
 import org.jetbrains.annotations.Nullable;
 
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.swing.*;
 import javax.swing.text.JTextComponent;
 import java.awt.*;
@@ -24,6 +26,7 @@ import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.util.Iterator;
 import java.util.List;
 
 /**
@@ -208,21 +211,82 @@ public class CustomUIUtil {
      * 根据图片和图片的最大尺寸来创建缩略图, 如果比例为1:1, 那么不用创建
      */
     public static void writeThumbImageToFile(File imageFile, File thumbFile) throws IOException {
+        writeThumbImageToFile(imageFile, thumbFile, AppSettingsState.getInstance().thumbMaxSize);
+    }
+
+    /**
+     * 根据图片和指定的最大尺寸来创建缩略图, 如果比例为1:1, 那么不用创建.
+     * 可以在后台线程调用
+     */
+    public static void writeThumbImageToFile(File imageFile, File thumbFile, int thumbMaxSize) throws IOException {
         BufferedImage originImage = ImageIO.read(imageFile);
+        if (originImage == null) {
+            throw new IOException("Unsupported image file: " + imageFile);
+        }
         int width = originImage.getWidth();
         int height = originImage.getHeight();
         double scale;
-        int thumbMaxSize = AppSettingsState.getInstance().thumbMaxSize;
         if (width > thumbMaxSize || height > thumbMaxSize) {
             scale = thumbMaxSize * 1.0 / Math.max(width, height);
         } else {
             return;
         }
         //缩放后的size
-        width = (int) (scale * originImage.getWidth());
-        height = (int) (scale * originImage.getHeight());
-        Image scaledImage = originImage.getScaledInstance(width, height, Image.SCALE_SMOOTH);
-        writeImageToFile(scaledImage, new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB), thumbFile, StringUtil.getExtension(imageFile.getName()));
+        width = Math.max(1, (int) (scale * originImage.getWidth()));
+        height = Math.max(1, (int) (scale * originImage.getHeight()));
+        ImageIO.write(scaleImage(originImage, width, height), StringUtil.getExtension(imageFile.getName()), thumbFile);
+    }
+
+    /**
+     * 逐步缩小图片: 每次用双线性插值最多缩小一半, 直到目标尺寸.
+     * 一次缩小太多时双线性插值会跳过大部分像素, 产生锯齿; 而 SCALE_SMOOTH 的面积平均算法很慢
+     *
+     * @return TYPE_INT_RGB 类型的图片
+     */
+    public static BufferedImage scaleImage(BufferedImage image, int targetWidth, int targetHeight) {
+        BufferedImage current = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            BufferedImage next = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+            Graphics2D graphics = next.createGraphics();
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(current, 0, 0, width, height, null);
+            graphics.dispose();
+            current = next;
+        } while (width != targetWidth || height != targetHeight);
+        return current;
+    }
+
+    /**
+     * 只读取图片头部的尺寸信息, 不解码图片
+     *
+     * @return 无法识别的图片返回 null
+     */
+    @Nullable
+    public static Dimension getImageSize(File imageFile) {
+        try (ImageInputStream in = ImageIO.createImageInputStream(imageFile)) {
+            if (in == null) {
+                return null;
+            }
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+            if (!readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     public static void writeImageToFile(Image originImage, BufferedImage destImage, File destFile, String extension) throws IOException {
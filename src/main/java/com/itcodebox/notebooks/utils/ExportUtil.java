@@ -1,13 +1,13 @@
 package com.itcodebox.notebooks.utils;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
 import com.intellij.openapi.project.Project;
 import com.itcodebox.notebooks.constant.PluginConstant;
 import com.itcodebox.notebooks.entity.Chapter;
+import com.itcodebox.notebooks.entity.ImageRecord;
 import com.itcodebox.notebooks.entity.Note;
 import com.itcodebox.notebooks.entity.Notebook;
 import com.itcodebox.notebooks.service.impl.ChapterServiceImpl;
@@ -23,8 +23,11 @@ import org.jetbrains.annotations.NotNull;
 import java.io.*;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -52,25 +55,26 @@ public class ExportUtil {
                     new Task.Backgroundable(project, "Export JSON and Image Files", false) {
                         @Override
                         public void run(@NotNull ProgressIndicator indicator) {
-                            indicator.setText("Export images...");
-                            //导出图片
+                            //导出图片: 在后台线程中复制, 同时导出JSON
+                            ImageCopier imageCopier = null;
                             try {
-                                CustomFileUtil.copyDirectory(PluginConstant.IMAGE_DIRECTORY_PATH.toFile(), dirPath.resolve("notebook_" + fileTimeStr + ".assets").toFile());
+                                imageCopier = ImageCopier.copyDirectory(PluginConstant.IMAGE_DIRECTORY_PATH, dirPath.resolve("notebook_" + fileTimeStr + ".assets"));
                             } catch (IOException e) {
                                 e.printStackTrace();
                             }
                             indicator.setText("Export data...");
                             //导出JSON
                             Path jsonPath = dirPath.resolve("notebook_" + fileTimeStr + ".json");
-                            try (FileOutputStream os = new FileOutputStream(jsonPath.toFile())) {
-                                String jsonStr;
-                                if (notebookId == EXPORT_ALL) {
-                                    jsonStr = ExportUtil.processToJsonString();
-                                } else {
-                                    jsonStr = ExportUtil.processToJsonString(notebookId);
-                                }
-                                os.write(jsonStr.getBytes(StandardCharsets.UTF_8));
+                            boolean succeed = true;
+                            try {
+                                ExportUtil.writeJson(jsonPath, notebookId == EXPORT_ALL ? null : notebookId, indicator);
                             } catch (IOException exception) {
+                                exception.printStackTrace();
+                                succeed = false;
+                            }
+                            indicator.setText("Export images...");
+                            awaitImages(imageCopier, indicator);
+                            if (!succeed) {
                                 // 通知: 导出失败: IO 异常
                                 NotifyUtil.showErrorNotification(
                                         project,
@@ -112,16 +116,11 @@ public class ExportUtil {
             ProgressManager.getInstance().run(new Task.Backgroundable(project, "Export markdown file", false) {
                 @Override
                 public void run(@NotNull ProgressIndicator indicator) {
-                    indicator.setText("Export images...");
                     String title = file.getName();
-                    //1.导出图片
+                    //1.导出图片: 在后台线程中复制, 同时生成Markdown
                     String assetsFileName = title + "_" + fileTimeStr + ".assets";
-                    try {
-                        List<String> imagePathList = NoteServiceImpl.getInstance().getImageRecordsByNotebookId(notebook.getId());
-                        CustomFileUtil.exportImagesToDirectory(imagePathList, dirPath.resolve(assetsFileName).toFile());
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
+                    List<ImageRecord> imageRecords = NoteServiceImpl.getInstance().getImageRecordsByNotebookId(notebook.getId());
+                    ImageCopier imageCopier = ImageCopier.copyImages(imageRecords, dirPath.resolve(assetsFileName));
                     indicator.setText("Export data...");
                     Path mdPath = dirPath.resolve(title + "_" + fileTimeStr + ".md");
                     try (FileOutputStream os = new FileOutputStream(mdPath.toFile())) {
@@ -129,6 +128,7 @@ public class ExportUtil {
                         try {
                             os.write(ExportUtil.processToMarkdownString(notebook, assetsFileName).getBytes(StandardCharsets.UTF_8));
                         } catch (GroovyRuntimeException | IOException | ClassNotFoundException e) {
+                            awaitImages(imageCopier, indicator);
                             // 通知: 导出失败: 模板错误导致异常
                             NotifyUtil.showTemplateErrorNotification(
                                     project,
@@ -138,6 +138,7 @@ public class ExportUtil {
                             return;
                         }
                     } catch (IOException exception) {
+                        awaitImages(imageCopier, indicator);
                         // 通知: 导出失败: IO 异常
                         NotifyUtil.showErrorNotification(
                                 project,
@@ -146,6 +147,8 @@ public class ExportUtil {
                                 message("notify.exportFailed.messageIO"));
                         return;
                     }
+                    indicator.setText("Export images...");
+                    awaitImages(imageCopier, indicator);
 
                     // 通知: 导出成功: 因为前面没有抛出异常 能运行到这里说明保存已经成功
                     try {
@@ -172,6 +175,20 @@ public class ExportUtil {
 
     }
 
+    /**
+     * 等待图片复制完成; 复制失败的图片只打印异常, 不影响导出结果
+     */
+    private static void awaitImages(ImageCopier imageCopier, ProgressIndicator indicator) {
+        if (imageCopier == null) {
+            return;
+        }
+        try {
+            imageCopier.await(indicator);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
     private static String processToMarkdownString(Notebook notebook, String assetsFileName) throws GroovyRuntimeException, IOException, ClassNotFoundException {
         LinkedHashMap<Chapter, List<Note>> map = new LinkedHashMap<>();
         Integer notebookId = notebook.getId();
@@ -192,55 +209,61 @@ public class ExportUtil {
         return sw.toString();
     }
 
-    private static String processToJsonString() {
-        //1. 获取数据
+    /**
+     * 按 笔记本 -> (章节 -> 笔记列表) 的格式导出JSON, 导入时由 ImportUtil 按同样的格式逐条读取.
+     * <p>
+     * 不再把全部数据放进Map再转成字符串: 笔记本和章节只查询出列表, 笔记按章节逐条从数据库读出后直接写入文件,
+     * 所以导出时占用的内存和数据库大小无关.
+     *
+     * @param notebookId 为null时导出全部笔记本
+     */
+    private static void writeJson(Path jsonPath, Integer notebookId, ProgressIndicator indicator) throws IOException {
         NotebookServiceImpl notebookService = NotebookServiceImpl.getInstance();
         ChapterServiceImpl chapterService = ChapterServiceImpl.getInstance();
         NoteServiceImpl noteService = NoteServiceImpl.getInstance();
-        LinkedHashMap<Notebook, LinkedHashMap<Chapter, List<Note>>> map = new LinkedHashMap<>(256);
-        List<Notebook> notebookList = notebookService.findAll();
-        for (Notebook notebook : notebookList) {
-            Integer notebookId = notebook.getId();
-            List<Chapter> chapterList = chapterService.findAllByNotebookId(notebookId);
-            LinkedHashMap<Chapter, List<Note>> noteMap = new LinkedHashMap<>(256);
-            for (Chapter chapter : chapterList) {
-                List<Note> noteList = noteService.findAllByChapterId(chapter.getId());
-                noteMap.put(chapter, noteList);
-            }
-            map.put(notebook, noteMap);
-        }
-        //2. 把对象转成JSON字符串
-        try {
-            return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(map);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+        List<Notebook> notebookList;
+        if (notebookId == null) {
+            notebookList = notebookService.findAll();
+        } else {
+            Notebook notebook = notebookService.findById(notebookId);
+            notebookList = notebook == null ? Collections.emptyList() : Collections.singletonList(notebook);
         }
-        return "";
-    }
+        int total = Math.max(noteService.countNotes(notebookId), 1);
+        int[] count = {0};
+        indicator.setIndeterminate(false);
 
-    private static String processToJsonString(int notebookId) {
-        //1. 获取数据
-        NotebookServiceImpl notebookService = NotebookServiceImpl.getInstance();
-        ChapterServiceImpl chapterService = ChapterServiceImpl.getInstance();
-        NoteServiceImpl noteService = NoteServiceImpl.getInstance();
-        LinkedHashMap<Notebook, LinkedHashMap<Chapter, List<Note>>> map = new LinkedHashMap<>(1);
-        List<Notebook> notebookList = Collections.singletonList(notebookService.findById(notebookId));
-        for (Notebook notebook : notebookList) {
-            Integer tempNotebookId = notebook.getId();
-            List<Chapter> chapterList = chapterService.findAllByNotebookId(tempNotebookId);
-            LinkedHashMap<Chapter, List<Note>> noteMap = new LinkedHashMap<>(50);
-            for (Chapter chapter : chapterList) {
-                List<Note> noteList = noteService.findAllByChapterId(chapter.getId());
-                noteMap.put(chapter, noteList);
+        try (OutputStream os = new BufferedOutputStream(Channels.newOutputStream(FileChannel.open(jsonPath,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)), 64 * 1024);
+             JsonGenerator generator = JsonUtil.createGenerator(os)) {
+            generator.writeStartObject();
+            for (Notebook notebook : notebookList) {
+                generator.writeFieldName(notebook.toString());
+                generator.writeStartObject();
+                for (Chapter chapter : chapterService.findAllByNotebookId(notebook.getId())) {
+                    generator.writeFieldName(chapter.toString());
+                    generator.writeStartArray();
+                    boolean succeed;
+                    try {
+                        succeed = noteService.forEachByChapterId(chapter.getId(), note -> {
+                            try {
+                                JsonUtil.NOTE_WRITER.writeValue(generator, note);
+                            } catch (IOException e) {
+                                throw new UncheckedIOException(e);
+                            }
+                            indicator.setFraction((double) ++count[0] / total);
+                            indicator.setText2(note.getTitle());
+                        });
+                    } catch (UncheckedIOException e) {
+                        throw e.getCause();
+                    }
+                    if (!succeed) {
+                        throw new IOException("Failed to read notes of chapter: " + chapter.getTitle());
+                    }
+                    generator.writeEndArray();
+                }
+                generator.writeEndObject();
             }
-            map.put(notebook, noteMap);
-        }
-        //2. 把对象转成JSON字符串
-        try {
-            return new ObjectMapper().writerWithDefaultPrettyPrinter().writeValueAsString(map);
-        } catch (JsonProcessingException e) {
-            e.printStackTrace();
+            generator.writeEndObject();
         }
-        return "";
     }
 }
@@ -0,0 +1,194 @@
+package com.itcodebox.notebooks.utils;
+
+import com.intellij.openapi.progress.ProcessCanceledException;
+import com.intellij.openapi.progress.ProgressIndicator;
+import com.itcodebox.notebooks.constant.PluginConstant;
+import com.itcodebox.notebooks.entity.ImageRecord;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * 导出和导入时在几个后台线程中并行复制图片.
+ * <p>
+ * 创建后立即开始复制, 调用者可以同时导出JSON或者Markdown, 最后调用 await 等待复制完成.
+ * 目标文件已经存在, 并且大小和修改时间都和原图相同时跳过; 复制时保留原图的修改时间,
+ * 所以导出到同一个目录时, 没有变化的图片不会再次复制.
+ * 导入时计算哈希值并按内容保存(见 storeDirectory), 同时可以读取JSON和处理同名冲突.
+ *
+ * @author LeeWyatt
+ */
+public class ImageCopier {
+    private static final int MAX_THREADS = 4;
+    private static final long WAIT_MILLIS = 100;
+
+    private final ThreadPoolExecutor executor;
+    private final CountDownLatch latch;
+    private final int total;
+    /**
+     * 第一个复制失败的异常; 一个文件复制失败时其他文件继续复制
+     */
+    private final AtomicReference<IOException> failure = new AtomicReference<>();
+
+    /**
+     * 复制图片目录下的全部文件(包括缩略图和按内容保存图片时的分目录)
+     */
+    public static ImageCopier copyDirectory(Path originDir, Path destDir) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(originDir)) {
+            files = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+        }
+        ImageCopier copier = new ImageCopier(files.size());
+        for (Path file : files) {
+            copier.submit(file, destDir.resolve(originDir.relativize(file)));
+        }
+        return copier;
+    }
+
+    /**
+     * 按内容保存导入目录下的全部图片(不包括缩略图, 缩略图在导入结束后重新生成).
+     * 结果在 await 返回后才完整, 之后才能用来修改笔记中的图片路径
+     *
+     * @param imageDir   导入的图片目录
+     * @param imageNames 保存结果, key: 图片在导入目录下的路径, value: 图片在图片目录下的路径;
+     *                   在多个线程中写入, 需要是线程安全的Map. 保存失败的图片没有结果
+     */
+    public static ImageCopier storeDirectory(Path imageDir, Map<String, String> imageNames) throws IOException {
+        List<Path> files;
+        try (Stream<Path> stream = Files.walk(imageDir)) {
+            files = stream.filter(Files::isRegularFile)
+                    .filter(file -> !ImageStoreUtil.isThumbName(ImageStoreUtil.toImageName(imageDir, file)))
+                    .collect(Collectors.toList());
+        }
+        ImageCopier copier = new ImageCopier(files.size());
+        for (Path file : files) {
+            String imageName = ImageStoreUtil.toImageName(imageDir, file);
+            copier.submit(() -> imageNames.put(imageName, ImageStoreUtil.storeImported(imageName, file.toFile())));
+        }
+        return copier;
+    }
+
+    /**
+     * 复制笔记引用的图片, 多个笔记引用同一张图片时只复制一次.
+     * 注意: 导出图片时,无需导出缩略图, 因为这里是Markdown需要原图,无需缩略图
+     */
+    public static ImageCopier copyImages(List<ImageRecord> imageRecords, Path destDir) {
+        Set<String> imageNames = new LinkedHashSet<>();
+        for (ImageRecord imageRecord : imageRecords) {
+            if (imageRecord.getImagePath() != null) {
+                imageNames.add(imageRecord.getImagePath());
+            }
+        }
+        ImageCopier copier = new ImageCopier(imageNames.size());
+        for (String imageName : imageNames) {
+            copier.submit(PluginConstant.IMAGE_DIRECTORY_PATH.resolve(imageName), destDir.resolve(imageName));
+        }
+        return copier;
+    }
+
+    private ImageCopier(int total) {
+        this.total = total;
+        latch = new CountDownLatch(total);
+        //复制主要是等待磁盘, 线程数不按CPU核数计算
+        int threads = Math.max(1, Math.min(MAX_THREADS, total));
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Notebooks Image Copy " + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        //没有调用 await 时, 复制完成后线程也会退出
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    private void submit(Path from, Path to) {
+        submit(() -> copy(from, to));
+    }
+
+    private void submit(FileTask task) {
+        executor.execute(() -> {
+            try {
+                task.run();
+            } catch (IOException e) {
+                failure.compareAndSet(null, e);
+            } finally {
+                latch.countDown();
+            }
+        });
+    }
+
+    /**
+     * @return 是否复制了文件; 原图不存在或者目标文件没有变化时返回false
+     */
+    private static boolean copy(Path from, Path to) throws IOException {
+        if (!Files.isRegularFile(from)) {
+            return false;
+        }
+        if (Files.isRegularFile(to)) {
+            BasicFileAttributes fromAttributes = Files.readAttributes(from, BasicFileAttributes.class);
+            BasicFileAttributes toAttributes = Files.readAttributes(to, BasicFileAttributes.class);
+            if (fromAttributes.size() == toAttributes.size()
+                    && fromAttributes.lastModifiedTime().toMillis() == toAttributes.lastModifiedTime().toMillis()) {
+                return false;
+            }
+        }
+        Files.createDirectories(to.getParent());
+        Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.COPY_ATTRIBUTES);
+        return true;
+    }
+
+    /**
+     * 等待全部图片复制完成, 期间更新进度. 取消时不再复制还没有开始的图片
+     *
+     * @throws IOException 有图片复制失败时, 抛出第一个异常(其他图片已经复制完成)
+     */
+    public void await(ProgressIndicator indicator) throws IOException {
+        try {
+            while (!latch.await(WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                indicator.checkCanceled();
+                updateProgress(indicator);
+            }
+            updateProgress(indicator);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ProcessCanceledException();
+        } finally {
+            executor.shutdownNow();
+        }
+        IOException exception = failure.get();
+        if (exception != null) {
+            throw exception;
+        }
+    }
+
+    private void updateProgress(ProgressIndicator indicator) {
+        long finished = total - latch.getCount();
+        indicator.setFraction(total == 0 ? 1.0 : finished * 1.0 / total);
+        indicator.setText2(finished + " / " + total);
+    }
+
+    /**
+     * 一个文件的复制或者保存
+     */
+    @FunctionalInterface
+    private interface FileTask {
+        void run() throws IOException;
+    }
+}
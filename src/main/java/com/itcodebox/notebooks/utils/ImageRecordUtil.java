@@ -1,8 +1,6 @@
 package com.itcodebox.notebooks.utils;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.itcodebox.notebooks.entity.ImageRecord;
 
 import java.io.IOException;
@@ -21,7 +19,7 @@ public class ImageRecordUtil {
             return new ArrayList<ImageRecord>();
         }
         try {
-            return new ObjectMapper().readValue(imageRecords, new TypeReference<List<ImageRecord>>() {});
+            return JsonUtil.IMAGE_RECORDS_READER.readValue(imageRecords);
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -30,7 +28,7 @@ public class ImageRecordUtil {
 
     public static String convertToString(List<ImageRecord> list) {
         try {
-            return new ObjectMapper().writeValueAsString(list);
+            return JsonUtil.IMAGE_RECORDS_WRITER.writeValueAsString(list);
         } catch (JsonProcessingException e) {
             e.printStackTrace();
         }
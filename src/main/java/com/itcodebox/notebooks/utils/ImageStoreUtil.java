@@ -0,0 +1,176 @@
+package com.itcodebox.notebooks.utils;
+
+import com.itcodebox.notebooks.constant.PluginConstant;
+import com.itcodebox.notebooks.entity.ImageRecord;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * 按内容保存图片: 文件名为图片内容的SHA-256, 按前两位分目录, 如 ab/ab12...ef.png.
+ * 相同内容的图片只保存一份, 由多个笔记共同引用; 引用数从 note.image_records 统计, 见 NoteService.countImageReferences.
+ * <p>
+ * 以前用随机字符串命名的图片仍然保存在图片目录下, 路径不变.
+ *
+ * @author LeeWyatt
+ */
+public class ImageStoreUtil {
+    private static final Pattern STORED_NAME = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{64}\\.[a-z]+");
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 根据图片内容计算在图片目录下的路径
+     *
+     * @return 如 ab/ab12...ef.png
+     */
+    public static String nameOf(File imageFile) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e);
+        }
+        byte[] buffer = new byte[BUFFER_SIZE];
+        try (InputStream in = Files.newInputStream(imageFile.toPath())) {
+            int len;
+            while ((len = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, len);
+            }
+        }
+        byte[] hash = digest.digest();
+        StringBuilder builder = new StringBuilder(hash.length * 2 + 8);
+        for (byte b : hash) {
+            builder.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        String hex = builder.toString();
+        return hex.substring(0, 2) + "/" + hex + "." + StringUtil.getExtension(imageFile.getName());
+    }
+
+    /**
+     * 是否是按内容命名的图片路径
+     */
+    public static boolean isStoredName(String imageName) {
+        return imageName != null && STORED_NAME.matcher(imageName).matches();
+    }
+
+    public static boolean exists(String imageName) {
+        return Files.isRegularFile(PluginConstant.IMAGE_DIRECTORY_PATH.resolve(imageName));
+    }
+
+    /**
+     * 复用已经保存的图片: 图片存在时更新修改时间, 这样清理无用图片时不会删除刚被引用的旧图片
+     *
+     * @return 图片是否存在
+     */
+    public static boolean reuse(String imageName) {
+        Path path = PluginConstant.IMAGE_DIRECTORY_PATH.resolve(imageName);
+        if (!Files.isRegularFile(path)) {
+            return false;
+        }
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    /**
+     * 把图片保存到图片目录; 先复制成临时文件再重命名, 避免留下不完整的图片
+     */
+    public static void put(File imageFile, String imageName) throws IOException {
+        Path target = PluginConstant.IMAGE_DIRECTORY_PATH.resolve(imageName);
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), "import", ".tmp");
+        try {
+            Files.copy(imageFile.toPath(), temp, StandardCopyOption.REPLACE_EXISTING);
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+
+    /**
+     * 保存图片, 如果相同内容的图片已经存在, 那么不再复制
+     *
+     * @return 图片目录下的路径
+     */
+    public static String store(File imageFile) throws IOException {
+        String imageName = nameOf(imageFile);
+        if (!reuse(imageName)) {
+            put(imageFile, imageName);
+        }
+        return imageName;
+    }
+
+    /**
+     * 导入一张图片. 已经是按内容命名并且已经存在的图片, 不再计算哈希值和复制.
+     * 可以在多个线程中同时调用, 见 ImageCopier.storeDirectory
+     *
+     * @param imageName 图片在导入目录下的路径
+     * @param imageFile 导入的图片
+     * @return 图片在图片目录下的路径
+     */
+    public static String storeImported(String imageName, File imageFile) throws IOException {
+        if (isStoredName(imageName) && reuse(imageName)) {
+            return imageName;
+        }
+        String storedName = nameOf(imageFile);
+        if (reuse(storedName)) {
+            return storedName;
+        }
+        try {
+            put(imageFile, storedName);
+        } catch (IOException e) {
+            //导入目录中相同内容的图片可能在另一个线程中同时保存
+            if (!exists(storedName)) {
+                throw e;
+            }
+        }
+        return storedName;
+    }
+
+    /**
+     * 按导入时的路径对应关系, 修改 image_records 里的图片路径
+     *
+     * @return 修改后的 image_records; 没有需要修改的路径时原样返回
+     */
+    public static String remapImageRecords(String imageRecords, Map<String, String> imageNames) {
+        if (imageRecords == null || imageRecords.trim().isEmpty() || imageNames.isEmpty()) {
+            return imageRecords;
+        }
+        List<ImageRecord> records = ImageRecordUtil.convertToList(imageRecords);
+        boolean changed = false;
+        for (ImageRecord record : records) {
+            String imageName = imageNames.get(record.getImagePath());
+            if (imageName != null && !imageName.equals(record.getImagePath())) {
+                record.setImagePath(imageName);
+                changed = true;
+            }
+        }
+        return changed ? ImageRecordUtil.convertToString(records) : imageRecords;
+    }
+
+    /**
+     * 图片目录下的相对路径, 统一使用 / 分隔
+     */
+    public static String toImageName(Path imageDir, Path file) {
+        return imageDir.relativize(file).toString().replace(File.separatorChar, '/');
+    }
+
+    public static boolean isThumbName(String imageName) {
+        int index = imageName.lastIndexOf('.');
+        return index > 0 && imageName.substring(0, index).endsWith(PluginConstant.ThumbExtension);
+    }
+}
@@ -1,10 +1,12 @@
 package com.itcodebox.notebooks.utils;
 
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonToken;
 import com.intellij.openapi.application.Application;
 import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.progress.ProcessCanceledException;
 import com.intellij.openapi.progress.ProgressIndicator;
 import com.intellij.openapi.progress.ProgressManager;
 import com.intellij.openapi.progress.Task;
@@ -17,6 +19,7 @@ import com.itcodebox.notebooks.entity.Chapter;
 import com.itcodebox.notebooks.entity.Note;
 import com.itcodebox.notebooks.entity.Notebook;
 import com.itcodebox.notebooks.projectservice.RecordListener;
+import com.itcodebox.notebooks.service.ThumbnailService;
 import com.itcodebox.notebooks.service.impl.ChapterServiceImpl;
 import com.itcodebox.notebooks.service.impl.NoteServiceImpl;
 import com.itcodebox.notebooks.service.impl.NotebookServiceImpl;
@@ -30,14 +33,25 @@ import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.io.UncheckedIOException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static com.itcodebox.notebooks.utils.NotebooksBundle.message;
 
 /**
+ * 导入JSON文件. 文件的格式为 笔记本 -> (章节 -> 笔记列表), 见 ExportUtil.
+ * <p>
+ * 不把整个文件读入内存: 第一遍只读取笔记本, 用于在导入前处理同名冲突;
+ * 第二遍由后台线程逐条解析笔记, 每 NOTE_BATCH_SIZE 条放入一个有上限的队列,
+ * 当前线程在一个事务中逐批写入. 内存中最多只有 QUEUE_CAPACITY + 2 批笔记.
+ *
  * @author LeeWyatt
  */
 public class ImportUtil {
@@ -47,20 +61,27 @@ public class ImportUtil {
     private static final int CHOOSE_UPDATE = 2;
     private static final int CHOOSE_RENAME = 3;
 
+    private static final int NOTE_BATCH_SIZE = 100;
+    private static final int QUEUE_CAPACITY = 4;
+    private static final long POLL_TIMEOUT_MILLIS = 100;
+
     public static void importJsonFile(Project project, VirtualFile selectedFile) {
         ProgressManager.getInstance().run(new Task.Backgroundable(project, message("notify.import.backgroundTask.title"), true) {
             @Override
             public void run(@NotNull ProgressIndicator indicator) {
-                indicator.setText("Import images");
                 //第一步复制图片
                 String fileName = selectedFile.getName();
                 String imageDir = fileName.substring(0, fileName.lastIndexOf(".")) + ".assets";
                 //Path imageDirPath = selectedFile.getParent().toNioPath().resolve(imageDir);
 
                 Path imageDirPath =  Paths.get(selectedFile.getParent().getPath()).resolve(imageDir);
+                //在后台线程中按内容保存图片, 已经存在的相同图片不再复制; 缩略图在导入结束后重新生成.
+                //同时读取笔记本和处理同名冲突, 解析笔记之前等待图片保存完成
+                Map<String, String> imageNames = new ConcurrentHashMap<>();
+                ImageCopier imageStorer = null;
                 if (imageDirPath.toFile().exists()) {
                     try {
-                        CustomFileUtil.copyDirectory(imageDirPath.toFile(),PluginConstant.IMAGE_DIRECTORY_PATH.toFile());
+                        imageStorer = ImageCopier.storeDirectory(imageDirPath, imageNames);
                     } catch (IOException exception) {
                         exception.printStackTrace();
                     }
@@ -71,61 +92,86 @@ public class ImportUtil {
                 indicator.checkCanceled();
                 indicator.setFraction(0.0);
                 indicator.setIndeterminate(false);
-                // 解析JSON成为java对象
-                LinkedHashMap<Notebook, LinkedHashMap<Chapter, List<Note>>> notebookCollection = processJson(project, selectedFile);
-                if (notebookCollection == null) {
+                // 只读取笔记本, 跳过章节和笔记
+                File jsonFile = new File(selectedFile.getPath());
+                List<Notebook> notebooksInJson;
+                try {
+                    notebooksInJson = readNotebooks(jsonFile);
+                } catch (IOException exception) {
+                    showJsonErrorNotification(project, exception);
                     return;
                 }
-                Set<Map.Entry<Notebook, LinkedHashMap<Chapter, List<Note>>>> entries = notebookCollection.entrySet();
-                int size = entries.size();
-                if (size == 0) {
+                if (notebooksInJson.isEmpty()) {
                     return;
                 }
-                int index = 0;
+                // 1. 先处理同名冲突, 确定每个Notebook的导入方式. 需要询问用户, 所以不能放在事务里
+                // 和JSON中的笔记本一一对应, 跳过的笔记本为null
+                ImportItem[] importItems = new ImportItem[notebooksInJson.size()];
                 boolean doNotAsk = false;
                 int defaultChoose = Integer.MIN_VALUE;
                 NotebookServiceImpl notebookService = NotebookServiceImpl.getInstance();
-                for (Map.Entry<Notebook, LinkedHashMap<Chapter, List<Note>>> entry : entries) {
+                for (int i = 0; i < importItems.length; i++) {
                     indicator.checkCanceled();
-                    Notebook notebookInJson = entry.getKey();
+                    Notebook notebookInJson = notebooksInJson.get(i);
                     Notebook notebookInDb = notebookService.findByTitle(notebookInJson.getTitle());
+                    // 如果不存在,直接插入
+                    if (notebookInDb == null) {
+                        importItems[i] = new ImportItem(null, CHOOSE_CLOSE);
+                        continue;
+                    }
                     // 如果存在,进行同名处理
-                    if (notebookInDb != null) {
-                        indicator.setText("Import " + notebookInDb.getTitle());
-                        if (doNotAsk) {
-                            if (nameConflictHandler(indicator, entry, notebookInDb, defaultChoose)) {
-                                continue;
-                            }
+                    int choose = defaultChoose;
+                    if (!doNotAsk) {
+                        AtomicReference<UserChoose> chooseAtomicReference = new AtomicReference<>();
+                        Application application = ApplicationManager.getApplication();
+                        if (application.isDispatchThread()) {
+                            chooseAtomicReference.set(nameConflictDialog(notebookInJson.getTitle()));
                         } else {
-                            AtomicReference<UserChoose> chooseAtomicReference = new AtomicReference<>();
-                            Application application = ApplicationManager.getApplication();
-                            if (application.isDispatchThread()) {
-                                chooseAtomicReference.set(nameConflictDialog(notebookInJson.getTitle()));
-                            } else {
-                                application.invokeAndWait(() -> chooseAtomicReference.set(nameConflictDialog(notebookInJson.getTitle())));
-                            }
-                            UserChoose userChoose = chooseAtomicReference.get();
-                            if (userChoose.getExitCode() == CHOOSE_CLOSE) {
-                                //终止, 算成功还是失败
-                                NotifyUtil.showInfoNotification(project, PluginConstant.NOTIFICATION_ID_IMPORT_EXPORT, message("notify.import.close.title"), message("notify.import.close.message"));
-                                break;
-                            }
-
-                            if (userChoose.isDoNotAsk()) {
-                                doNotAsk = true;
-                                defaultChoose = userChoose.getExitCode();
-                            }
-                            if (nameConflictHandler(indicator, entry, notebookInDb, userChoose.getExitCode())) {
-                                continue;
-                            }
+                            application.invokeAndWait(() -> chooseAtomicReference.set(nameConflictDialog(notebookInJson.getTitle())));
+                        }
+                        UserChoose userChoose = chooseAtomicReference.get();
+                        if (userChoose.getExitCode() == CHOOSE_CLOSE) {
+                            //终止, 算成功还是失败
+                            NotifyUtil.showInfoNotification(project, PluginConstant.NOTIFICATION_ID_IMPORT_EXPORT, message("notify.import.close.title"), message("notify.import.close.message"));
+                            break;
                         }
+                        if (userChoose.isDoNotAsk()) {
+                            doNotAsk = true;
+                            defaultChoose = userChoose.getExitCode();
+                        }
+                        choose = userChoose.getExitCode();
+                    }
+                    if (choose != CHOOSE_SKIP) {
+                        importItems[i] = new ImportItem(notebookInDb, choose);
+                    }
+                }
 
-                    } else {
-                        indicator.setText("Import " + entry.getKey().getTitle());
-                        addNotebookFromJson(indicator, entry);
+                // 2. 等待图片保存完成, 笔记中的图片路径要换成保存后的路径; 个别图片保存失败时, 仍然导入笔记
+                if (imageStorer != null) {
+                    indicator.setText("Import images");
+                    try {
+                        imageStorer.await(indicator);
+                    } catch (IOException exception) {
+                        exception.printStackTrace();
                     }
-                    double fraction = (++index) * 1.0 / size;
-                    indicator.setFraction(fraction);
+                    indicator.setText2("");
+                    indicator.setFraction(0.0);
+                }
+
+                // 3. 后台线程解析笔记, 当前线程在一个事务中写入, 只提交一次; 出错或者取消时全部回滚
+                ImportQueue queue = new ImportQueue();
+                ApplicationManager.getApplication().executeOnPooledThread(() -> readNotes(jsonFile, importItems, imageNames, queue));
+                try {
+                    ImportWriter writer = new ImportWriter(indicator, jsonFile.length());
+                    notebookService.inTransaction(conn -> {
+                        writer.writeAll(queue);
+                        return null;
+                    });
+                } catch (UncheckedIOException exception) {
+                    showJsonErrorNotification(project, exception.getCause());
+                    return;
+                } finally {
+                    queue.close();
                 }
                 NotifyUtil.showInfoNotification(project, PluginConstant.NOTIFICATION_ID_IMPORT_EXPORT, message("notify.import.success.title"), message("notify.import.success.message"));
 
@@ -142,6 +188,8 @@ public class ImportUtil {
                         .onRefresh();
                 //解除只读模式
                 publishReadOnlyMode(project, false);
+                //为导入的图片生成缩略图
+                ThumbnailService.getInstance().rebuildThumbnails(project);
             }
 
             @Override
@@ -161,172 +209,105 @@ public class ImportUtil {
     }
 
     /**
-     * 解析JSON数据为Java数据
-     *
-     * @param project      当前工程
-     * @param selectedFile 选择的文件
-     * @return java数据
+     * JSON格式错误或者读取文件失败时通知用户
      */
-    @Nullable
-    private static LinkedHashMap<Notebook, LinkedHashMap<Chapter, List<Note>>> processJson(Project project, VirtualFile selectedFile) {
-        LinkedHashMap<Notebook, LinkedHashMap<Chapter, List<Note>>> notebooksCollection = null;
-        try {
-            notebooksCollection = new ObjectMapper().readValue(new File(selectedFile.getPath()), new TypeReference<LinkedHashMap<Notebook, LinkedHashMap<Chapter, List<Note>>>>() {
-            });
-        } catch (JsonProcessingException e) {
+    private static void showJsonErrorNotification(Project project, IOException exception) {
+        if (exception instanceof JsonProcessingException) {
             StringWriter sw = new StringWriter();
             PrintWriter pw = new PrintWriter(sw);
-            e.printStackTrace(pw);
+            exception.printStackTrace(pw);
             String msg = sw.toString();
             NotifyUtil.showImportErrorNotification(project, PluginConstant.NOTIFICATION_ID_IMPORT_EXPORT,
                     message("notify.import.jsonException.title"),
                     message("notify.import.jsonException.message"),
-                    e.getMessage() + System.lineSeparator() + msg);
-        } catch (IOException exception) {
+                    exception.getMessage() + System.lineSeparator() + msg);
+        } else {
             NotifyUtil.showErrorNotification(project, PluginConstant.NOTIFICATION_ID_IMPORT_EXPORT,
                     message("notify.import.jsonIOException.title"), message("notify.import.jsonIOException.message"), exception.getMessage());
         }
-        return notebooksCollection;
-    }
-
-    /**
-     * 当Notebook出现同名时, 根据选择进行分支处理
-     *
-     * @param indicator    指示器, 可以用于随时监测用户是否点击了取消.好立刻停止.也可以用于进度的更新
-     * @param entry        数据
-     * @param notebookInDb 在数据库里已经存在的Notebook
-     * @param userChoose   用户选择的处理方式
-     * @return boolean 主要用于for循环监测是否需要放弃本次循环,进入下次循环. 如果为true,那么for循环continue
-     */
-    private static boolean nameConflictHandler(ProgressIndicator indicator, Map.Entry<Notebook, LinkedHashMap<Chapter, List<Note>>> entry, Notebook notebookInDb, int userChoose) {
-        indicator.checkCanceled();
-        if (userChoose == CHOOSE_OVERWRITE) {
-            //第一步,删除旧的
-            NotebookServiceImpl.getInstance().delete(notebookInDb.getId());
-            //第二步,插入新的
-            addNotebookFromJson(indicator, entry);
-        } else if (userChoose == CHOOSE_SKIP) {
-            //跳过
-            return true;
-        } else if (userChoose == CHOOSE_UPDATE) {
-            indicator.setText("Update " + notebookInDb.getTitle());
-            updateNotesFromJson(indicator, notebookInDb, entry);
-        } else if (userChoose == CHOOSE_RENAME) {
-            Random random = new Random();
-            String newTitle = notebookInDb.getTitle() + "_" + System.currentTimeMillis() + (random.nextInt(900) + 100);
-            indicator.setText("Import " + newTitle);
-            entry.getKey().setTitle(newTitle);
-            addNotebookFromJson(indicator, entry);
-        }
-        return false;
     }
 
     /**
-     * 当数据库里不存在 同名的Notebook时 ,直接插入数据,无需提示用户选择
+     * 只读取JSON中的笔记本, 跳过章节和笔记. 同时也检查了整个文件的JSON语法
      *
-     * @param indicator 指示器
-     * @param entry     数据
+     * @param jsonFile 导入的文件
+     * @return 按文件中顺序排列的笔记本
      */
-    private static void addNotebookFromJson(ProgressIndicator indicator, Map.Entry<Notebook, LinkedHashMap<Chapter, List<Note>>> entry) {
-        //如果不存在, 那么插入数据即可
-        indicator.checkCanceled();
-        Notebook notebookInDb = NotebookServiceImpl.getInstance().insert(entry.getKey());
-        LinkedHashMap<Chapter, List<Note>> hashMap = entry.getValue();
-        Set<Map.Entry<Chapter, List<Note>>> chapterListEntries = hashMap.entrySet();
-        for (Map.Entry<Chapter, List<Note>> chapterListEntry : chapterListEntries) {
-            indicator.checkCanceled();
-            Chapter tempChapter = chapterListEntry.getKey();
-            tempChapter.setNotebookId(notebookInDb.getId());
-            Chapter chapter = ChapterServiceImpl.getInstance().insert(tempChapter);
-            addNotesFromJson(indicator, notebookInDb, chapterListEntry, chapter);
+    private static List<Notebook> readNotebooks(File jsonFile) throws IOException {
+        List<Notebook> notebooks = new ArrayList<>();
+        try (JsonParser parser = JsonUtil.createParser(jsonFile)) {
+            nextToken(parser, JsonToken.START_OBJECT);
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                notebooks.add(new Notebook(parser.getCurrentName()));
+                nextToken(parser, JsonToken.START_OBJECT);
+                parser.skipChildren();
+            }
         }
+        return notebooks;
     }
 
     /**
-     * 当数据库里存在同名的Notebook时. 用户选择了更新, 那么如果数据库里同名的章节存在同名的Note时,默认保留为修改时间最近的Note
+     * 在后台线程中逐条解析需要导入的笔记, 分批放入队列. 结束时放入 ImportBatch.END, 出错时放入错误
      *
-     * @param indicator    指示器
-     * @param notebookInDb 数据库里的Notebook
-     * @param entry        数据
+     * @param importItems 和JSON中的笔记本一一对应, 为null的笔记本跳过
+     * @param imageNames  导入的图片路径 -> 图片目录下的路径
      */
-    private static void updateNotesFromJson(ProgressIndicator indicator, Notebook notebookInDb, Map.Entry<Notebook, LinkedHashMap<Chapter, List<Note>>> entry) {
-        ChapterServiceImpl chapterService = ChapterServiceImpl.getInstance();
-        NoteServiceImpl noteService = NoteServiceImpl.getInstance();
-        LinkedHashMap<Chapter, List<Note>> hashMap = entry.getValue();
-        Set<Map.Entry<Chapter, List<Note>>> chapterListEntries = hashMap.entrySet();
-        for (Map.Entry<Chapter, List<Note>> chapterListEntry : chapterListEntries) {
-            Chapter chapterInJson = chapterListEntry.getKey();
-            Chapter chapterInDb = chapterService.findByTitle(chapterInJson.getTitle(), notebookInDb.getId());
-
-            List<Note> updateNoteList = new ArrayList<>();
-
-            //如果数据库不存在该章节, 那么全部Note都插入
-            if (chapterInDb == null) {
-                chapterInDb = chapterService.insert(chapterInJson);
-                chapterInDb.setNotebookId(notebookInDb.getId());
-                addNotesFromJson(indicator, notebookInDb, chapterListEntry, chapterInDb);
-            } else {
-                //如果数据库存在同名章节, 那么保存时间最新的
-                List<Note> noteList = chapterListEntry.getValue();
-                List<Note> insertNewNoteList = new ArrayList<>();
-                for (Note note : noteList) {
-                    indicator.checkCanceled();
-                    Note noteInDb = noteService.findByTitle(note.getTitle(), chapterInDb.getId());
-                    // 如果数据库里存在同名的, 那么判断时间,是否要更新
-                    if (noteInDb != null) {
-                        if (note.getUpdateTime() > noteInDb.getUpdateTime()){
-                            // 不需要更新showOrder; notebookId; chapterId; id; title
-                            noteInDb.setContent(note.getContent());
-                            noteInDb.setSource(note.getSource());
-                            noteInDb.setDescription(note.getDescription());
-                            noteInDb.setType(note.getType());
-                            noteInDb.setCreateTime(note.getCreateTime());
-                            noteInDb.setUpdateTime(note.getUpdateTime());
-                            updateNoteList.add(noteInDb);
+    private static void readNotes(File jsonFile, ImportItem[] importItems, Map<String, String> imageNames, ImportQueue queue) {
+        try (JsonParser parser = JsonUtil.createParser(jsonFile)) {
+            nextToken(parser, JsonToken.START_OBJECT);
+            for (int i = 0; parser.nextToken() == JsonToken.FIELD_NAME; i++) {
+                Notebook notebook = new Notebook(parser.getCurrentName());
+                nextToken(parser, JsonToken.START_OBJECT);
+                if (i >= importItems.length || importItems[i] == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                if (!queue.put(new ImportBatch(importItems[i], notebook, null, Collections.emptyList(), getOffset(parser)))) {
+                    return;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    Chapter chapter = new Chapter(parser.getCurrentName());
+                    nextToken(parser, JsonToken.START_ARRAY);
+                    // 章节只放在第一批中
+                    Chapter chapterOfBatch = chapter;
+                    List<Note> notes = new ArrayList<>();
+                    while (parser.nextToken() == JsonToken.START_OBJECT) {
+                        Note note = JsonUtil.NOTE_READER.readValue(parser);
+                        //图片路径换成图片目录下的路径
+                        note.setImageRecords(ImageStoreUtil.remapImageRecords(note.getImageRecords(), imageNames));
+                        notes.add(note);
+                        if (notes.size() == NOTE_BATCH_SIZE) {
+                            if (!queue.put(new ImportBatch(null, null, chapterOfBatch, notes, getOffset(parser)))) {
+                                return;
+                            }
+                            chapterOfBatch = null;
+                            notes = new ArrayList<>();
                         }
-                        //如果数据库里不存在同名的,那么插入
-                    } else {
-                        // 如果数据库不存在同名的. 或者json的Note时间比较新
-                        note.setNotebookId(notebookInDb.getId());
-                        note.setChapterId(chapterInDb.getId());
-                        insertNewNoteList.add(note);
+                    }
+                    if (parser.currentToken() != JsonToken.END_ARRAY) {
+                        throw new JsonParseException(parser, "Expected a note object, but was " + parser.currentToken());
+                    }
+                    if ((chapterOfBatch != null || !notes.isEmpty())
+                            && !queue.put(new ImportBatch(null, null, chapterOfBatch, notes, getOffset(parser)))) {
+                        return;
                     }
                 }
-                indicator.checkCanceled();
-                //先更新
-                Note[] updateNotes = new Note[updateNoteList.size()];
-                noteService.update(updateNoteList.toArray(updateNotes));
-
-                //在添加新的
-                Note[] newNotes = new Note[insertNewNoteList.size()];
-                noteService.insert(insertNewNoteList.toArray(newNotes));
             }
+            queue.put(ImportBatch.END);
+        } catch (Throwable e) {
+            queue.put(new ImportBatch(e));
         }
     }
 
-    /**
-     * 当无需判断,全部插入Notes
-     *
-     * @param indicator        指示器
-     * @param notebookInDb     数据库里的Notebook
-     * @param chapterListEntry 章节包含的Note数据
-     * @param chapterInDb      章节数据
-     */
-    private static void addNotesFromJson(ProgressIndicator indicator, Notebook notebookInDb, Map.Entry<Chapter, List<Note>> chapterListEntry, Chapter chapterInDb) {
-        List<Note> noteList = chapterListEntry.getValue();
-        Note[] notes = new Note[noteList.size()];
-        for (Note note : noteList) {
-            note.setNotebookId(notebookInDb.getId());
-            note.setChapterId(chapterInDb.getId());
-        }
-        for (int j = 0; j < noteList.size(); j++) {
-            Note note = noteList.get(j);
-            note.setNotebookId(notebookInDb.getId());
-            note.setChapterId(chapterInDb.getId());
-            notes[j] = note;
+    private static void nextToken(JsonParser parser, JsonToken expected) throws IOException {
+        JsonToken token = parser.nextToken();
+        if (token != expected) {
+            throw new JsonParseException(parser, "Expected " + expected + ", but was " + token);
         }
-        indicator.checkCanceled();
-        NoteServiceImpl.getInstance().insert(notes);
+    }
+
+    private static long getOffset(JsonParser parser) {
+        return parser.getCurrentLocation().getByteOffset();
     }
 
     /**
@@ -369,6 +350,273 @@ public class ImportUtil {
         return userChoose;
     }
 
+    /**
+     * 一个需要导入的Notebook, 以及同名时的处理方式
+     */
+    private static class ImportItem {
+        /**
+         * 数据库里的同名Notebook, 不存在同名时为null
+         */
+        private final Notebook notebookInDb;
+        private final int choose;
+
+        private ImportItem(Notebook notebookInDb, int choose) {
+            this.notebookInDb = notebookInDb;
+            this.choose = choose;
+        }
+    }
+
+    /**
+     * 解析线程交给写入线程的一批数据. 一个笔记本先有一个只包含笔记本的批次, 然后是各个章节的笔记;
+     * 一个章节的笔记可能分成多批, 章节只放在第一批中
+     */
+    private static class ImportBatch {
+        private static final ImportBatch END = new ImportBatch(null, null, null, Collections.emptyList(), 0);
+
+        private final ImportItem item;
+        private final Notebook notebook;
+        private final Chapter chapter;
+        private final List<Note> notes;
+        /**
+         * 已经解析到的文件位置, 用于显示进度
+         */
+        private final long offset;
+        private final Throwable error;
+
+        private ImportBatch(ImportItem item, Notebook notebook, Chapter chapter, List<Note> notes, long offset) {
+            this.item = item;
+            this.notebook = notebook;
+            this.chapter = chapter;
+            this.notes = notes;
+            this.offset = offset;
+            this.error = null;
+        }
+
+        private ImportBatch(Throwable error) {
+            this.item = null;
+            this.notebook = null;
+            this.chapter = null;
+            this.notes = Collections.emptyList();
+            this.offset = 0;
+            this.error = error;
+        }
+    }
+
+    /**
+     * 解析线程和写入线程之间有上限的队列. 写入结束(包括取消和出错)后关闭, 解析线程随后停止
+     */
+    private static class ImportQueue {
+        private final BlockingQueue<ImportBatch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private volatile boolean closed;
+
+        /**
+         * 队列满时等待, 直到有空位或者队列关闭
+         *
+         * @return 队列已关闭时返回false
+         */
+        private boolean put(ImportBatch batch) {
+            try {
+                while (!closed) {
+                    if (queue.offer(batch, POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return true;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return false;
+        }
+
+        /**
+         * 等待下一批数据, 等待期间也会检查是否取消
+         */
+        private ImportBatch take(ProgressIndicator indicator) {
+            try {
+                while (true) {
+                    indicator.checkCanceled();
+                    ImportBatch batch = queue.poll(POLL_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+                    if (batch != null) {
+                        return batch;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ProcessCanceledException();
+            }
+        }
+
+        private void close() {
+            closed = true;
+            queue.clear();
+        }
+    }
+
+    /**
+     * 在事务中逐批写入, 保存当前写入的笔记本和章节
+     */
+    private static class ImportWriter {
+        private final ProgressIndicator indicator;
+        private final long fileLength;
+        private final NotebookServiceImpl notebookService = NotebookServiceImpl.getInstance();
+        private final ChapterServiceImpl chapterService = ChapterServiceImpl.getInstance();
+        private final NoteServiceImpl noteService = NoteServiceImpl.getInstance();
+
+        private Notebook notebookInDb;
+        /**
+         * 用户对同名笔记本选择了更新
+         */
+        private boolean update;
+        private Chapter chapterInDb;
+        /**
+         * 数据库中已经存在同名章节, 笔记需要和已有的笔记合并
+         */
+        private boolean merge;
+
+        private ImportWriter(ProgressIndicator indicator, long fileLength) {
+            this.indicator = indicator;
+            this.fileLength = Math.max(fileLength, 1);
+        }
+
+        private void writeAll(ImportQueue queue) {
+            while (true) {
+                ImportBatch batch = queue.take(indicator);
+                if (batch == ImportBatch.END) {
+                    return;
+                }
+                if (batch.error != null) {
+                    rethrow(batch.error);
+                }
+                if (batch.notebook != null) {
+                    startNotebook(batch.notebook, batch.item);
+                    chapterInDb = null;
+                }
+                // 笔记本导入失败或者无需导入时, 跳过它的章节和笔记
+                if (notebookInDb == null) {
+                    continue;
+                }
+                if (batch.chapter != null) {
+                    startChapter(batch.chapter);
+                }
+                if (chapterInDb != null && !batch.notes.isEmpty()) {
+                    if (merge) {
+                        mergeNotes(batch.notes);
+                    } else {
+                        addNotes(batch.notes);
+                    }
+                }
+                indicator.setFraction(Math.min(1.0, batch.offset * 1.0 / fileLength));
+            }
+        }
+
+        /**
+         * 插入笔记本, 当出现同名时, 根据选择进行分支处理 (选择跳过的Notebook不会进入这里)
+         */
+        private void startNotebook(Notebook notebookInJson, ImportItem item) {
+            indicator.checkCanceled();
+            update = false;
+            Notebook notebook = item.notebookInDb;
+            if (notebook == null) {
+                //如果不存在, 那么插入数据即可
+                indicator.setText("Import " + notebookInJson.getTitle());
+                notebookInDb = notebookService.insert(notebookInJson);
+            } else if (item.choose == CHOOSE_OVERWRITE) {
+                indicator.setText("Import " + notebook.getTitle());
+                //第一步,删除旧的
+                notebookService.delete(notebook.getId());
+                //第二步,插入新的
+                notebookInDb = notebookService.insert(notebookInJson);
+            } else if (item.choose == CHOOSE_UPDATE) {
+                indicator.setText("Update " + notebook.getTitle());
+                notebookInDb = notebook;
+                update = true;
+            } else if (item.choose == CHOOSE_RENAME) {
+                Random random = new Random();
+                String newTitle = notebook.getTitle() + "_" + System.currentTimeMillis() + (random.nextInt(900) + 100);
+                indicator.setText("Import " + newTitle);
+                notebookInJson.setTitle(newTitle);
+                notebookInDb = notebookService.insert(notebookInJson);
+            } else {
+                notebookInDb = null;
+            }
+        }
+
+        /**
+         * 插入章节. 用户选择了更新时, 如果数据库里存在同名章节, 那么使用已有的章节
+         */
+        private void startChapter(Chapter chapterInJson) {
+            indicator.checkCanceled();
+            chapterInDb = update ? chapterService.findByTitle(chapterInJson.getTitle(), notebookInDb.getId()) : null;
+            merge = chapterInDb != null;
+            if (chapterInDb == null) {
+                chapterInJson.setNotebookId(notebookInDb.getId());
+                chapterInDb = chapterService.insert(chapterInJson);
+            }
+        }
+
+        /**
+         * 无需判断,全部插入Notes
+         */
+        private void addNotes(List<Note> noteList) {
+            for (Note note : noteList) {
+                note.setNotebookId(notebookInDb.getId());
+                note.setChapterId(chapterInDb.getId());
+            }
+            indicator.checkCanceled();
+            noteService.insert(noteList.toArray(new Note[0]));
+        }
+
+        /**
+         * 同名章节存在同名的Note时, 保留修改时间最近的Note
+         */
+        private void mergeNotes(List<Note> noteList) {
+            List<Note> updateNoteList = new ArrayList<>();
+            List<Note> insertNewNoteList = new ArrayList<>();
+            for (Note note : noteList) {
+                indicator.checkCanceled();
+                Note noteInDb = noteService.findByTitle(note.getTitle(), chapterInDb.getId());
+                // 如果数据库里存在同名的, 那么判断时间,是否要更新
+                if (noteInDb != null) {
+                    if (note.getUpdateTime() > noteInDb.getUpdateTime()) {
+                        // 不需要更新showOrder; notebookId; chapterId; id; title
+                        noteInDb.setContent(note.getContent());
+                        noteInDb.setSource(note.getSource());
+                        noteInDb.setDescription(note.getDescription());
+                        noteInDb.setType(note.getType());
+                        noteInDb.setCreateTime(note.getCreateTime());
+                        noteInDb.setUpdateTime(note.getUpdateTime());
+                        updateNoteList.add(noteInDb);
+                    }
+                    //如果数据库里不存在同名的,那么插入
+                } else {
+                    note.setNotebookId(notebookInDb.getId());
+                    note.setChapterId(chapterInDb.getId());
+                    insertNewNoteList.add(note);
+                }
+            }
+            indicator.checkCanceled();
+            //先更新
+            noteService.update(updateNoteList.toArray(new Note[0]));
+            //在添加新的
+            noteService.insert(insertNewNoteList.toArray(new Note[0]));
+        }
+
+        /**
+         * 解析线程中的错误在写入线程中重新抛出, 使事务回滚
+         */
+        private static void rethrow(Throwable error) {
+            if (error instanceof IOException) {
+                throw new UncheckedIOException((IOException) error);
+            }
+            if (error instanceof RuntimeException) {
+                throw (RuntimeException) error;
+            }
+            if (error instanceof Error) {
+                throw (Error) error;
+            }
+            throw new IllegalStateException(error);
+        }
+    }
+
     private static class UserChoose {
         private boolean doNotAsk;
         private int exitCode;
@@ -0,0 +1,71 @@
+package com.itcodebox.notebooks.utils;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.itcodebox.notebooks.entity.Chapter;
+import com.itcodebox.notebooks.entity.ImageRecord;
+import com.itcodebox.notebooks.entity.Note;
+import com.itcodebox.notebooks.entity.Notebook;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * 插件中所有JSON类型共用的 ObjectReader / ObjectWriter.
+ * <p>
+ * 每次 new ObjectMapper() 都要重新通过反射创建序列化器和反序列化器, 比解析一条 image_records 本身还慢.
+ * ObjectReader / ObjectWriter 是不可变的, 可以在多个线程中共用; 按具体类型创建时会立即创建好根类型的
+ * (反)序列化器, 所以类加载后第一次使用也不需要再创建.
+ *
+ * @author LeeWyatt
+ */
+public class JsonUtil {
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    public static final ObjectReader IMAGE_RECORDS_READER = MAPPER.readerFor(new TypeReference<List<ImageRecord>>() {
+    });
+    public static final ObjectWriter IMAGE_RECORDS_WRITER = MAPPER.writerFor(new TypeReference<List<ImageRecord>>() {
+    });
+
+    public static final ObjectReader NOTEBOOK_READER = MAPPER.readerFor(Notebook.class);
+    public static final ObjectWriter NOTEBOOK_WRITER = MAPPER.writerFor(Notebook.class);
+
+    public static final ObjectReader CHAPTER_READER = MAPPER.readerFor(Chapter.class);
+    public static final ObjectWriter CHAPTER_WRITER = MAPPER.writerFor(Chapter.class);
+
+    /**
+     * 导入时逐条读取笔记
+     */
+    public static final ObjectReader NOTE_READER = MAPPER.readerFor(Note.class);
+
+    /**
+     * 导出时逐条写入笔记: 使用 JsonGenerator 的缩进格式, 也不在每条笔记后 flush
+     */
+    public static final ObjectWriter NOTE_WRITER = MAPPER.writerFor(Note.class)
+            .without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+
+    private JsonUtil() {
+    }
+
+    /**
+     * 创建写入导出文件的 JsonGenerator, 缩进格式和 writerWithDefaultPrettyPrinter 相同
+     */
+    public static JsonGenerator createGenerator(OutputStream out) throws IOException {
+        return MAPPER.getFactory().createGenerator(out, JsonEncoding.UTF8).useDefaultPrettyPrinter();
+    }
+
+    /**
+     * 创建读取导入文件的 JsonParser
+     */
+    public static JsonParser createParser(File file) throws IOException {
+        return MAPPER.getFactory().createParser(file);
+    }
+}
@@ -0,0 +1,155 @@
+package com.itcodebox.notebooks.utils;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 用 Aho-Corasick 自动机一次扫描找出文字中所有关键字的位置(忽略大小写), 用于搜索结果的高亮.
+ * <p>
+ * 关键字之间重叠或者相连的位置合并成一段, 结果保存在 int 数组中: [开始0, 结束0, 开始1, 结束1, ...].
+ * 创建后不可变, 可以在多个线程中使用.
+ *
+ * @author LeeWyatt
+ */
+public class KeywordMatcher {
+    public static final int[] NO_MATCHES = new int[0];
+
+    /**
+     * 每个状态的子节点: 按字符排序, 查找时二分, 避免装箱
+     */
+    private final char[][] childChars;
+    private final int[][] childStates;
+    private final int[] fail;
+    /**
+     * 在这个状态结束的最长关键字的长度(包括通过 fail 链接到达的), 0表示没有
+     */
+    private final int[] matchLength;
+
+    /**
+     * @param keywords 关键字, 可以为null
+     */
+    public KeywordMatcher(String[] keywords) {
+        List<TreeMap<Character, Integer>> trie = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        trie.add(new TreeMap<>());
+        lengths.add(0);
+        if (keywords != null) {
+            for (String keyword : keywords) {
+                if (keyword == null || keyword.isEmpty()) {
+                    continue;
+                }
+                int state = 0;
+                for (int i = 0; i < keyword.length(); i++) {
+                    char c = normalize(keyword.charAt(i));
+                    Integer next = trie.get(state).get(c);
+                    if (next == null) {
+                        next = trie.size();
+                        trie.add(new TreeMap<>());
+                        lengths.add(0);
+                        trie.get(state).put(c, next);
+                    }
+                    state = next;
+                }
+                lengths.set(state, Math.max(lengths.get(state), keyword.length()));
+            }
+        }
+        int size = trie.size();
+        childChars = new char[size][];
+        childStates = new int[size][];
+        fail = new int[size];
+        matchLength = new int[size];
+        for (int state = 0; state < size; state++) {
+            Map<Character, Integer> children = trie.get(state);
+            childChars[state] = new char[children.size()];
+            childStates[state] = new int[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> entry : children.entrySet()) {
+                childChars[state][i] = entry.getKey();
+                childStates[state][i] = entry.getValue();
+                i++;
+            }
+            matchLength[state] = lengths.get(state);
+        }
+        //按层次计算 fail 链接
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int child : childStates[0]) {
+            queue.add(child);
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            for (int i = 0; i < childChars[state].length; i++) {
+                char c = childChars[state][i];
+                int child = childStates[state][i];
+                int f = fail[state];
+                while (f != 0 && next(f, c) == -1) {
+                    f = fail[f];
+                }
+                int target = next(f, c);
+                fail[child] = target == -1 || target == child ? 0 : target;
+                matchLength[child] = Math.max(matchLength[child], matchLength[fail[child]]);
+                queue.add(child);
+            }
+        }
+    }
+
+    /**
+     * @return 没有关键字时返回 true
+     */
+    public boolean isEmpty() {
+        return childChars[0].length == 0;
+    }
+
+    /**
+     * @param text 文字, 可以为null
+     * @return 匹配的位置 [开始0, 结束0, 开始1, 结束1, ...], 按位置排列且不重叠; 没有匹配时返回 NO_MATCHES
+     */
+    public int[] findRanges(String text) {
+        if (text == null || isEmpty()) {
+            return NO_MATCHES;
+        }
+        int[] ranges = NO_MATCHES;
+        int count = 0;
+        int state = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = normalize(text.charAt(i));
+            int next = next(state, c);
+            while (next == -1 && state != 0) {
+                state = fail[state];
+                next = next(state, c);
+            }
+            state = next == -1 ? 0 : next;
+            int length = matchLength[state];
+            if (length == 0) {
+                continue;
+            }
+            int start = i + 1 - length;
+            //和前面的段重叠或者相连时合并; 较长的关键字可能覆盖前面的好几段
+            while (count > 0 && start <= ranges[count - 1]) {
+                start = Math.min(start, ranges[count - 2]);
+                count -= 2;
+            }
+            if (count == ranges.length) {
+                ranges = Arrays.copyOf(ranges, Math.max(8, count * 2));
+            }
+            ranges[count++] = start;
+            ranges[count++] = i + 1;
+        }
+        return count == 0 ? NO_MATCHES : count == ranges.length ? ranges : Arrays.copyOf(ranges, count);
+    }
+
+    private int next(int state, char c) {
+        int index = Arrays.binarySearch(childChars[state], c);
+        return index < 0 ? -1 : childStates[state][index];
+    }
+
+    /**
+     * 和 String.regionMatches(true, ...) 相同的忽略大小写方式
+     */
+    private static char normalize(char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+}
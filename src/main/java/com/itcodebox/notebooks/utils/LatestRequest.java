@@ -0,0 +1,63 @@
+package com.itcodebox.notebooks.utils;
+
+import com.intellij.openapi.application.ApplicationManager;
+import com.intellij.openapi.application.ModalityState;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+
+/**
+ * 只保留最新的一次异步请求: 提交新请求时取消旧请求, 旧请求的结果即使已经返回也会被丢弃.
+ * 结果通过 invokeLater 在EDT上处理; 如果提交时结果已经就绪(例如命中缓存), 直接在当前线程处理.
+ * <p>
+ * 只能在EDT上调用.
+ *
+ * @author LeeWyatt
+ */
+public class LatestRequest {
+    private CompletableFuture<?> current;
+
+    /**
+     * @param future   后台任务
+     * @param consumer 在EDT上处理结果
+     * @return 结果是否已经同步处理
+     */
+    public <T> boolean submit(CompletableFuture<T> future, Consumer<T> consumer) {
+        cancel();
+        if (future.isDone() && !future.isCompletedExceptionally()) {
+            consumer.accept(future.join());
+            return true;
+        }
+        current = future;
+        //提交时的模态状态, 这样在模态对话框里发起的请求也能及时处理
+        ModalityState modalityState = ModalityState.current();
+        future.whenComplete((result, throwable) -> ApplicationManager.getApplication().invokeLater(() -> {
+            if (current != future) {
+                return;
+            }
+            current = null;
+            if (throwable == null) {
+                consumer.accept(result);
+            } else if (!(throwable instanceof CancellationException || throwable.getCause() instanceof CancellationException)) {
+                (throwable instanceof CompletionException && throwable.getCause() != null ? throwable.getCause() : throwable).printStackTrace();
+            }
+        }, modalityState));
+        return false;
+    }
+
+    /**
+     * 是否有还没有返回的请求
+     */
+    public boolean isPending() {
+        return current != null;
+    }
+
+    public void cancel() {
+        if (current != null) {
+            current.cancel(false);
+            current = null;
+        }
+    }
+}
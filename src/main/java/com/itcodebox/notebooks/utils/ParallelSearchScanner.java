@@ -0,0 +1,151 @@
+package com.itcodebox.notebooks.utils;
+
+import com.itcodebox.notebooks.entity.SearchRecord;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+
+/**
+ * 在插件自己的 ForkJoinPool 中并行验证搜索结果并打分, 用于正则表达式和区分大小写的搜索.
+ * 不使用 ForkJoinPool.commonPool(), 避免耗时的正则表达式占满IDE和其他插件共用的线程.
+ * <p>
+ * 数据库的结果只能在一个线程中逐行读取, 读取的行每 BATCH_SIZE 条组成一批交给 ForkJoinPool,
+ * 每批再拆分到 SPLIT_THRESHOLD 条以内由多个线程计算分数(正则表达式的匹配是主要的耗时), 读取线程同时继续读取下一批.
+ * 同时计算的批次有上限, 计算比读取慢时读取线程会等待, 不会把全部行都保存在内存中.
+ * <p>
+ * 搜索被取消时, 提交下一批之前抛出 CancellationException 结束读取, 不再扫描剩下的行;
+ * 正在计算的正则表达式也会在读取字符时结束(见 CancellableCharSequence).
+ * 结果的条数上限由 SearchRanker 的小顶堆保证; 结果按分数排序, 所以不能在找到 limit 条之后就停止扫描.
+ *
+ * @author LeeWyatt
+ */
+public class ParallelSearchScanner implements Consumer<SearchRecord> {
+    private static final int BATCH_SIZE = 256;
+    private static final int SPLIT_THRESHOLD = 32;
+    /**
+     * 搜索线程数的上限; 空闲的线程一段时间后会自动结束
+     */
+    private static final int MAX_PARALLELISM = 4;
+    private static final ForkJoinPool POOL = createPool();
+
+    private final SearchRanker ranker;
+    private final BooleanSupplier canceled;
+    private final ForkJoinPool pool = POOL;
+    private final int maxPendingBatches = pool.getParallelism() * 2;
+    private final ArrayDeque<ForkJoinTask<?>> pendingBatches = new ArrayDeque<>();
+    private List<SearchRecord> batch = new ArrayList<>(BATCH_SIZE);
+
+    /**
+     * @param ranker   计算分数并保存结果
+     * @param canceled 搜索是否已经被取消
+     */
+    public ParallelSearchScanner(SearchRanker ranker, BooleanSupplier canceled) {
+        this.ranker = ranker;
+        this.canceled = canceled;
+    }
+
+    /**
+     * 在读取数据库的线程中调用
+     *
+     * @throws CancellationException 搜索已经被取消
+     */
+    @Override
+    public void accept(SearchRecord record) {
+        batch.add(record);
+        if (batch.size() == BATCH_SIZE) {
+            submitBatch();
+        }
+    }
+
+    /**
+     * 等待全部结果计算完成
+     *
+     * @return 按分数从高到低排列的结果
+     * @throws CancellationException 搜索已经被取消
+     */
+    public List<SearchRecord> getResult() {
+        submitBatch();
+        try {
+            while (!pendingBatches.isEmpty()) {
+                pendingBatches.poll().join();
+            }
+        } catch (RuntimeException e) {
+            cancelPendingBatches();
+            throw e;
+        }
+        return ranker.getResult();
+    }
+
+    private void submitBatch() {
+        if (canceled.getAsBoolean()) {
+            cancelPendingBatches();
+            throw new CancellationException();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+        while (pendingBatches.size() >= maxPendingBatches) {
+            pendingBatches.poll().join();
+        }
+        pendingBatches.add(pool.submit(new ScoreAction(batch, 0, batch.size())));
+        batch = new ArrayList<>(BATCH_SIZE);
+    }
+
+    private void cancelPendingBatches() {
+        pendingBatches.forEach(task -> task.cancel(false));
+        pendingBatches.clear();
+    }
+
+    private static ForkJoinPool createPool() {
+        int parallelism = Math.max(1, Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ForkJoinPool(parallelism, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("Notebooks Search " + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    private class ScoreAction extends RecursiveAction {
+        private final List<SearchRecord> records;
+        private final int from;
+        private final int to;
+
+        private ScoreAction(List<SearchRecord> records, int from, int to) {
+            this.records = records;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > SPLIT_THRESHOLD) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ScoreAction(records, from, middle), new ScoreAction(records, middle, to));
+                return;
+            }
+            if (canceled.getAsBoolean()) {
+                throw new CancellationException();
+            }
+            double[] scores = new double[to - from];
+            for (int i = from; i < to; i++) {
+                scores[i - from] = ranker.score(records.get(i), canceled);
+            }
+            synchronized (ranker) {
+                for (int i = from; i < to; i++) {
+                    ranker.offer(records.get(i), scores[i - from]);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.itcodebox.notebooks.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 从正则表达式中找出匹配结果里一定包含的字符串, 用于先通过全文索引筛选出候选的笔记, 再用正则表达式验证.
+ * <p>
+ * 只做保守的分析: 只取最外层连续的普通字符; 遇到分组, 字符类, 转义的字符类等时断开;
+ * 可以出现0次的字符不计入; 最外层有 | 或者使用了注释模式(?x)时, 认为没有一定包含的字符串.
+ * 返回的字符串可能少于实际一定包含的, 但不会多, 所以筛选不会漏掉结果.
+ *
+ * @author LeeWyatt
+ */
+public class RegexLiterals {
+
+    private RegexLiterals() {
+    }
+
+    /**
+     * @param regex 已经验证过可以编译的正则表达式
+     * @return 匹配结果中一定包含的字符串(区分大小写); 没有时返回空列表
+     */
+    public static List<String> requiredLiterals(String regex) {
+        List<String> literals = new ArrayList<>();
+        StringBuilder run = new StringBuilder();
+        //run 的最后一个字符是否是刚读取的原子, 后面的量词只作用于这个字符
+        boolean lastAtomInRun = false;
+        int length = regex.length();
+        int i = 0;
+        while (i < length) {
+            char c = regex.charAt(i);
+            switch (c) {
+                case '\\':
+                    if (i + 1 >= length) {
+                        i++;
+                        break;
+                    }
+                    char next = regex.charAt(i + 1);
+                    if (next == 'Q') {
+                        int end = regex.indexOf("\\E", i + 2);
+                        String quoted = end == -1 ? regex.substring(i + 2) : regex.substring(i + 2, end);
+                        run.append(quoted);
+                        lastAtomInRun = !quoted.isEmpty();
+                        i = end == -1 ? length : end + 2;
+                    } else if (!Character.isLetterOrDigit(next)) {
+                        run.append(next);
+                        lastAtomInRun = true;
+                        i += 2;
+                    } else {
+                        flush(run, literals);
+                        lastAtomInRun = false;
+                        i = skipEscape(regex, i);
+                    }
+                    break;
+                case '[':
+                    flush(run, literals);
+                    lastAtomInRun = false;
+                    i = skipClass(regex, i);
+                    break;
+                case '(':
+                    if (isCommentsFlag(regex, i)) {
+                        return Collections.emptyList();
+                    }
+                    flush(run, literals);
+                    lastAtomInRun = false;
+                    i = skipGroup(regex, i);
+                    break;
+                case '|':
+                    return Collections.emptyList();
+                case '*':
+                case '?':
+                    if (lastAtomInRun) {
+                        removeLastCodePoint(run);
+                    }
+                    flush(run, literals);
+                    lastAtomInRun = false;
+                    i = skipQuantifierSuffix(regex, i + 1);
+                    break;
+                case '+':
+                    flush(run, literals);
+                    lastAtomInRun = false;
+                    i = skipQuantifierSuffix(regex, i + 1);
+                    break;
+                case '{':
+                    int end = regex.indexOf('}', i);
+                    if (end == -1) {
+                        run.append(c);
+                        lastAtomInRun = true;
+                        i++;
+                        break;
+                    }
+                    if (lastAtomInRun && isZeroMinimum(regex.substring(i + 1, end))) {
+                        removeLastCodePoint(run);
+                    }
+                    flush(run, literals);
+                    lastAtomInRun = false;
+                    i = skipQuantifierSuffix(regex, end + 1);
+                    break;
+                case '.':
+                case '^':
+                case '$':
+                    flush(run, literals);
+                    lastAtomInRun = false;
+                    i++;
+                    break;
+                default:
+                    run.append(c);
+                    lastAtomInRun = true;
+                    i++;
+                    break;
+            }
+        }
+        flush(run, literals);
+        return literals;
+    }
+
+    private static void flush(StringBuilder run, List<String> literals) {
+        if (run.length() > 0) {
+            literals.add(run.toString());
+            run.setLength(0);
+        }
+    }
+
+    private static void removeLastCodePoint(StringBuilder run) {
+        if (run.length() == 0) {
+            return;
+        }
+        int last = run.length() - 1;
+        if (last > 0 && Character.isLowSurrogate(run.charAt(last)) && Character.isHighSurrogate(run.charAt(last - 1))) {
+            last--;
+        }
+        run.setLength(last);
+    }
+
+    /**
+     * {n}, {n,}, {n,m} 中 n 是否为0
+     */
+    private static boolean isZeroMinimum(String quantifier) {
+        int comma = quantifier.indexOf(',');
+        String min = (comma == -1 ? quantifier : quantifier.substring(0, comma)).trim();
+        try {
+            return Integer.parseInt(min) == 0;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    /**
+     * 跳过量词后面表示非贪婪或者占有的 ? 和 +
+     */
+    private static int skipQuantifierSuffix(String regex, int i) {
+        if (i < regex.length() && (regex.charAt(i) == '?' || regex.charAt(i) == '+')) {
+            return i + 1;
+        }
+        return i;
+    }
+
+    /**
+     * 跳过 \d, \p{Alpha}, \x41, A, \0101, \cA, \k&lt;name&gt; 等转义
+     *
+     * @return 转义之后的位置
+     */
+    private static int skipEscape(String regex, int i) {
+        int length = regex.length();
+        char c = regex.charAt(i + 1);
+        int j = i + 2;
+        switch (c) {
+            case 'p':
+            case 'P':
+            case 'N':
+                if (j < length && regex.charAt(j) == '{') {
+                    int end = regex.indexOf('}', j);
+                    return end == -1 ? length : end + 1;
+                }
+                return Math.min(j + 1, length);
+            case 'x':
+                if (j < length && regex.charAt(j) == '{') {
+                    int end = regex.indexOf('}', j);
+                    return end == -1 ? length : end + 1;
+                }
+                return Math.min(j + 2, length);
+            case 'u':
+                return Math.min(j + 4, length);
+            case '0':
+                int digits = 0;
+                while (j < length && digits < 3 && regex.charAt(j) >= '0' && regex.charAt(j) <= '7') {
+                    j++;
+                    digits++;
+                }
+                return j;
+            case 'c':
+                return Math.min(j + 1, length);
+            case 'k':
+                if (j < length && regex.charAt(j) == '<') {
+                    int end = regex.indexOf('>', j);
+                    return end == -1 ? length : end + 1;
+                }
+                return j;
+            default:
+                return j;
+        }
+    }
+
+    /**
+     * 跳过字符类 [...], 包括嵌套的字符类和转义
+     *
+     * @return ] 之后的位置
+     */
+    private static int skipClass(String regex, int i) {
+        int length = regex.length();
+        int depth = 0;
+        int j = i;
+        while (j < length) {
+            char c = regex.charAt(j);
+            if (c == '\\') {
+                j = skipQuoteOrEscape(regex, j);
+                continue;
+            }
+            if (c == '[') {
+                depth++;
+                j++;
+                //开头的 ] 和 ^] 是普通字符
+                if (j < length && regex.charAt(j) == '^') {
+                    j++;
+                }
+                if (j < length && regex.charAt(j) == ']') {
+                    j++;
+                }
+                continue;
+            }
+            if (c == ']') {
+                depth--;
+                if (depth == 0) {
+                    return j + 1;
+                }
+            }
+            j++;
+        }
+        return length;
+    }
+
+    /**
+     * 跳过分组 (...), 包括嵌套的分组, 字符类和转义
+     *
+     * @return ) 之后的位置
+     */
+    private static int skipGroup(String regex, int i) {
+        int length = regex.length();
+        int depth = 0;
+        int j = i;
+        while (j < length) {
+            char c = regex.charAt(j);
+            if (c == '\\') {
+                j = skipQuoteOrEscape(regex, j);
+                continue;
+            }
+            if (c == '[') {
+                j = skipClass(regex, j);
+                continue;
+            }
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+                if (depth == 0) {
+                    return j + 1;
+                }
+            }
+            j++;
+        }
+        return length;
+    }
+
+    private static int skipQuoteOrEscape(String regex, int j) {
+        if (j + 1 < regex.length() && regex.charAt(j + 1) == 'Q') {
+            int end = regex.indexOf("\\E", j + 2);
+            return end == -1 ? regex.length() : end + 2;
+        }
+        return j + 2;
+    }
+
+    /**
+     * 是否是打开注释模式的标记, 如 (?x) (?ix:...); 注释模式下空白和#之后的内容不是普通字符
+     */
+    private static boolean isCommentsFlag(String regex, int i) {
+        if (i + 1 >= regex.length() || regex.charAt(i + 1) != '?') {
+            return false;
+        }
+        for (int j = i + 2; j < regex.length(); j++) {
+            char c = regex.charAt(j);
+            if (c == 'x') {
+                return true;
+            }
+            if (c == '-') {
+                //(?-x) 关闭注释模式
+                return false;
+            }
+            if (!Character.isLetter(c)) {
+                return false;
+            }
+        }
+        return false;
+    }
+}
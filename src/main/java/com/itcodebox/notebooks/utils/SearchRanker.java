@@ -0,0 +1,249 @@
+package com.itcodebox.notebooks.utils;
+
+import com.itcodebox.notebooks.entity.SearchRecord;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.PriorityQueue;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 给搜索结果打分, 并且只保留分数最高的 limit 条.
+ * <p>
+ * 每个关键字都必须出现在至少一个搜索的字段中(忽略大小写), 否则不是搜索结果.
+ * 关键字在一个字段中的得分为 字段权重 * (1 + ln(出现次数)), 标题的权重最高;
+ * 标题和关键字完全相同时再加一次标题权重. 笔记本和章节只按标题计算.
+ * 区分大小写时按原样比较; 按正则表达式搜索时, 正则表达式相当于一个关键字, 出现次数为匹配的次数,
+ * 标题完全匹配时加一次标题权重.
+ * <p>
+ * 用一个最多 limit 条的小顶堆保存结果, 结果再多也不需要全部保存和排序. 分数相同时按路径排序,
+ * 路径也相同时按id排序, 这样结果的顺序和处理的顺序无关(见 ParallelSearchScanner).
+ *
+ * @author LeeWyatt
+ */
+public class SearchRanker {
+    public static final double TITLE_WEIGHT = 10.0;
+    public static final double DESCRIPTION_WEIGHT = 2.0;
+    public static final double CONTENT_WEIGHT = 1.0;
+    /**
+     * 统计出现次数的上限, 避免长内容中常见的关键字占满分数, 也不必扫描完整个内容
+     */
+    private static final int MAX_FREQUENCY = 8;
+
+    /**
+     * 排在最后的结果在堆顶
+     */
+    private static final Comparator<ScoredRecord> WORST_FIRST = Comparator
+            .comparingDouble((ScoredRecord scored) -> scored.score)
+            .thenComparing((ScoredRecord scored) -> scored.path, Comparator.reverseOrder())
+            .thenComparing((ScoredRecord scored) -> scored.record.getNoteId(), Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing((ScoredRecord scored) -> scored.record.getChapterId(), Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing((ScoredRecord scored) -> scored.record.getNotebookId(), Comparator.nullsLast(Comparator.reverseOrder()));
+
+    private final String[] kws;
+    private final String joinedKws;
+    private final boolean caseSensitive;
+    private final Pattern pattern;
+    private final boolean description;
+    private final boolean content;
+    private final int limit;
+    private final PriorityQueue<ScoredRecord> heap;
+
+    /**
+     * 忽略大小写的关键字搜索
+     *
+     * @param kws         关键字
+     * @param description 是否搜索笔记的描述
+     * @param content     是否搜索笔记的内容
+     * @param limit       最多保留的条数
+     */
+    public SearchRanker(String[] kws, boolean description, boolean content, int limit) {
+        this(kws, false, description, content, limit);
+    }
+
+    /**
+     * @param kws           关键字
+     * @param caseSensitive 是否区分大小写
+     * @param description   是否搜索笔记的描述
+     * @param content       是否搜索笔记的内容
+     * @param limit         最多保留的条数
+     */
+    public SearchRanker(String[] kws, boolean caseSensitive, boolean description, boolean content, int limit) {
+        this.kws = new String[kws.length];
+        for (int i = 0; i < kws.length; i++) {
+            this.kws[i] = caseSensitive ? kws[i] : kws[i].toLowerCase(Locale.ROOT);
+        }
+        this.joinedKws = String.join(" ", this.kws);
+        this.caseSensitive = caseSensitive;
+        this.pattern = null;
+        this.description = description;
+        this.content = content;
+        this.limit = Math.max(limit, 0);
+        this.heap = new PriorityQueue<>(Math.min(this.limit, 1024) + 1, WORST_FIRST);
+    }
+
+    /**
+     * 正则表达式搜索
+     *
+     * @param pattern     正则表达式
+     * @param description 是否搜索笔记的描述
+     * @param content     是否搜索笔记的内容
+     * @param limit       最多保留的条数
+     */
+    public SearchRanker(Pattern pattern, boolean description, boolean content, int limit) {
+        this.kws = new String[0];
+        this.joinedKws = "";
+        this.caseSensitive = true;
+        this.pattern = pattern;
+        this.description = description;
+        this.content = content;
+        this.limit = Math.max(limit, 0);
+        this.heap = new PriorityQueue<>(Math.min(this.limit, 1024) + 1, WORST_FIRST);
+    }
+
+    /**
+     * 计算分数, 分数足够高时保留
+     *
+     * @return 是否包含全部关键字
+     */
+    public boolean offer(SearchRecord record) {
+        return offer(record, score(record));
+    }
+
+    /**
+     * 保存已经计算好分数的结果. score 方法可以在多个线程中同时调用, 这个方法不可以
+     *
+     * @param score 由 score 方法计算的分数
+     * @return 分数是否大于0
+     */
+    public boolean offer(SearchRecord record, double score) {
+        if (score <= 0) {
+            return false;
+        }
+        if (limit == 0) {
+            return true;
+        }
+        ScoredRecord scored = new ScoredRecord(record, score);
+        if (heap.size() < limit) {
+            heap.offer(scored);
+        } else if (WORST_FIRST.compare(scored, heap.peek()) > 0) {
+            heap.poll();
+            heap.offer(scored);
+        }
+        return true;
+    }
+
+    /**
+     * @return 按分数从高到低排列的结果
+     */
+    public List<SearchRecord> getResult() {
+        List<ScoredRecord> scoredList = new ArrayList<>(heap);
+        scoredList.sort(WORST_FIRST.reversed());
+        List<SearchRecord> result = new ArrayList<>(scoredList.size());
+        for (ScoredRecord scored : scoredList) {
+            result.add(scored.record);
+        }
+        return result;
+    }
+
+    /**
+     * @return 不包含全部关键字(或者不匹配正则表达式)时返回0
+     */
+    public double score(SearchRecord record) {
+        return score(record, null);
+    }
+
+    /**
+     * 按正则表达式搜索时, 匹配过程中也会检查是否已经被取消(见 CancellableCharSequence)
+     *
+     * @param canceled 搜索是否已经被取消, 可以为null
+     * @return 不包含全部关键字(或者不匹配正则表达式)时返回0
+     * @throws java.util.concurrent.CancellationException 搜索已经被取消
+     */
+    public double score(SearchRecord record, BooleanSupplier canceled) {
+        boolean isNote = record.getNoteId() != null;
+        String title = isNote ? record.getNoteTitle()
+                : record.getChapterId() != null ? record.getChapterTitle() : record.getNotebookTitle();
+        String descriptionText = isNote && description ? record.getDescription() : null;
+        String contentText = isNote && content ? record.getContent() : null;
+        if (pattern != null) {
+            return scorePattern(title, descriptionText, contentText, canceled);
+        }
+        String comparedTitle = toComparable(title);
+        String comparedDescription = toComparable(descriptionText);
+        String comparedContent = toComparable(contentText);
+        double score = 0;
+        for (String kw : kws) {
+            double kwScore = score(comparedTitle, kw, TITLE_WEIGHT)
+                    + score(comparedDescription, kw, DESCRIPTION_WEIGHT)
+                    + score(comparedContent, kw, CONTENT_WEIGHT);
+            if (kwScore == 0) {
+                return 0;
+            }
+            score += kwScore;
+        }
+        if (joinedKws.equals(comparedTitle)) {
+            score += TITLE_WEIGHT;
+        }
+        return score;
+    }
+
+    private double scorePattern(String title, String descriptionText, String contentText, BooleanSupplier canceled) {
+        double score = score(title, pattern, TITLE_WEIGHT, canceled)
+                + score(descriptionText, pattern, DESCRIPTION_WEIGHT, canceled)
+                + score(contentText, pattern, CONTENT_WEIGHT, canceled);
+        if (score > 0 && title != null && pattern.matcher(cancellable(title, canceled)).matches()) {
+            score += TITLE_WEIGHT;
+        }
+        return score;
+    }
+
+    private static double score(String text, String kw, double weight) {
+        if (text == null || kw.isEmpty()) {
+            return 0;
+        }
+        int frequency = 0;
+        int index = text.indexOf(kw);
+        while (index != -1 && frequency < MAX_FREQUENCY) {
+            frequency++;
+            index = text.indexOf(kw, index + kw.length());
+        }
+        return frequency == 0 ? 0 : weight * (1 + Math.log(frequency));
+    }
+
+    private static double score(String text, Pattern pattern, double weight, BooleanSupplier canceled) {
+        if (text == null) {
+            return 0;
+        }
+        int frequency = 0;
+        Matcher matcher = pattern.matcher(cancellable(text, canceled));
+        while (frequency < MAX_FREQUENCY && matcher.find()) {
+            frequency++;
+        }
+        return frequency == 0 ? 0 : weight * (1 + Math.log(frequency));
+    }
+
+    private static CharSequence cancellable(String text, BooleanSupplier canceled) {
+        return canceled == null ? text : new CancellableCharSequence(text, canceled);
+    }
+
+    private String toComparable(String text) {
+        return text == null || caseSensitive ? text : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static class ScoredRecord {
+        private final SearchRecord record;
+        private final double score;
+        private final String path;
+
+        private ScoredRecord(SearchRecord record, double score) {
+            this.record = record;
+            this.score = score;
+            this.path = record.toString();
+        }
+    }
+}
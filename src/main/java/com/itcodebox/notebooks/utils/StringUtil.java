@@ -45,6 +45,71 @@ public class StringUtil {
         return removeDuplication(sqliteEscape(keywords).trim().replaceAll(regex, space).trim().split(space));
     }
 
+    /**
+     * 拆分关键字, 不做转义处理(用于全文搜索)
+     * @param keywords 关键字
+     * @return 拆分后的关键字, 不包含空字符串; 没有关键字(如只有空格和_)时返回null
+     */
+    public static String[] splitRawKeywords(String keywords) {
+        if (keywords == null || keywords.trim().length() == 0) {
+            return null;
+        }
+        //以 _ 开头时 split 会得到空的第一项, 如 "__init__" -> ["", "init"]
+        ArrayList<String> list = new ArrayList<>();
+        for (String kw : keywords.split("[\\s_]+")) {
+            if (!kw.isEmpty()) {
+                list.add(kw);
+            }
+        }
+        return list.isEmpty() ? null : removeDuplication(list.toArray(new String[0]));
+    }
+
+    /**
+     * 新的关键字是否只是在旧关键字的基础上继续输入:
+     * 关键字的个数相同, 并且每个新关键字都包含对应的旧关键字(忽略大小写).
+     * 这时新关键字的搜索结果一定是旧关键字搜索结果的子集
+     *
+     * @param oldKeywords 旧关键字
+     * @param newKeywords 新关键字
+     */
+    public static boolean isRefinement(String oldKeywords, String newKeywords) {
+        return isRefinement(oldKeywords, newKeywords, false);
+    }
+
+    /**
+     * 同上; 区分大小写的搜索中, 新关键字必须按原样包含旧关键字, 如 bean -> Bean 不是继续输入
+     *
+     * @param caseSensitive 是否区分大小写
+     */
+    public static boolean isRefinement(String oldKeywords, String newKeywords, boolean caseSensitive) {
+        String[] oldKws = splitRawKeywords(oldKeywords);
+        String[] newKws = splitRawKeywords(newKeywords);
+        if (oldKws == null || newKws == null || oldKws.length != newKws.length) {
+            return false;
+        }
+        for (int i = 0; i < oldKws.length; i++) {
+            int index = caseSensitive ? newKws[i].indexOf(oldKws[i]) : indexOfIgnoreCase(newKws[i], oldKws[i], 0);
+            if (index == -1) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 忽略大小写查找关键字的位置
+     *
+     * @return 没有找到时返回-1
+     */
+    public static int indexOfIgnoreCase(String str, String key, int fromIndex) {
+        for (int i = Math.max(fromIndex, 0); i <= str.length() - key.length(); i++) {
+            if (str.regionMatches(true, i, key, 0, key.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
     /**
      * 处理SQLite的特殊字符, 需要转义;
      * 比如 搜索% 出现了全部的结果, 那么需要用转义字符, 来处理这个%
@@ -65,6 +130,14 @@ public class StringUtil {
         return keywords;
     }
 
+    /**
+     * 转义 like 参数中的特殊字符(转义符为 /), 用于参数绑定, 不处理单引号;
+     * 注意,需要在每个 like 后面加上 escape '/'
+     */
+    public static String likeEscape(String keyword) {
+        return keyword.replace("/", "//").replace("%", "/%").replace("_", "/_");
+    }
+
     private  static String[] removeDuplication(String[] arr){
         ArrayList<String> list = new ArrayList<>();
         for (String s : arr) {
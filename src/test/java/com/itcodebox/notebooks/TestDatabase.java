@@ -0,0 +1,119 @@
+package com.itcodebox.notebooks;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * 测试和性能测试使用的SQLite数据库: 表结构和 DatabaseBasicService.initTable 创建的相同, 不包括迁移
+ *
+ * @author LeeWyatt
+ */
+public class TestDatabase {
+    private static final String[] CREATE_TABLES = {
+            "CREATE TABLE IF NOT EXISTS notebook (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, show_order INTEGER, " +
+                    "create_time INTEGER, update_time INTEGER)",
+            "CREATE TABLE IF NOT EXISTS chapter (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, notebook_id INTEGER, " +
+                    "show_order INTEGER, create_time INTEGER, update_time INTEGER)",
+            "CREATE TABLE IF NOT EXISTS note (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, description TEXT, " +
+                    "chapter_id INTEGER, notebook_id INTEGER, show_order INTEGER, content TEXT, source TEXT, " +
+                    "offset_start INTEGER, offset_end INTEGER, image_records TEXT, type TEXT, create_time INTEGER, update_time INTEGER)"
+    };
+
+    private TestDatabase() {
+    }
+
+    /**
+     * @return 内存数据库的连接, 已经创建了表
+     */
+    public static Connection openInMemory() throws SQLException {
+        Connection conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+        createTables(conn);
+        return conn;
+    }
+
+    /**
+     * @return 临时文件数据库的连接, 已经创建了表; 文件在JVM退出时删除
+     */
+    public static Connection openTempFile() throws SQLException, IOException {
+        File file = File.createTempFile("notebooks-test", ".db");
+        file.deleteOnExit();
+        Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+        createTables(conn);
+        return conn;
+    }
+
+    public static void createTables(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            for (String sql : CREATE_TABLES) {
+                statement.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * 在一个事务中插入测试数据. 标题为 notebook-i, chapter-i-j, note-i-j-k, 内容和描述包含标题, 每个笔记一张图片.
+     * id 从1开始连续分配: 第 i 个笔记本(从0开始)的id为 i+1, 以此类推
+     */
+    public static void populate(Connection conn, int notebooks, int chaptersPerNotebook, int notesPerChapter) throws SQLException {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        long time = System.currentTimeMillis();
+        try (PreparedStatement notebook = conn.prepareStatement(
+                "insert into notebook(title, show_order, create_time, update_time) values(?,?,?,?)");
+             PreparedStatement chapter = conn.prepareStatement(
+                     "insert into chapter(title, notebook_id, show_order, create_time, update_time) values(?,?,?,?,?)");
+             PreparedStatement note = conn.prepareStatement(
+                     "insert into note(title, description, chapter_id, notebook_id, show_order, content, source, offset_start, offset_end, " +
+                             "image_records, type, create_time, update_time) values(?,?,?,?,?,?,?,?,?,?,?,?,?)")) {
+            int chapterId = 0;
+            int noteId = 0;
+            for (int i = 0; i < notebooks; i++) {
+                int notebookId = i + 1;
+                notebook.setString(1, "notebook-" + i);
+                notebook.setInt(2, notebookId);
+                notebook.setLong(3, time);
+                notebook.setLong(4, time);
+                notebook.executeUpdate();
+                for (int j = 0; j < chaptersPerNotebook; j++) {
+                    chapterId++;
+                    chapter.setString(1, "chapter-" + i + "-" + j);
+                    chapter.setInt(2, notebookId);
+                    chapter.setInt(3, chapterId);
+                    chapter.setLong(4, time);
+                    chapter.setLong(5, time);
+                    chapter.executeUpdate();
+                    for (int k = 0; k < notesPerChapter; k++) {
+                        noteId++;
+                        String title = "note-" + i + "-" + j + "-" + k;
+                        note.setString(1, title);
+                        note.setString(2, "description of " + title);
+                        note.setInt(3, chapterId);
+                        note.setInt(4, notebookId);
+                        note.setInt(5, noteId);
+                        note.setString(6, "public class Note" + noteId + " {\n    // content of " + title + "\n}\n");
+                        note.setString(7, "/src/Note" + noteId + ".java");
+                        note.setInt(8, 0);
+                        note.setInt(9, 10);
+                        note.setString(10, "[{\"imageTitle\":\"image " + noteId + "\",\"imageDesc\":\"\",\"imagePath\":\"image-" + noteId + ".png\"}]");
+                        note.setString(11, "java");
+                        note.setLong(12, time);
+                        note.setLong(13, time);
+                        note.addBatch();
+                    }
+                    note.executeBatch();
+                }
+            }
+            conn.commit();
+        } catch (SQLException e) {
+            conn.rollback();
+            throw e;
+        } finally {
+            conn.setAutoCommit(autoCommit);
+        }
+    }
+}
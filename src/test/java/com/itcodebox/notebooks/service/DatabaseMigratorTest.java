@@ -0,0 +1,148 @@
+package com.itcodebox.notebooks.service;
+
+import com.itcodebox.notebooks.TestDatabase;
+import org.apache.commons.dbutils.QueryRunner;
+import org.apache.commons.dbutils.handlers.ColumnListHandler;
+import org.apache.commons.dbutils.handlers.ScalarHandler;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author LeeWyatt
+ */
+class DatabaseMigratorTest {
+    private static final String HASH = "0123456789abcdef0123456789abcdef0123456789abcdef0123456789abcdef";
+
+    private final QueryRunner queryRunner = new QueryRunner();
+    private Connection conn;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:sqlite::memory:");
+    }
+
+    @AfterEach
+    void tearDown() throws SQLException {
+        conn.close();
+    }
+
+    @Test
+    void migratesToLatestVersion() throws SQLException {
+        TestDatabase.createTables(conn);
+        TestDatabase.populate(conn, 1, 1, 3);
+        DatabaseMigrator.migrate(conn);
+
+        assertEquals(DatabaseMigrator.latestVersion(), DatabaseMigrator.getVersion(queryRunner, conn));
+        assertTrue(conn.getAutoCommit());
+        List<String> indexes = names("index");
+        assertTrue(indexes.containsAll(Arrays.asList("idx_note_chapter_order", "idx_note_notebook", "idx_note_chapter_title",
+                "idx_chapter_notebook_title", "idx_notebook_title", "idx_image_record_path")), indexes.toString());
+        assertTrue(names("table").containsAll(Arrays.asList("note_fts", "image_record")));
+        //已有的笔记建立了全文索引, 图片信息也拆分了
+        assertEquals(1, count("select count(*) from note_fts where note_fts match '\"note-0-0-1\"'"));
+        assertEquals(3, count("select count(*) from image_record"));
+    }
+
+    @Test
+    void addsLegacyColumns() throws SQLException {
+        queryRunner.update(conn, "CREATE TABLE note (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, description TEXT, " +
+                "chapter_id INTEGER, notebook_id INTEGER, show_order INTEGER, content TEXT, source TEXT, type TEXT, " +
+                "create_time INTEGER, update_time INTEGER)");
+        queryRunner.update(conn, "CREATE TABLE chapter (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, notebook_id INTEGER, " +
+                "show_order INTEGER, create_time INTEGER, update_time INTEGER)");
+        queryRunner.update(conn, "CREATE TABLE notebook (id INTEGER PRIMARY KEY AUTOINCREMENT, title TEXT, show_order INTEGER, " +
+                "create_time INTEGER, update_time INTEGER)");
+        queryRunner.update(conn, "insert into note(title, content) values('old', 'old content')");
+        DatabaseMigrator.migrate(conn);
+
+        List<String> columns = queryRunner.query(conn, "PRAGMA table_info(note)", new ColumnListHandler<String>("name"));
+        assertTrue(columns.containsAll(Arrays.asList("offset_start", "offset_end", "image_records")), columns.toString());
+        assertEquals(0, count("select offset_start from note where title='old'"));
+    }
+
+    @Test
+    void secondRunDoesNothing() throws SQLException {
+        TestDatabase.createTables(conn);
+        DatabaseMigrator.migrate(conn);
+        List<String> schema = schema();
+        DatabaseMigrator.migrate(conn);
+        assertEquals(DatabaseMigrator.latestVersion(), DatabaseMigrator.getVersion(queryRunner, conn));
+        assertEquals(schema, schema());
+    }
+
+    @Test
+    void failedFullTextIndexDoesNotBlockLaterMigrations() throws SQLException {
+        TestDatabase.createTables(conn);
+        //同名的普通表使全文索引的迁移失败
+        queryRunner.update(conn, "CREATE TABLE note_fts (id INTEGER)");
+        DatabaseMigrator.migrate(conn);
+
+        assertEquals(DatabaseMigrator.latestVersion(), DatabaseMigrator.getVersion(queryRunner, conn));
+        assertTrue(names("table").contains("image_record"));
+        assertFalse(names("trigger").contains("note_fts_ai"));
+        //没有全文索引的触发器, 插入笔记不受影响
+        insertNote("[{\"imageTitle\":\"a\",\"imageDesc\":\"\",\"imagePath\":\"a.png\"}]");
+        assertEquals(1, count("select count(*) from image_record"));
+    }
+
+    @Test
+    void imageRecordTriggersFollowNote() throws SQLException {
+        TestDatabase.createTables(conn);
+        DatabaseMigrator.migrate(conn);
+
+        String hashedPath = "01/" + HASH + ".png";
+        long id = insertNote("[{\"imageTitle\":\"a\",\"imageDesc\":\"desc\",\"imagePath\":\"a.png\"}," +
+                "{\"imageTitle\":\"b\",\"imageDesc\":\"\",\"imagePath\":\"" + hashedPath + "\"}]");
+        assertEquals(2, count("select count(*) from image_record where note_id=" + id));
+        assertEquals("desc", queryRunner.query(conn, "select description from image_record where image_path='a.png'", new ScalarHandler<String>()));
+        assertNull(queryRunner.query(conn, "select hash from image_record where image_path='a.png'", new ScalarHandler<String>()));
+        assertEquals(HASH, queryRunner.query(conn, "select hash from image_record where image_path=?", new ScalarHandler<String>(), hashedPath));
+
+        queryRunner.update(conn, "update note set image_records='[{\"imageTitle\":\"c\",\"imagePath\":\"c.png\"}]' where id=?", id);
+        assertEquals(Arrays.asList("c.png"), imagePaths(id));
+
+        //不是合法的JSON数组时不写入 image_record, 也不影响保存
+        queryRunner.update(conn, "update note set image_records='not json' where id=?", id);
+        assertTrue(imagePaths(id).isEmpty());
+        queryRunner.update(conn, "update note set image_records='{\"imagePath\":\"d.png\"}' where id=?", id);
+        assertTrue(imagePaths(id).isEmpty());
+        queryRunner.update(conn, "update note set image_records='[1, {\"imageTitle\":\"e\"}, {\"imagePath\":\"f.png\"}]' where id=?", id);
+        assertEquals(Arrays.asList("f.png"), imagePaths(id));
+
+        queryRunner.update(conn, "delete from note where id=?", id);
+        assertEquals(0, count("select count(*) from image_record"));
+    }
+
+    private long insertNote(String imageRecords) throws SQLException {
+        queryRunner.update(conn, "insert into note(title, chapter_id, notebook_id, image_records) values('n', 1, 1, ?)", imageRecords);
+        return count("select max(id) from note");
+    }
+
+    private List<String> imagePaths(long noteId) throws SQLException {
+        return queryRunner.query(conn, "select image_path from image_record where note_id=? order by show_order",
+                new ColumnListHandler<String>(), noteId);
+    }
+
+    private List<String> names(String type) throws SQLException {
+        return queryRunner.query(conn, "select name from sqlite_master where type=?", new ColumnListHandler<String>(), type);
+    }
+
+    private List<String> schema() throws SQLException {
+        return queryRunner.query(conn, "select type || ' ' || name || ' ' || ifnull(sql, '') from sqlite_master order by type, name",
+                new ColumnListHandler<String>());
+    }
+
+    private long count(String sql) throws SQLException {
+        Number count = queryRunner.query(conn, sql, new ScalarHandler<Number>());
+        return count == null ? 0 : count.longValue();
+    }
+}
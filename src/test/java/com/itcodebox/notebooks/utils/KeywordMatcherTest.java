@@ -0,0 +1,120 @@
+package com.itcodebox.notebooks.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author LeeWyatt
+ */
+class KeywordMatcherTest {
+
+    @Test
+    void findsEveryOccurrence() {
+        KeywordMatcher matcher = new KeywordMatcher(new String[]{"ab"});
+        assertArrayEquals(new int[]{0, 2, 4, 6}, matcher.findRanges("ab..ab"));
+    }
+
+    @Test
+    void ignoresCase() {
+        KeywordMatcher matcher = new KeywordMatcher(new String[]{"Java"});
+        assertArrayEquals(new int[]{0, 4, 5, 9}, matcher.findRanges("JAVA java"));
+    }
+
+    @Test
+    void mergesOverlappingAndAdjacentRanges() {
+        KeywordMatcher matcher = new KeywordMatcher(new String[]{"abc", "cd", "ef"});
+        //abc 和 cd 重叠, cd 和 ef 相连
+        assertArrayEquals(new int[]{0, 6}, matcher.findRanges("abcdef"));
+        //中间隔了一个字符时不合并
+        assertArrayEquals(new int[]{0, 4, 5, 7}, matcher.findRanges("abcd.ef"));
+    }
+
+    @Test
+    void longerKeywordCoversEarlierRanges() {
+        KeywordMatcher matcher = new KeywordMatcher(new String[]{"b", "d", "abcde"});
+        assertArrayEquals(new int[]{0, 5}, matcher.findRanges("abcde"));
+    }
+
+    @Test
+    void keywordInsideAnotherKeyword() {
+        KeywordMatcher matcher = new KeywordMatcher(new String[]{"she", "he", "hers"});
+        assertArrayEquals(new int[]{1, 6}, matcher.findRanges("ushers"));
+    }
+
+    @Test
+    void noKeywords() {
+        assertTrue(new KeywordMatcher(null).isEmpty());
+        assertTrue(new KeywordMatcher(new String[]{null, ""}).isEmpty());
+        assertSame(KeywordMatcher.NO_MATCHES, new KeywordMatcher(null).findRanges("text"));
+        assertSame(KeywordMatcher.NO_MATCHES, new KeywordMatcher(new String[]{"", null}).findRanges("text"));
+    }
+
+    @Test
+    void noMatches() {
+        KeywordMatcher matcher = new KeywordMatcher(new String[]{"xyz"});
+        assertFalse(matcher.isEmpty());
+        assertSame(KeywordMatcher.NO_MATCHES, matcher.findRanges(null));
+        assertSame(KeywordMatcher.NO_MATCHES, matcher.findRanges(""));
+        assertSame(KeywordMatcher.NO_MATCHES, matcher.findRanges("xy zyx"));
+    }
+
+    @Test
+    void sameAsNaiveMatching() {
+        Random random = new Random(42);
+        for (int round = 0; round < 2000; round++) {
+            String[] keywords = new String[1 + random.nextInt(4)];
+            for (int i = 0; i < keywords.length; i++) {
+                keywords[i] = randomText(random, 1 + random.nextInt(4));
+            }
+            String text = randomText(random, random.nextInt(40));
+            assertArrayEquals(naiveRanges(keywords, text), new KeywordMatcher(keywords).findRanges(text),
+                    () -> Arrays.toString(keywords) + " in " + text);
+        }
+    }
+
+    /**
+     * 字符集很小, 这样关键字之间经常重叠
+     */
+    private static String randomText(Random random, int length) {
+        char[] chars = {'a', 'b', 'A', 'B', 'c'};
+        StringBuilder text = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            text.append(chars[random.nextInt(chars.length)]);
+        }
+        return text.toString();
+    }
+
+    /**
+     * 用 regionMatches 逐个位置比较, 标记匹配的字符, 再把连续标记的字符合并成段
+     */
+    private static int[] naiveRanges(String[] keywords, String text) {
+        boolean[] marked = new boolean[text.length()];
+        for (String keyword : keywords) {
+            for (int i = 0; i + keyword.length() <= text.length(); i++) {
+                if (text.regionMatches(true, i, keyword, 0, keyword.length())) {
+                    Arrays.fill(marked, i, i + keyword.length(), true);
+                }
+            }
+        }
+        int[] ranges = new int[text.length() * 2];
+        int count = 0;
+        int i = 0;
+        while (i < text.length()) {
+            if (!marked[i]) {
+                i++;
+                continue;
+            }
+            int start = i;
+            while (i < text.length() && marked[i]) {
+                i++;
+            }
+            ranges[count++] = start;
+            ranges[count++] = i;
+        }
+        return Arrays.copyOf(ranges, count);
+    }
+}
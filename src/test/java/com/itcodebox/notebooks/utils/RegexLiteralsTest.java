@@ -0,0 +1,105 @@
+package com.itcodebox.notebooks.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author LeeWyatt
+ */
+class RegexLiteralsTest {
+
+    @Test
+    void plainText() {
+        assertLiterals("abc", "abc");
+        assertLiterals("");
+    }
+
+    @Test
+    void splitsAtEscapedClassesAndDots() {
+        assertLiterals("foo\\d+bar", "foo", "bar");
+        assertLiterals("foo.bar", "foo", "bar");
+        assertLiterals("^foo$", "foo");
+        assertLiterals("a[bc]d", "a", "d");
+        assertLiterals("a[]b]c", "a", "c");
+        assertLiterals("\\p{Alpha}abc\\x41def", "abc", "def");
+    }
+
+    @Test
+    void optionalCharacterIsDropped() {
+        assertLiterals("colou?r", "colo", "r");
+        assertLiterals("ab*c", "a", "c");
+        assertLiterals("x{0,2}hello", "hello");
+        assertLiterals("ab{2}c", "ab", "c");
+        assertLiterals("ab+c", "ab", "c");
+        assertLiterals("ab*?c", "a", "c");
+    }
+
+    @Test
+    void groupsAreSkipped() {
+        assertLiterals("foo(bar|baz)qux", "foo", "qux");
+        assertLiterals("foo(a(b)c)?qux", "foo", "qux");
+        assertLiterals("foo([)]x)bar", "foo", "bar");
+    }
+
+    @Test
+    void quotedAndEscapedCharacters() {
+        assertLiterals("\\Qa.b\\E", "a.b");
+        assertLiterals("a\\.b", "a.b");
+        assertLiterals("\\Qa.b", "a.b");
+    }
+
+    @Test
+    void noRequiredLiterals() {
+        assertLiterals("a|b");
+        assertLiterals("foo|bar");
+        assertLiterals("(?x)abc");
+        assertLiterals("(?ix:abc)def");
+        assertLiterals("\\d+");
+        assertLiterals(".*");
+    }
+
+    @Test
+    void commentsFlagTurnedOffKeepsLiterals() {
+        assertLiterals("(?-x)abc", "abc");
+        assertLiterals("(?i)abc", "abc");
+    }
+
+    /**
+     * 返回的字符串一定出现在匹配的结果中
+     */
+    @Test
+    void literalsAreContainedInEveryMatch() {
+        String[][] cases = {
+                {"colou?r", "color colour"},
+                {"x{0,2}hello", "hello xhello xxhello"},
+                {"foo\\d+bar", "foo1bar foo123bar"},
+                {"ab*c", "ac abc abbbc"},
+                {"\\Qa.b\\E+", "a.b a.bb"}
+        };
+        for (String[] c : cases) {
+            List<String> literals = RegexLiterals.requiredLiterals(c[0]);
+            Matcher matcher = Pattern.compile(c[0]).matcher(c[1]);
+            int matches = 0;
+            while (matcher.find()) {
+                matches++;
+                for (String literal : literals) {
+                    assertTrue(matcher.group().contains(literal), c[0] + ": " + literal + " not in " + matcher.group());
+                }
+            }
+            assertTrue(matches > 0, c[0]);
+        }
+    }
+
+    private static void assertLiterals(String regex, String... expected) {
+        Pattern.compile(regex);
+        List<String> literals = RegexLiterals.requiredLiterals(regex);
+        assertEquals(expected.length == 0 ? Collections.emptyList() : Arrays.asList(expected), literals, regex);
+    }
+}
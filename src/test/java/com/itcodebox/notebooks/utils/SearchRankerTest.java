@@ -0,0 +1,178 @@
+package com.itcodebox.notebooks.utils;
+
+import com.itcodebox.notebooks.entity.SearchRecord;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @author LeeWyatt
+ */
+class SearchRankerTest {
+
+    @Test
+    void everyKeywordMustMatch() {
+        SearchRanker ranker = new SearchRanker(new String[]{"java", "stream"}, true, true, 10);
+        assertEquals(0, ranker.score(note(1, "Java", "collections", "list")));
+        assertTrue(ranker.score(note(2, "Java", "collections", "stream")) > 0);
+        assertFalse(ranker.offer(note(3, "Kotlin", null, null)));
+        assertTrue(ranker.getResult().isEmpty());
+    }
+
+    @Test
+    void ignoresCaseByDefault() {
+        SearchRanker ranker = new SearchRanker(new String[]{"JAVA"}, false, false, 10);
+        assertTrue(ranker.score(note(1, "java", null, null)) > 0);
+    }
+
+    @Test
+    void titleOutweighsDescriptionAndContent() {
+        SearchRanker ranker = new SearchRanker(new String[]{"lambda"}, true, true, 10);
+        double title = ranker.score(note(1, "lambda usage", null, null));
+        double description = ranker.score(note(2, "usage", "lambda", null));
+        double content = ranker.score(note(3, "usage", null, "lambda"));
+        assertTrue(title > description);
+        assertTrue(description > content);
+        assertTrue(content > 0);
+    }
+
+    @Test
+    void exactTitleGetsBonus() {
+        SearchRanker ranker = new SearchRanker(new String[]{"hash", "map"}, false, false, 10);
+        double exact = ranker.score(note(1, "Hash Map", null, null));
+        double partial = ranker.score(note(2, "hash map notes", null, null));
+        assertEquals(partial + SearchRanker.TITLE_WEIGHT, exact, 1e-9);
+    }
+
+    @Test
+    void moreOccurrencesScoreHigher() {
+        SearchRanker ranker = new SearchRanker(new String[]{"map"}, false, true, 10);
+        assertTrue(ranker.score(note(1, "a", null, "map map map")) > ranker.score(note(2, "a", null, "map")));
+    }
+
+    @Test
+    void skipsFieldsNotSearched() {
+        SearchRanker ranker = new SearchRanker(new String[]{"lambda"}, false, false, 10);
+        assertEquals(0, ranker.score(note(1, "usage", "lambda", "lambda")));
+    }
+
+    @Test
+    void notebookAndChapterMatchByTitle() {
+        SearchRanker ranker = new SearchRanker(new String[]{"java"}, true, true, 10);
+        SearchRecord notebook = new SearchRecord();
+        notebook.setNotebookId(1);
+        notebook.setNotebookTitle("Java");
+        SearchRecord chapter = new SearchRecord();
+        chapter.setNotebookId(2);
+        chapter.setNotebookTitle("Kotlin");
+        chapter.setChapterId(3);
+        chapter.setChapterTitle("Java interop");
+        assertTrue(ranker.score(notebook) > 0);
+        assertTrue(ranker.score(chapter) > 0);
+    }
+
+    @Test
+    void keepsTopLimitInScoreOrder() {
+        SearchRanker ranker = new SearchRanker(new String[]{"key"}, false, true, 3);
+        for (int i = 1; i <= 6; i++) {
+            StringBuilder content = new StringBuilder();
+            for (int j = 0; j < i; j++) {
+                content.append("key ");
+            }
+            ranker.offer(note(i, "note " + i, null, content.toString()));
+        }
+        List<SearchRecord> result = ranker.getResult();
+        assertEquals(3, result.size());
+        assertEquals(6, result.get(0).getNoteId());
+        assertEquals(5, result.get(1).getNoteId());
+        assertEquals(4, result.get(2).getNoteId());
+    }
+
+    @Test
+    void zeroLimitKeepsNothing() {
+        SearchRanker ranker = new SearchRanker(new String[]{"key"}, false, false, 0);
+        assertTrue(ranker.offer(note(1, "key", null, null)));
+        assertTrue(ranker.getResult().isEmpty());
+    }
+
+    @Test
+    void tiesDoNotDependOnOfferOrder() {
+        List<SearchRecord> records = new ArrayList<>();
+        for (int i = 1; i <= 50; i++) {
+            records.add(note(i, "same " + (i % 7), null, null));
+        }
+        List<SearchRecord> expected = null;
+        Random random = new Random(42);
+        for (int round = 0; round < 20; round++) {
+            Collections.shuffle(records, random);
+            SearchRanker ranker = new SearchRanker(new String[]{"same"}, false, false, 10);
+            for (SearchRecord record : records) {
+                ranker.offer(record);
+            }
+            List<SearchRecord> result = ranker.getResult();
+            if (expected == null) {
+                expected = result;
+            } else {
+                assertEquals(ids(expected), ids(result));
+            }
+        }
+        //分数相同时按路径排序
+        assertEquals("notebook chapter same 0", expected.get(0).toString());
+    }
+
+    @Test
+    void caseSensitive() {
+        SearchRanker ranker = new SearchRanker(new String[]{"List"}, true, false, false, 10);
+        assertTrue(ranker.score(note(1, "ArrayList", null, null)) > 0);
+        assertEquals(0, ranker.score(note(2, "arraylist", null, null)));
+    }
+
+    @Test
+    void patternCountsMatchesAndRewardsFullTitleMatch() {
+        SearchRanker ranker = new SearchRanker(Pattern.compile("ma+p"), false, true, 10);
+        assertEquals(0, ranker.score(note(1, "list", null, "set")));
+        double full = ranker.score(note(2, "maap", null, null));
+        double partial = ranker.score(note(3, "maap notes", null, null));
+        assertEquals(partial + SearchRanker.TITLE_WEIGHT, full, 1e-9);
+        assertTrue(ranker.score(note(4, "a", null, "map map")) > ranker.score(note(5, "a", null, "map")));
+    }
+
+    @Test
+    void canceledPatternMatchThrows() {
+        SearchRanker ranker = new SearchRanker(Pattern.compile("(a|aa)+b"), false, true, 10);
+        StringBuilder content = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            content.append('a');
+        }
+        SearchRecord record = note(1, "t", null, content.toString());
+        assertThrows(CancellationException.class, () -> ranker.score(record, () -> true));
+    }
+
+    private static List<Integer> ids(List<SearchRecord> records) {
+        List<Integer> ids = new ArrayList<>();
+        for (SearchRecord record : records) {
+            ids.add(record.getNoteId());
+        }
+        return ids;
+    }
+
+    private static SearchRecord note(int id, String title, String description, String content) {
+        SearchRecord record = new SearchRecord();
+        record.setNotebookId(1);
+        record.setNotebookTitle("notebook");
+        record.setChapterId(1);
+        record.setChapterTitle("chapter");
+        record.setNoteId(id);
+        record.setNoteTitle(title);
+        record.setDescription(description);
+        record.setContent(content);
+        return record;
+    }
+}